@@ -0,0 +1,96 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.EthBlockHeader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.utils.Numeric;
+
+/**
+ * Parsing of an eth_getBlockByNumber response without transaction objects,
+ * as done per block by the block scans. Run with -prof gc to see the
+ * allocation per block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockParseBenchmark {
+
+    @Param({"150"})
+    private int transactions;
+
+    private ObjectMapper objectMapper;
+
+    private byte[] response;
+
+    @Setup
+    public void setup() throws Exception {
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        ObjectNode block = this.objectMapper.createObjectNode();
+        block.put("number", "0x1312d00");
+        block.put("hash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ONE, 64));
+        block.put("parentHash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.TEN, 64));
+        block.put("miner", FixtureWeb3jService.address(1));
+        block.put("timestamp", "0x65b8f1a3");
+        block.put("baseFeePerGas", "0x3b9aca00");
+        block.put("gasLimit", "0x1c9c380");
+        block.put("gasUsed", "0xe4e1c0");
+        block.put("difficulty", "0x0");
+        block.put("extraData", "0x6265617665726275696c642e6f7267");
+        StringBuilder logsBloom = new StringBuilder("0x");
+        for (int idx = 0; idx < 512; idx++) {
+            logsBloom.append("f");
+        }
+        block.put("logsBloom", logsBloom.toString());
+        ArrayNode transactionHashes = block.putArray("transactions");
+        for (int idx = 0; idx < this.transactions; idx++) {
+            transactionHashes.add(Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx + 1000), 64));
+        }
+        block.putArray("uncles");
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", 1);
+        response.set("result", block);
+        this.response = this.objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public String fullBlock() throws IOException {
+        return this.objectMapper.readValue(this.response, EthBlock.class).getBlock().getMiner();
+    }
+
+    @Benchmark
+    public String blockHeader() throws IOException {
+        return this.objectMapper.readValue(this.response, EthBlockHeader.class).getBlockHeader().getMiner();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.EthBlockTransactions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Transaction;
+import org.web3j.utils.Numeric;
+
+/**
+ * Parsing of an eth_getBlockByNumber response with full transaction objects,
+ * as done per block by the history and index scans, filtering on a single
+ * address. Run with -prof gc to see the allocation per block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockTransactionsParseBenchmark {
+
+    @Param({"150"})
+    private int transactions;
+
+    // size of the input data of contract transactions
+    @Param({"1024"})
+    private int inputSize;
+
+    private ObjectMapper objectMapper;
+
+    private byte[] response;
+
+    private String address;
+
+    @Setup
+    public void setup() throws Exception {
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        this.address = FixtureWeb3jService.address(7);
+        ObjectNode block = this.objectMapper.createObjectNode();
+        block.put("number", "0x1312d00");
+        block.put("hash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ONE, 64));
+        block.put("parentHash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.TEN, 64));
+        block.put("miner", FixtureWeb3jService.address(1));
+        block.put("timestamp", "0x65b8f1a3");
+        block.put("baseFeePerGas", "0x3b9aca00");
+        block.put("gasLimit", "0x1c9c380");
+        block.put("gasUsed", "0xe4e1c0");
+        StringBuilder input = new StringBuilder("0x");
+        for (int idx = 0; idx < this.inputSize; idx++) {
+            input.append("a9");
+        }
+        ArrayNode transactionObjects = block.putArray("transactions");
+        for (int idx = 0; idx < this.transactions; idx++) {
+            ObjectNode transaction = transactionObjects.addObject();
+            transaction.put("blockHash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.ONE, 64));
+            transaction.put("blockNumber", "0x1312d00");
+            transaction.put("hash", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx + 1000), 64));
+            transaction.put("from", FixtureWeb3jService.address(100 + idx));
+            transaction.put("to", FixtureWeb3jService.address(idx % 10));
+            transaction.put("value", "0xde0b6b3a7640000");
+            transaction.put("gas", "0x5208");
+            transaction.put("gasPrice", "0x3b9aca00");
+            transaction.put("maxFeePerGas", "0x77359400");
+            transaction.put("maxPriorityFeePerGas", "0x3b9aca00");
+            transaction.put("nonce", "0x" + Integer.toHexString(idx));
+            transaction.put("transactionIndex", "0x" + Integer.toHexString(idx));
+            transaction.put("type", "0x2");
+            transaction.put("chainId", "0x1");
+            // half of the transactions are contract calls
+            transaction.put("input", idx % 2 == 0 ? "0x" : input.toString());
+            transaction.putArray("accessList");
+            transaction.put("v", "0x1");
+            transaction.put("r", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx + 2000), 64));
+            transaction.put("s", Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx + 3000), 64));
+        }
+        block.putArray("uncles");
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", 1);
+        response.set("result", block);
+        this.response = this.objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public int fullBlock() throws IOException {
+        EthBlock.Block block = this.objectMapper.readValue(this.response, EthBlock.class).getBlock();
+        int matches = 0;
+        for (EthBlock.TransactionResult transactionResult : block.getTransactions()) {
+            Transaction transaction = ((EthBlock.TransactionObject) transactionResult).get();
+            if (this.address.equals(transaction.getTo()) || this.address.equals(transaction.getFrom())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int blockTransactions() throws IOException {
+        EthBlockTransactions.BlockTransactions block = this.objectMapper.readValue(this.response, EthBlockTransactions.class).getBlockTransactions();
+        int matches = 0;
+        for (int idx = 0; idx < block.getTransactionCount(); idx++) {
+            if (this.address.equals(block.getTo(idx)) || this.address.equals(block.getFrom(idx))) {
+                block.toTransaction(idx);
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
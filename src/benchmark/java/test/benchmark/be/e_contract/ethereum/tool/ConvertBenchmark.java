@@ -0,0 +1,56 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.utils.Convert;
+
+/**
+ * Wei to ether and gwei formatting, as done for every printed amount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConvertBenchmark {
+
+    private final BigDecimal valueWei = new BigDecimal("1234567890123456789");
+
+    private final BigDecimal gasPriceWei = new BigDecimal("23456789012");
+
+    @Benchmark
+    public String ether() {
+        return Convert.fromWei(this.valueWei, Convert.Unit.ETHER).toPlainString();
+    }
+
+    @Benchmark
+    public String gwei() {
+        return Convert.fromWei(this.gasPriceWei, Convert.Unit.GWEI).toPlainString();
+    }
+
+    @Benchmark
+    public BigDecimal toWei() {
+        return Convert.toWei(BigDecimal.valueOf(0.1), Convert.Unit.ETHER);
+    }
+}
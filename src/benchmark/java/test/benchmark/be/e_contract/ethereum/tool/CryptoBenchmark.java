@@ -0,0 +1,83 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.Address;
+import be.e_contract.ethereum.tool.AddressTypeConverter;
+import be.e_contract.ethereum.tool.TransactionSigner;
+import be.e_contract.ethereum.tool.TransactionTemplate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+
+/**
+ * Transaction decoding as in inspect, signing as in sign, and checksum
+ * address validation as in the address option converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CryptoBenchmark {
+
+    private static final String CHECKSUM_ADDRESS = "0x0c56073db91c2Ba57FF362301eb32262BBeE6147";
+
+    private Credentials credentials;
+
+    private TransactionTemplate transactionTemplate;
+
+    private String signedTransaction;
+
+    private AddressTypeConverter addressTypeConverter;
+
+    @Setup
+    public void setUp() {
+        this.credentials = Credentials.create("0x4c0883a69102937d6231471b5dbb6204fe5129617082792ae468d01a3f362318");
+        this.transactionTemplate = new TransactionTemplate();
+        this.transactionTemplate.to = CHECKSUM_ADDRESS;
+        this.transactionTemplate.value = 0.1;
+        this.transactionTemplate.maxFeePerGas = 30.0;
+        this.transactionTemplate.maxPriorityFeePerGas = 1.0;
+        this.transactionTemplate.nonce = 5;
+        this.transactionTemplate.chainId = 1L;
+        this.signedTransaction = TransactionSigner.sign(this.transactionTemplate, this.credentials);
+        this.addressTypeConverter = new AddressTypeConverter();
+    }
+
+    @Benchmark
+    public RawTransaction decode() {
+        return TransactionDecoder.decode(this.signedTransaction);
+    }
+
+    @Benchmark
+    public String sign() {
+        return TransactionSigner.sign(this.transactionTemplate, this.credentials);
+    }
+
+    @Benchmark
+    public Address checksumAddress() throws Exception {
+        return this.addressTypeConverter.convert(CHECKSUM_ADDRESS);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.Recording;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+/**
+ * Answers JSON-RPC requests from a recorded fixture, so benchmarks measure
+ * the tool itself instead of the node. Fixtures are recorded via the --record
+ * option.
+ */
+public class FixtureWeb3jService implements Web3jService {
+
+    private final ObjectMapper objectMapper;
+
+    private final Recording recording;
+
+    private FixtureWeb3jService(Recording recording) {
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        this.recording = recording;
+    }
+
+    public static FixtureWeb3jService load(File fixtureFile) throws IOException {
+        return new FixtureWeb3jService(Recording.load(fixtureFile));
+    }
+
+    /**
+     * Creates a synthetic fixture for the given block range, with the shape
+     * of a recording of the history and miners commands.
+     *
+     * @param latestBlockNumber
+     * @param blockCount
+     * @param transactionsPerBlock
+     * @param minerCount
+     * @return
+     */
+    public static FixtureWeb3jService generate(long latestBlockNumber, int blockCount, int transactionsPerBlock, int minerCount) {
+        FixtureWeb3jService service = new FixtureWeb3jService(new Recording());
+        ObjectMapper objectMapper = service.objectMapper;
+        service.put("eth_blockNumber", objectMapper.createArrayNode(), objectMapper.getNodeFactory().textNode(Numeric.encodeQuantity(BigInteger.valueOf(latestBlockNumber))));
+        service.put("eth_chainId", objectMapper.createArrayNode(), objectMapper.getNodeFactory().textNode("0x1"));
+        for (int miner = 0; miner < minerCount; miner++) {
+            ArrayNode params = objectMapper.createArrayNode().add(address(miner)).add("latest");
+            service.put("eth_getBalance", params, objectMapper.getNodeFactory().textNode("0x1bc16d674ec80000"));
+        }
+        for (long blockNumber = latestBlockNumber - blockCount + 1; blockNumber <= latestBlockNumber; blockNumber++) {
+            String blockHash = hash(blockNumber, 0);
+            ObjectNode block = objectMapper.createObjectNode();
+            block.put("number", Numeric.encodeQuantity(BigInteger.valueOf(blockNumber)));
+            block.put("hash", blockHash);
+            block.put("parentHash", hash(blockNumber - 1, 0));
+            block.put("miner", address((int) (blockNumber % minerCount)));
+            block.put("timestamp", Numeric.encodeQuantity(BigInteger.valueOf(1700000000L + blockNumber * 12)));
+            block.put("baseFeePerGas", "0x3b9aca00");
+            block.put("gasLimit", "0x1c9c380");
+            block.put("gasUsed", "0xe4e1c0");
+            ObjectNode fullBlock = block.deepCopy();
+            ArrayNode transactionHashes = block.putArray("transactions");
+            ArrayNode transactions = fullBlock.putArray("transactions");
+            for (int transactionIndex = 0; transactionIndex < transactionsPerBlock; transactionIndex++) {
+                String transactionHash = hash(blockNumber, transactionIndex + 1);
+                transactionHashes.add(transactionHash);
+                ObjectNode transaction = transactions.addObject();
+                transaction.put("hash", transactionHash);
+                transaction.put("nonce", Numeric.encodeQuantity(BigInteger.valueOf(transactionIndex)));
+                transaction.put("blockHash", blockHash);
+                transaction.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(blockNumber)));
+                transaction.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(transactionIndex)));
+                transaction.put("from", address(1000 + transactionIndex));
+                transaction.put("to", address(2000 + (int) ((blockNumber + transactionIndex) % 500)));
+                transaction.put("value", "0x2386f26fc10000");
+                transaction.put("gasPrice", "0x4a817c800");
+                transaction.put("gas", "0x5208");
+                transaction.put("input", "0x");
+                transaction.put("type", "0x2");
+            }
+            String blockParameter = Numeric.encodeQuantity(BigInteger.valueOf(blockNumber));
+            service.put("eth_getBlockByNumber", objectMapper.createArrayNode().add(blockParameter).add(false), block);
+            service.put("eth_getBlockByNumber", objectMapper.createArrayNode().add(blockParameter).add(true), fullBlock);
+        }
+        return service;
+    }
+
+    public static String address(int idx) {
+        return Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx + 1), 40);
+    }
+
+    private static String hash(long blockNumber, int idx) {
+        return Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(blockNumber).shiftLeft(32).or(BigInteger.valueOf(idx)), 64);
+    }
+
+    private void put(String method, ArrayNode params, JsonNode result) {
+        this.recording.put(method, params, result);
+    }
+
+    private <T extends Response> T respond(Request request, Class<T> responseType) throws IOException {
+        ObjectNode jsonRequest = this.objectMapper.createObjectNode();
+        jsonRequest.put("id", request.getId());
+        jsonRequest.put("method", request.getMethod());
+        jsonRequest.set("params", this.objectMapper.valueToTree(request.getParams()));
+        return this.objectMapper.treeToValue(this.recording.respond(jsonRequest), responseType);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return respond(request, responseType);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(respond(request, responseType));
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Response<?>> responses = new ArrayList<>();
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            responses.add(respond(request, request.getResponseType()));
+        }
+        return new BatchResponse(batchRequest.getRequests(), responses);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        CompletableFuture<BatchResponse> future = new CompletableFuture<>();
+        try {
+            future.complete(sendBatch(batchRequest));
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
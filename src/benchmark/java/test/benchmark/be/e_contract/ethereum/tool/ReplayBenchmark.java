@@ -0,0 +1,114 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.Address;
+import be.e_contract.ethereum.tool.AddressTypeConverter;
+import be.e_contract.ethereum.tool.History;
+import be.e_contract.ethereum.tool.Miners;
+import be.e_contract.ethereum.tool.Output;
+import be.e_contract.ethereum.tool.ToolWeb3j;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.web3j.protocol.Web3j;
+import picocli.CommandLine;
+
+/**
+ * Runs the history and miners commands against a JSON-RPC fixture. Pass a
+ * recorded fixture via -Dbenchmark.fixture=file, otherwise a synthetic one is
+ * used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReplayBenchmark {
+
+    private static final long LATEST_BLOCK_NUMBER = 20000000;
+
+    @Param({"64"})
+    public int blocks;
+
+    @Param({"8"})
+    public int concurrency;
+
+    private ToolWeb3j web3;
+
+    private PrintStream systemOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String fixture = System.getProperty("benchmark.fixture");
+        FixtureWeb3jService service;
+        if (null != fixture) {
+            service = FixtureWeb3jService.load(new File(fixture));
+        } else {
+            service = FixtureWeb3jService.generate(LATEST_BLOCK_NUMBER, this.blocks, 150, 8);
+        }
+        this.web3 = new ToolWeb3j(service, 500);
+        // installs the ANSI console first
+        Output.class.getName();
+        this.systemOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(this.systemOut);
+        this.web3.shutdown();
+    }
+
+    private CommandLine commandLine(Object command) {
+        CommandLine commandLine = new CommandLine(command);
+        commandLine.registerConverter(Web3j.class, location -> this.web3);
+        commandLine.registerConverter(Address.class, new AddressTypeConverter());
+        return commandLine;
+    }
+
+    @Benchmark
+    public int history() {
+        return commandLine(new History()).execute("-l", "fixture", "-n", Integer.toString(this.blocks),
+                "-c", Integer.toString(this.concurrency),
+                "-a", FixtureWeb3jService.address(1000) + "," + FixtureWeb3jService.address(2001));
+    }
+
+    @Benchmark
+    public int miners() {
+        return commandLine(new Miners()).execute("-l", "fixture", "-n", Integer.toString(this.blocks),
+                "-c", Integer.toString(this.concurrency));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.benchmark.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.GasPriceHistogram;
+import be.e_contract.ethereum.tool.PendingTransactionIndex;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.web3j.utils.Numeric;
+
+/**
+ * The per block aggregation of the speed command: pending transactions that
+ * made it into the block go into the gas price histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpeedBenchmark {
+
+    @Param({"200"})
+    public int transactionsPerBlock;
+
+    private PendingTransactionIndex pendingTransactions;
+
+    private GasPriceHistogram gasPriceHistogram;
+
+    private String[] transactionHashes;
+
+    private long blockNumber;
+
+    @Setup
+    public void setUp() {
+        this.pendingTransactions = new PendingTransactionIndex(64 * 1024);
+        this.gasPriceHistogram = new GasPriceHistogram(20);
+        this.transactionHashes = new String[this.transactionsPerBlock];
+        for (int idx = 0; idx < this.transactionsPerBlock; idx++) {
+            this.transactionHashes[idx] = Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(idx * 7919L + 1), 64);
+        }
+    }
+
+    @Benchmark
+    public int block() {
+        this.blockNumber++;
+        long now = System.nanoTime();
+        // the pending transactions as seen before the block
+        for (int idx = 0; idx < this.transactionHashes.length; idx++) {
+            this.pendingTransactions.put(this.transactionHashes[idx], now, this.blockNumber, GasPriceHistogram.getBucket(1000000000L * (1 + idx % 50)));
+        }
+        this.gasPriceHistogram.nextBlock();
+        PendingTransactionIndex.Entry pendingTransaction = new PendingTransactionIndex.Entry();
+        int countProcessed = 0;
+        for (String transactionHash : this.transactionHashes) {
+            if (!this.pendingTransactions.remove(transactionHash, pendingTransaction)) {
+                continue;
+            }
+            countProcessed++;
+            this.gasPriceHistogram.add(pendingTransaction.getValue(), now - pendingTransaction.getCreated());
+        }
+        this.pendingTransactions.evictBefore(this.blockNumber - 20);
+        return countProcessed;
+    }
+}
@@ -17,6 +17,12 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
 public class Address {
 
     private final String address;
@@ -29,4 +35,25 @@ public class Address {
     public String getAddress() {
         return this.address;
     }
+
+    /**
+     * Loads addresses from a file with one address per line. Empty lines and
+     * lines starting with # are skipped.
+     *
+     * @param file
+     * @return
+     * @throws Exception
+     */
+    public static List<Address> load(File file) throws Exception {
+        AddressTypeConverter addressTypeConverter = new AddressTypeConverter();
+        List<Address> addresses = new LinkedList<>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            addresses.add(addressTypeConverter.convert(line));
+        }
+        return addresses;
+    }
 }
@@ -0,0 +1,619 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.web3j.utils.Numeric;
+
+/**
+ * On-disk inverted index from address to the transactions that touched the
+ * address, for a contiguous range of blocks.
+ * <p>
+ * The index consists of segment files, each covering a contiguous block range.
+ * Extending the index writes a new segment for the new blocks only, and
+ * compacting the index merges all segments into a single segment. A segment
+ * starts with a header, followed by an address table sorted on address,
+ * followed by the posting lists. A posting list holds the (block number,
+ * transaction index) pairs in ascending order, delta encoded on the block
+ * number and written as variable length integers. Lookups do a binary search
+ * on the memory mapped address table of every segment.
+ */
+public class AddressIndex {
+
+    private static final String SEGMENT_PREFIX = "address-index";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    // ETIX
+    private static final int MAGIC = 0x45544958;
+
+    private static final int VERSION = 1;
+
+    // magic, version, chain id, from block, to block, address count
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 4;
+
+    private static final int ADDRESS_SIZE = 20;
+
+    // address, postings offset, postings length, posting count
+    private static final int ROW_SIZE = ADDRESS_SIZE + 8 + 4 + 4;
+
+    private final File directory;
+
+    // ascending block ranges
+    private final List<Segment> segments;
+
+    private AddressIndex(File directory, List<Segment> segments) {
+        this.directory = directory;
+        this.segments = segments;
+    }
+
+    private static File[] listSegmentFiles(File directory) {
+        return directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Opens the index within the given directory.
+     *
+     * @param directory
+     * @return the index, or null if no index exists yet.
+     * @throws IOException
+     */
+    public static AddressIndex open(File directory) throws IOException {
+        File[] segmentFiles = listSegmentFiles(directory);
+        if (null == segmentFiles || 0 == segmentFiles.length) {
+            return null;
+        }
+        List<Segment> segments = new ArrayList<>(segmentFiles.length);
+        for (File segmentFile : segmentFiles) {
+            segments.add(Segment.open(segmentFile));
+        }
+        // widest block range first, for segments starting at the same block
+        segments.sort(Comparator.comparingLong((Segment segment) -> segment.fromBlock).thenComparingLong(segment -> -segment.toBlock));
+        // segments covered by a merged segment are left over from an interrupted compaction
+        long coveredBlock = Long.MIN_VALUE;
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext();) {
+            Segment segment = iterator.next();
+            if (segment.toBlock <= coveredBlock) {
+                iterator.remove();
+            } else {
+                coveredBlock = segment.toBlock;
+            }
+        }
+        for (int idx = 1; idx < segments.size(); idx++) {
+            Segment previous = segments.get(idx - 1);
+            Segment segment = segments.get(idx);
+            if (segment.chainId != previous.chainId) {
+                throw new IOException("address index segments of different chains");
+            }
+            if (segment.fromBlock != previous.toBlock + 1) {
+                throw new IOException("address index segments " + previous.fromBlock + " - " + previous.toBlock
+                        + " and " + segment.fromBlock + " - " + segment.toBlock + " are not contiguous");
+            }
+        }
+        return new AddressIndex(directory, segments);
+    }
+
+    public long getChainId() {
+        return this.segments.get(0).chainId;
+    }
+
+    public long getFromBlock() {
+        return this.segments.get(0).fromBlock;
+    }
+
+    public long getToBlock() {
+        return this.segments.get(this.segments.size() - 1).toBlock;
+    }
+
+    public int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * Gives back the number of distinct addresses, over all segments.
+     *
+     * @return
+     */
+    public int getAddressCount() {
+        if (1 == this.segments.size()) {
+            return this.segments.get(0).addressCount;
+        }
+        // merge of the sorted address tables
+        int[] rows = new int[this.segments.size()];
+        int count = 0;
+        byte[] address;
+        while (null != (address = nextAddress(rows))) {
+            count++;
+            for (int idx = 0; idx < rows.length; idx++) {
+                if (hasAddress(idx, rows[idx], address)) {
+                    rows[idx]++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Merges all segments into a single segment, so a lookup only has to
+     * search a single address table. The merged segment replaces the segment
+     * files within the index directory.
+     *
+     * @return the compacted index.
+     * @throws IOException
+     */
+    public AddressIndex compact() throws IOException {
+        if (1 == this.segments.size()) {
+            return this;
+        }
+        int[] rows = new int[this.segments.size()];
+        List<Posting> postings = new ArrayList<>();
+        File segmentFile;
+        try (SegmentWriter segmentWriter = new SegmentWriter(this.directory, getChainId(), getFromBlock(), getToBlock(), getAddressCount())) {
+            byte[] address;
+            while (null != (address = nextAddress(rows))) {
+                segmentWriter.startAddress(address);
+                // ascending block ranges, so the postings remain in ascending block order
+                for (int idx = 0; idx < rows.length; idx++) {
+                    if (hasAddress(idx, rows[idx], address)) {
+                        postings.clear();
+                        this.segments.get(idx).getPostings(rows[idx], postings);
+                        for (Posting posting : postings) {
+                            segmentWriter.addPosting(posting.blockNumber, posting.transactionIndex);
+                        }
+                        rows[idx]++;
+                    }
+                }
+            }
+            segmentFile = segmentWriter.commit();
+        }
+        for (File file : listSegmentFiles(this.directory)) {
+            if (!file.equals(segmentFile)) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        return open(this.directory);
+    }
+
+    /**
+     * Gives back the lowest address at the given rows of the segments.
+     *
+     * @param rows
+     * @return the address, or null if all segments are exhausted.
+     */
+    private byte[] nextAddress(int[] rows) {
+        byte[] address = null;
+        for (int idx = 0; idx < rows.length; idx++) {
+            Segment segment = this.segments.get(idx);
+            if (rows[idx] < segment.addressCount) {
+                byte[] segmentAddress = segment.getAddress(rows[idx]);
+                if (null == address || compareAddresses(segmentAddress, address) < 0) {
+                    address = segmentAddress;
+                }
+            }
+        }
+        return address;
+    }
+
+    private boolean hasAddress(int segmentIdx, int row, byte[] address) {
+        Segment segment = this.segments.get(segmentIdx);
+        return row < segment.addressCount && Arrays.equals(segment.getAddress(row), address);
+    }
+
+    private static int compareAddresses(byte[] address1, byte[] address2) {
+        for (int idx = 0; idx < ADDRESS_SIZE; idx++) {
+            int compare = Integer.compare(address1[idx] & 0xff, address2[idx] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+    public static final class Posting {
+
+        private final long blockNumber;
+
+        private final int transactionIndex;
+
+        private Posting(long blockNumber, int transactionIndex) {
+            this.blockNumber = blockNumber;
+            this.transactionIndex = transactionIndex;
+        }
+
+        public long getBlockNumber() {
+            return this.blockNumber;
+        }
+
+        public int getTransactionIndex() {
+            return this.transactionIndex;
+        }
+    }
+
+    /**
+     * Gives back the transactions that touched the given address.
+     *
+     * @param address
+     * @return the postings in ascending block order.
+     */
+    public List<Posting> lookup(String address) {
+        byte[] addressBytes = Numeric.hexStringToByteArray(address);
+        List<Posting> postings = new ArrayList<>();
+        for (Segment segment : this.segments) {
+            segment.lookup(addressBytes, postings);
+        }
+        return postings;
+    }
+
+    /**
+     * A single index file. Larger files are mapped in several regions.
+     */
+    private static final class Segment {
+
+        private static final long REGION_SIZE = 1L << 30;
+
+        // no value we read is larger, so every value is within a single region
+        private static final int REGION_OVERLAP = 64;
+
+        private final MappedByteBuffer[] regions;
+
+        private final File file;
+
+        private final long chainId;
+
+        private final long fromBlock;
+
+        private final long toBlock;
+
+        private final int addressCount;
+
+        private Segment(File file, MappedByteBuffer[] regions) throws IOException {
+            this.file = file;
+            this.regions = regions;
+            if (getInt(0) != MAGIC || getInt(4) != VERSION) {
+                throw new IOException("invalid address index");
+            }
+            this.chainId = getLong(8);
+            this.fromBlock = getLong(16);
+            this.toBlock = getLong(24);
+            this.addressCount = getInt(32);
+        }
+
+        private static Segment open(File segmentFile) throws IOException {
+            try (FileChannel fileChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+                long size = fileChannel.size();
+                if (size < HEADER_SIZE) {
+                    throw new IOException("invalid address index: " + segmentFile.getName());
+                }
+                MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+                for (int idx = 0; idx < regions.length; idx++) {
+                    long position = idx * REGION_SIZE;
+                    regions[idx] = fileChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(REGION_SIZE + REGION_OVERLAP, size - position));
+                }
+                return new Segment(segmentFile, regions);
+            }
+        }
+
+        private byte get(long position) {
+            return this.regions[(int) (position / REGION_SIZE)].get((int) (position % REGION_SIZE));
+        }
+
+        private int getInt(long position) {
+            return this.regions[(int) (position / REGION_SIZE)].getInt((int) (position % REGION_SIZE));
+        }
+
+        private long getLong(long position) {
+            return this.regions[(int) (position / REGION_SIZE)].getLong((int) (position % REGION_SIZE));
+        }
+
+        private static long getRowOffset(int row) {
+            return HEADER_SIZE + (long) row * ROW_SIZE;
+        }
+
+        private byte[] getAddress(int row) {
+            long rowOffset = getRowOffset(row);
+            byte[] address = new byte[ADDRESS_SIZE];
+            for (int idx = 0; idx < ADDRESS_SIZE; idx++) {
+                address[idx] = get(rowOffset + idx);
+            }
+            return address;
+        }
+
+        private void lookup(byte[] address, List<Posting> postings) {
+            int row = findRow(address);
+            if (row >= 0) {
+                getPostings(row, postings);
+            }
+        }
+
+        private void getPostings(int row, List<Posting> postings) {
+            long rowOffset = getRowOffset(row);
+            long offset = getLong(rowOffset + ADDRESS_SIZE);
+            int count = getInt(rowOffset + ADDRESS_SIZE + 8 + 4);
+            long[] position = new long[]{offset};
+            long blockNumber = 0;
+            for (int idx = 0; idx < count; idx++) {
+                blockNumber += readVarLong(position);
+                int transactionIndex = (int) readVarLong(position);
+                postings.add(new Posting(blockNumber, transactionIndex));
+            }
+        }
+
+        private int findRow(byte[] address) {
+            int low = 0;
+            int high = this.addressCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int compare = compareAddress(getRowOffset(middle), address);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int compareAddress(long offset, byte[] address) {
+            for (int idx = 0; idx < ADDRESS_SIZE; idx++) {
+                int compare = Integer.compare(get(offset + idx) & 0xff, address[idx] & 0xff);
+                if (compare != 0) {
+                    return compare;
+                }
+            }
+            return 0;
+        }
+
+        private long readVarLong(long[] position) {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = get(position[0]++);
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+    }
+
+    /**
+     * Collects the postings of a block range in memory, and writes them out as
+     * a new index segment.
+     */
+    public static final class Builder {
+
+        // block number and transaction index packed in a single long
+        private static final int TRANSACTION_INDEX_BITS = 24;
+
+        private final Map<String, long[]> postings;
+
+        private final Map<String, Integer> postingCounts;
+
+        public Builder() {
+            this.postings = new HashMap<>();
+            this.postingCounts = new HashMap<>();
+        }
+
+        public void add(String address, long blockNumber, int transactionIndex) {
+            String key = address.toLowerCase();
+            long[] addressPostings = this.postings.get(key);
+            int count = this.postingCounts.getOrDefault(key, 0);
+            if (null == addressPostings) {
+                addressPostings = new long[4];
+                this.postings.put(key, addressPostings);
+            } else if (count == addressPostings.length) {
+                addressPostings = Arrays.copyOf(addressPostings, count * 2);
+                this.postings.put(key, addressPostings);
+            }
+            addressPostings[count] = (blockNumber << TRANSACTION_INDEX_BITS) | transactionIndex;
+            this.postingCounts.put(key, count + 1);
+        }
+
+        /**
+         * Writes the collected postings as a new segment. The block range
+         * should not overlap with the existing segments.
+         *
+         * @param directory
+         * @param chainId
+         * @param fromBlock
+         * @param toBlock
+         * @throws IOException
+         */
+        public void write(File directory, long chainId, long fromBlock, long toBlock) throws IOException {
+            List<String> addresses = new ArrayList<>(this.postings.keySet());
+            // lowercase hexadecimal sorts the same as the unsigned address bytes
+            addresses.sort(null);
+            try (SegmentWriter segmentWriter = new SegmentWriter(directory, chainId, fromBlock, toBlock, addresses.size())) {
+                for (String address : addresses) {
+                    segmentWriter.startAddress(Numeric.hexStringToByteArray(address));
+                    int count = this.postingCounts.get(address);
+                    long[] addressPostings = this.postings.get(address);
+                    Arrays.sort(addressPostings, 0, count);
+                    long previous = -1;
+                    for (int postingIdx = 0; postingIdx < count; postingIdx++) {
+                        long posting = addressPostings[postingIdx];
+                        if (posting == previous) {
+                            // a transaction to self
+                            continue;
+                        }
+                        previous = posting;
+                        segmentWriter.addPosting(posting >>> TRANSACTION_INDEX_BITS,
+                                (int) (posting & ((1 << TRANSACTION_INDEX_BITS) - 1)));
+                    }
+                }
+                segmentWriter.commit();
+            }
+        }
+    }
+
+    /**
+     * Writes a segment file. The addresses should be started in ascending
+     * order, and the postings of an address added in ascending block order.
+     * The address table goes to the segment file directly, the postings go to
+     * a temporary file first, as we only know their offset afterwards.
+     */
+    private static final class SegmentWriter implements Closeable {
+
+        private final File segmentFile;
+
+        private final File tmpFile;
+
+        private final File postingsFile;
+
+        private final int addressCount;
+
+        private final long postingsOffset;
+
+        private final DataOutputStream output;
+
+        private final OutputStream postingsOutput;
+
+        private byte[] address;
+
+        private int rowCount;
+
+        private long position;
+
+        private long start;
+
+        private int count;
+
+        private long previousBlockNumber;
+
+        private SegmentWriter(File directory, long chainId, long fromBlock, long toBlock, int addressCount) throws IOException {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("could not create index directory: " + directory.getAbsolutePath());
+            }
+            String segmentName = SEGMENT_PREFIX + "-" + fromBlock + "-" + toBlock + SEGMENT_SUFFIX;
+            this.segmentFile = new File(directory, segmentName);
+            this.tmpFile = new File(directory, segmentName + ".tmp");
+            this.postingsFile = new File(directory, segmentName + ".postings.tmp");
+            this.addressCount = addressCount;
+            this.postingsOffset = HEADER_SIZE + (long) addressCount * ROW_SIZE;
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.tmpFile)));
+            try {
+                this.postingsOutput = new BufferedOutputStream(new FileOutputStream(this.postingsFile));
+                this.output.writeInt(MAGIC);
+                this.output.writeInt(VERSION);
+                this.output.writeLong(chainId);
+                this.output.writeLong(fromBlock);
+                this.output.writeLong(toBlock);
+                this.output.writeInt(addressCount);
+            } catch (IOException e) {
+                this.output.close();
+                Files.deleteIfExists(this.tmpFile.toPath());
+                throw e;
+            }
+        }
+
+        private void startAddress(byte[] address) throws IOException {
+            if (address.length != ADDRESS_SIZE) {
+                throw new IOException("invalid address: " + Numeric.toHexString(address));
+            }
+            writeRow();
+            this.address = address;
+            this.start = this.position;
+            this.count = 0;
+            this.previousBlockNumber = 0;
+        }
+
+        private void addPosting(long blockNumber, int transactionIndex) throws IOException {
+            this.position += writeVarLong(this.postingsOutput, blockNumber - this.previousBlockNumber);
+            this.position += writeVarLong(this.postingsOutput, transactionIndex);
+            this.previousBlockNumber = blockNumber;
+            this.count++;
+        }
+
+        private void writeRow() throws IOException {
+            if (null == this.address) {
+                return;
+            }
+            this.output.write(this.address);
+            this.output.writeLong(this.postingsOffset + this.start);
+            this.output.writeInt((int) (this.position - this.start));
+            this.output.writeInt(this.count);
+            this.rowCount++;
+        }
+
+        /**
+         * Completes the segment file.
+         *
+         * @return the segment file.
+         * @throws IOException
+         */
+        private File commit() throws IOException {
+            writeRow();
+            if (this.rowCount != this.addressCount) {
+                throw new IOException("expected " + this.addressCount + " addresses, got " + this.rowCount);
+            }
+            this.postingsOutput.close();
+            Files.copy(this.postingsFile.toPath(), this.output);
+            this.output.close();
+            // readers never see a partially written segment
+            Files.move(this.tmpFile.toPath(), this.segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return this.segmentFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.output.close();
+            } finally {
+                try {
+                    this.postingsOutput.close();
+                } finally {
+                    Files.deleteIfExists(this.postingsFile.toPath());
+                    Files.deleteIfExists(this.tmpFile.toPath());
+                }
+            }
+        }
+
+        private static int writeVarLong(OutputStream output, long value) throws IOException {
+            int size = 1;
+            while ((value & ~0x7fL) != 0) {
+                output.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+                size++;
+            }
+            output.write((int) value);
+            return size;
+        }
+    }
+}
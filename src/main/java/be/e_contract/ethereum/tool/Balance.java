@@ -17,8 +17,12 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.web3j.crypto.Keys;
 import org.web3j.protocol.Web3j;
@@ -33,14 +37,36 @@ public class Balance implements Callable<Void> {
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
-    @CommandLine.Option(names = {"-a", "--address"}, required = true, description = "the key address")
+    @CommandLine.Option(names = {"-a", "--address"}, description = "the key address")
     private Address address;
 
     @CommandLine.Option(names = {"-n", "--number"}, description = "the optional block number")
     private BigInteger blockNumber;
 
+    @CommandLine.Option(names = {"--addresses-file"}, description = "file with one address per line, for many balances at one block")
+    private File addressesFile;
+
+    @CommandLine.Option(names = {"--batch-size"}, description = "number of addresses per JSON-RPC batch (default: ${DEFAULT-VALUE})")
+    private int batchSize = 100;
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, description = "number of concurrent batches (default: ${DEFAULT-VALUE})")
+    private int concurrency = 8;
+
+    @CommandLine.Option(names = {"--format"}, description = "output format for --addresses-file: ${COMPLETION-CANDIDATES} (default: CSV)")
+    private OutputFormat format = OutputFormat.TEXT;
+
     @Override
     public Void call() throws Exception {
+        // runs alongside the node calls
+        EthereumRates ethereumRates = new EthereumRates();
+        ethereumRates.prefetch();
+        if (null != this.addressesFile) {
+            return callSweep(ethereumRates);
+        }
+        if (null == this.address) {
+            Output.error("Provide --address or --addresses-file");
+            return null;
+        }
         System.out.println("Address: " + this.address.getAddress());
         String checksumAddress = Keys.toChecksumAddress(this.address.getAddress());
         System.out.println("Address (checksum): " + checksumAddress);
@@ -63,7 +89,6 @@ public class Balance implements Callable<Void> {
         BigDecimal balanceEther = Convert.fromWei(new BigDecimal(balance), Convert.Unit.ETHER);
         System.out.println("Balance: " + balanceEther + " ether");
 
-        EthereumRates ethereumRates = new EthereumRates();
         BigDecimal balanceUsd = ethereumRates.getDollar(balanceEther);
         BigDecimal balanceEur = ethereumRates.getEuro(balanceEther);
         System.out.println("Balance: " + balanceUsd + " USD");
@@ -71,4 +96,44 @@ public class Balance implements Callable<Void> {
 
         return null;
     }
+
+    private Void callSweep(EthereumRates ethereumRates) throws Exception {
+        if (this.batchSize < 1 || this.concurrency < 1) {
+            Output.error("Batch size and concurrency should be at least 1");
+            return null;
+        }
+        List<String> addresses = new ArrayList<>();
+        for (Address sweepAddress : Address.load(this.addressesFile)) {
+            addresses.add(sweepAddress.getAddress());
+        }
+        // one consistent view over all addresses
+        BigInteger balanceBlockNumber;
+        if (null != this.blockNumber) {
+            balanceBlockNumber = this.blockNumber;
+        } else {
+            balanceBlockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
+        }
+        DefaultBlockParameter block = DefaultBlockParameter.valueOf(balanceBlockNumber);
+        System.err.println("Block number: " + balanceBlockNumber);
+        System.err.println("Addresses: " + addresses.size());
+
+        long startMillis = System.currentTimeMillis();
+        OutputFormat recordFormat = OutputFormat.TEXT == this.format ? OutputFormat.CSV : this.format;
+        BalanceSweep balanceSweep = new BalanceSweep(this.web3, this.batchSize, this.concurrency);
+        try (RecordWriter recordWriter = RecordWriter.open(recordFormat, "address", "nonce", "balance", "error")) {
+            balanceSweep.sweep(addresses, block, recordWriter);
+        } catch (IOException ex) {
+            Output.error("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+        System.err.println("Fetched " + addresses.size() + " balances in " + (System.currentTimeMillis() - startMillis) + " ms");
+        BigDecimal totalBalanceEther = Convert.fromWei(new BigDecimal(balanceSweep.getTotalBalance()), Convert.Unit.ETHER);
+        System.err.println("Total balance: " + totalBalanceEther + " ether");
+        System.err.println("Total balance: " + ethereumRates.getDollar(totalBalanceEther) + " USD");
+        System.err.println("Total balance: " + ethereumRates.getEuro(totalBalanceEther) + " EUR");
+        if (balanceSweep.getErrorCount() > 0) {
+            Output.error("Addresses with errors: " + balanceSweep.getErrorCount());
+        }
+        return null;
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.response.EthGetBalance;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+/**
+ * Fetches nonce and balance of many addresses at one block. Addresses go out
+ * in JSON-RPC batches, with a configurable number of batches in flight.
+ * Records are written in the order of the given addresses, with the columns
+ * address, nonce, balance and error. An RPC error on a single address ends up
+ * in the error column, a failing batch aborts the sweep.
+ */
+public class BalanceSweep {
+
+    private final Web3j web3;
+
+    private final int batchSize;
+
+    private final int concurrency;
+
+    private BigInteger totalBalance;
+
+    private int errorCount;
+
+    public BalanceSweep(Web3j web3, int batchSize, int concurrency) {
+        if (batchSize < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("batch size and concurrency should be at least 1");
+        }
+        this.web3 = web3;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.totalBalance = BigInteger.ZERO;
+    }
+
+    /**
+     * Sweeps the given addresses. The totals accumulate over subsequent
+     * sweeps.
+     *
+     * @param addresses
+     * @param block
+     * @param recordWriter
+     * @throws Exception when a batch fails.
+     */
+    public void sweep(List<String> addresses, DefaultBlockParameter block, RecordWriter recordWriter) throws Exception {
+        int batchCount = (addresses.size() + this.batchSize - 1) / this.batchSize;
+        ExecutorService executorService = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "balance-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // results are written in the order of the addresses, while later batches are already in flight
+            Deque<Future<List<AddressBalance>>> window = new ArrayDeque<>(this.concurrency);
+            int submitted = 0;
+            for (int batchIdx = 0; batchIdx < batchCount; batchIdx++) {
+                while (submitted < batchCount && window.size() < this.concurrency) {
+                    List<String> batchAddresses = addresses.subList(submitted * this.batchSize,
+                            Math.min(addresses.size(), (submitted + 1) * this.batchSize));
+                    window.addLast(executorService.submit(() -> fetchBalances(batchAddresses, block)));
+                    submitted++;
+                }
+                List<AddressBalance> addressBalances;
+                try {
+                    addressBalances = window.removeFirst().get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw ex;
+                }
+                for (AddressBalance addressBalance : addressBalances) {
+                    if (null != addressBalance.error) {
+                        this.errorCount++;
+                    } else {
+                        this.totalBalance = this.totalBalance.add(addressBalance.balance);
+                    }
+                    recordWriter.write(addressBalance.address, addressBalance.nonce, addressBalance.balance, addressBalance.error);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Gives the total balance in wei of all addresses without errors.
+     *
+     * @return
+     */
+    public BigInteger getTotalBalance() {
+        return this.totalBalance;
+    }
+
+    public int getErrorCount() {
+        return this.errorCount;
+    }
+
+    private static final class AddressBalance {
+
+        private final String address;
+
+        private BigInteger nonce;
+
+        private BigInteger balance;
+
+        private String error;
+
+        private AddressBalance(String address) {
+            this.address = address;
+        }
+    }
+
+    private List<AddressBalance> fetchBalances(List<String> addresses, DefaultBlockParameter block) throws IOException {
+        RpcBatch batch = new RpcBatch(this.web3);
+        List<RpcBatch.Result<EthGetTransactionCount>> transactionCounts = new ArrayList<>(addresses.size());
+        List<RpcBatch.Result<EthGetBalance>> balances = new ArrayList<>(addresses.size());
+        for (String batchAddress : addresses) {
+            transactionCounts.add(batch.add(this.web3.ethGetTransactionCount(batchAddress, block)));
+            balances.add(batch.add(this.web3.ethGetBalance(batchAddress, block)));
+        }
+        batch.send();
+        List<AddressBalance> addressBalances = new ArrayList<>(addresses.size());
+        for (int idx = 0; idx < addresses.size(); idx++) {
+            AddressBalance addressBalance = new AddressBalance(addresses.get(idx));
+            EthGetTransactionCount ethGetTransactionCount = transactionCounts.get(idx).get();
+            EthGetBalance ethGetBalance = balances.get(idx).get();
+            if (ethGetTransactionCount.hasError()) {
+                addressBalance.error = ethGetTransactionCount.getError().getMessage();
+            } else if (ethGetBalance.hasError()) {
+                addressBalance.error = ethGetBalance.getError().getMessage();
+            } else {
+                addressBalance.nonce = ethGetTransactionCount.getTransactionCount();
+                addressBalance.balance = ethGetBalance.getBalance();
+            }
+            addressBalances.add(addressBalance);
+        }
+        return addressBalances;
+    }
+}
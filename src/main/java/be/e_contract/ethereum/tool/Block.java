@@ -45,6 +45,9 @@ public class Block implements Callable<Void> {
     @CommandLine.Option(names = {"-r", "--regular-transactions"}, description = "show the regular transactions")
     private boolean[] displayRegularTransactions;
 
+    @CommandLine.Option(names = {"--format"}, description = "output format: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private OutputFormat format = OutputFormat.TEXT;
+
     @Override
     public Void call() throws Exception {
         if (null == this.blockHash && null == this.blockNumber) {
@@ -69,6 +72,10 @@ public class Block implements Callable<Void> {
             }
             return;
         }
+        if (OutputFormat.TEXT != this.format) {
+            writeRecords(block);
+            return;
+        }
         System.out.println("Block number: " + block.getNumber());
         System.out.println("Block hash: " + block.getHash());
         BigInteger blockTimestamp = block.getTimestamp();
@@ -146,4 +153,30 @@ public class Block implements Callable<Void> {
         System.out.println("Parent hash: " + block.getParentHash());
         System.out.println("SHA3Uncles: " + block.getSha3Uncles());
     }
+
+    private void writeRecords(EthBlock.Block block) throws Exception {
+        if (this.displayTransactions == null && this.displayRegularTransactions == null) {
+            try (RecordWriter recordWriter = RecordWriter.open(this.format, "number", "hash", "timestamp", "transactions",
+                    "gasLimit", "gasUsed", "baseFeePerGas", "miner", "parentHash")) {
+                recordWriter.write(block.getNumber(), block.getHash(), block.getTimestamp(), block.getTransactions().size(),
+                        block.getGasLimit(), block.getGasUsed(), block.getBaseFeePerGas(), block.getMiner(), block.getParentHash());
+            }
+            return;
+        }
+        try (RecordWriter recordWriter = RecordWriter.open(this.format, "blockNumber", "hash", "from", "to", "value",
+                "contract", "gas", "gasPrice", "maxFeePerGas", "maxPriorityFeePerGas")) {
+            for (EthBlock.TransactionResult<?> transactionResult : block.getTransactions()) {
+                EthBlock.TransactionObject transaction = (EthBlock.TransactionObject) transactionResult.get();
+                boolean contract = !"0x".equals(transaction.getInput());
+                if (contract && this.displayTransactions == null) {
+                    // only the regular transactions
+                    continue;
+                }
+                BigInteger maxPriorityFeePerGas = null == transaction.getMaxPriorityFeePerGasRaw() ? null : transaction.getMaxPriorityFeePerGas();
+                recordWriter.write(block.getNumber(), transaction.getHash(), transaction.getFrom(), transaction.getTo(),
+                        transaction.getValue(), contract, transaction.getGas(), transaction.getGasPrice(),
+                        transaction.getMaxFeePerGas(), maxPriorityFeePerGas);
+            }
+        }
+    }
 }
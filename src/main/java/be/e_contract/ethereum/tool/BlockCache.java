@@ -0,0 +1,217 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk key/value store for immutable chain data. Values are appended to a
+ * segment file, while an index file keeps the key to segment position
+ * mapping. The index is loaded in memory when opening the cache. Entries are
+ * never updated or removed, so the caller should only store finalized data.
+ * <p>
+ * Several processes can share a cache, as appends happen under an exclusive
+ * file lock. Every index record carries its length and a checksum, so a torn
+ * record is detected, and the index is truncated to the last valid record.
+ */
+public class BlockCache implements AutoCloseable {
+
+    private static final String SEGMENT_FILE = "cache.dat";
+
+    private static final String INDEX_FILE = "cache.idx";
+
+    // index file format version, older caches are discarded
+    private static final int MAGIC = 0x42430002;
+
+    // key length, offset, value length, value checksum
+    private static final int MIN_RECORD_LENGTH = 2 + 8 + 4 + 4;
+
+    private static final int MAX_RECORD_LENGTH = MIN_RECORD_LENGTH + 0xffff;
+
+    private final FileChannel segmentChannel;
+
+    private final FileChannel indexChannel;
+
+    // offset, length, and checksum of the value
+    private final Map<String, long[]> index;
+
+    public BlockCache(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("could not create cache directory: " + directory.getAbsolutePath());
+        }
+        File segmentFile = new File(directory, SEGMENT_FILE);
+        File indexFile = new File(directory, INDEX_FILE);
+        this.segmentChannel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = new ConcurrentHashMap<>();
+        FileLock lock = this.indexChannel.lock();
+        try {
+            loadIndex();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        long segmentSize = this.segmentChannel.size();
+        long indexSize = this.indexChannel.size();
+        // position after the last valid record
+        long validSize = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.indexChannel.position(0))));
+        try {
+            if (indexSize >= 4 && input.readInt() == MAGIC) {
+                validSize = 4;
+                while (validSize + 4 <= indexSize) {
+                    int recordLength = input.readInt();
+                    if (recordLength < MIN_RECORD_LENGTH || recordLength > MAX_RECORD_LENGTH
+                            || validSize + 4 + recordLength + 4 > indexSize) {
+                        break;
+                    }
+                    byte[] record = new byte[recordLength];
+                    input.readFully(record);
+                    if (input.readInt() != (int) checksum(record)) {
+                        break;
+                    }
+                    ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+                    int keyLength = recordBuffer.getShort() & 0xffff;
+                    if (keyLength != recordLength - MIN_RECORD_LENGTH) {
+                        break;
+                    }
+                    validSize += 4 + recordLength + 4;
+                    String key = new String(record, 2, keyLength, StandardCharsets.UTF_8);
+                    recordBuffer.position(2 + keyLength);
+                    long offset = recordBuffer.getLong();
+                    int length = recordBuffer.getInt();
+                    long valueChecksum = recordBuffer.getInt() & 0xffffffffL;
+                    if (offset + length > segmentSize) {
+                        // value was truncated
+                        continue;
+                    }
+                    this.index.put(key, new long[]{offset, length, valueChecksum});
+                }
+            }
+        } catch (EOFException e) {
+            // partially written record
+        }
+        if (0 == validSize) {
+            // new cache, or an older format
+            this.segmentChannel.truncate(0);
+            this.indexChannel.truncate(0);
+            write(this.indexChannel, ByteBuffer.allocate(4).putInt(0, MAGIC), 0);
+        } else if (validSize < indexSize) {
+            this.indexChannel.truncate(validSize);
+        }
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    public String get(String key) throws IOException {
+        long[] position = this.index.get(key);
+        if (null == position) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) position[1]);
+        long offset = position[0];
+        while (buffer.hasRemaining()) {
+            int read = this.segmentChannel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                return null;
+            }
+        }
+        if (checksum(buffer.array()) != position[2]) {
+            // treat as a cache miss
+            return null;
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String key) {
+        return this.index.containsKey(key);
+    }
+
+    public synchronized void put(String key, String value) throws IOException {
+        if (this.index.containsKey(key)) {
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        long valueChecksum = checksum(data);
+        byte[] keyData = key.getBytes(StandardCharsets.UTF_8);
+        if (keyData.length > 0xffff) {
+            throw new IOException("key too long");
+        }
+        long offset;
+        FileLock lock = this.indexChannel.lock();
+        try {
+            // other processes might have appended since we last looked
+            offset = this.segmentChannel.size();
+            write(this.segmentChannel, ByteBuffer.wrap(data), offset);
+
+            int recordLength = MIN_RECORD_LENGTH + keyData.length;
+            ByteBuffer recordBuffer = ByteBuffer.allocate(recordLength);
+            recordBuffer.putShort((short) keyData.length);
+            recordBuffer.put(keyData);
+            recordBuffer.putLong(offset);
+            recordBuffer.putInt(data.length);
+            recordBuffer.putInt((int) valueChecksum);
+            ByteBuffer indexBuffer = ByteBuffer.allocate(4 + recordLength + 4);
+            indexBuffer.putInt(recordLength);
+            indexBuffer.put(recordBuffer.array());
+            indexBuffer.putInt((int) checksum(recordBuffer.array()));
+            indexBuffer.flip();
+            write(this.indexChannel, indexBuffer, this.indexChannel.size());
+        } finally {
+            lock.release();
+        }
+        this.index.put(key, new long[]{offset, data.length, valueChecksum});
+    }
+
+    public int size() {
+        return this.index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.segmentChannel.close();
+        this.indexChannel.close();
+    }
+}
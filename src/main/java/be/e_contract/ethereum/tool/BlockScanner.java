@@ -0,0 +1,136 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scans a range of blocks, from a given block number downwards, while keeping
+ * a configurable number of block requests in flight. Blocks are handed over to
+ * the visitor in block order. At most concurrency fetched blocks are kept in
+ * memory, so the scanner only fetches ahead as fast as the visitor consumes.
+ *
+ * @param <T> the type of the fetched block.
+ */
+public class BlockScanner<T> {
+
+    public interface BlockFetcher<T> {
+
+        T fetch(BigInteger blockNumber) throws IOException;
+    }
+
+    public interface BlockVisitor<T> {
+
+        void visit(BigInteger blockNumber, T block) throws Exception;
+    }
+
+    private final BlockFetcher<T> fetcher;
+
+    private final int concurrency;
+
+    private long blockCount;
+
+    private long durationMillis;
+
+    public BlockScanner(BlockFetcher<T> fetcher, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency should be at least 1");
+        }
+        this.fetcher = fetcher;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Scans count blocks, starting at fromBlockNumber going down. Scanning
+     * stops at the genesis block. The statistics accumulate over subsequent
+     * scans.
+     *
+     * @param fromBlockNumber
+     * @param count
+     * @param visitor
+     * @return the number of visited blocks.
+     * @throws Exception
+     */
+    public long scan(BigInteger fromBlockNumber, long count, BlockVisitor<T> visitor) throws Exception {
+        long n = Math.min(count, fromBlockNumber.longValueExact() + 1);
+        long startMillis = System.currentTimeMillis();
+        long visited = 0;
+        ExecutorService executorService = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "block-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<T>> window = new ArrayDeque<>(this.concurrency);
+            long submitted = 0;
+            while (visited < n) {
+                while (submitted < n && window.size() < this.concurrency) {
+                    BigInteger blockNumber = fromBlockNumber.subtract(BigInteger.valueOf(submitted));
+                    window.addLast(executorService.submit(() -> this.fetcher.fetch(blockNumber)));
+                    submitted++;
+                }
+                BigInteger blockNumber = fromBlockNumber.subtract(BigInteger.valueOf(visited));
+                T block;
+                try {
+                    block = window.removeFirst().get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw ex;
+                }
+                visitor.visit(blockNumber, block);
+                visited++;
+            }
+        } finally {
+            executorService.shutdownNow();
+            this.blockCount += visited;
+            this.durationMillis += System.currentTimeMillis() - startMillis;
+        }
+        return visited;
+    }
+
+    public long getBlockCount() {
+        return this.blockCount;
+    }
+
+    public double getBlocksPerSecond() {
+        if (0 == this.durationMillis) {
+            return 0;
+        }
+        return (double) this.blockCount * 1000 / this.durationMillis;
+    }
+
+    public void printStatistics() {
+        printStatistics(System.out);
+    }
+
+    public void printStatistics(PrintStream out) {
+        out.println("Scanned " + this.blockCount + " blocks in " + this.durationMillis + " ms ("
+                + String.format("%.1f", getBlocksPerSecond()) + " blocks/sec)");
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+/**
+ * Transmits many signed transactions via JSON-RPC batches. The transactions of
+ * a sender go out in nonce order, up to batch size per batch, as nodes queue
+ * future nonces. Once a transaction of a sender fails, the remaining nonces of
+ * that sender are skipped, as they can never be mined. Transient errors are
+ * retried with exponential backoff.
+ */
+public class BulkTransmitter {
+
+    public static final class SignedTransaction {
+
+        private final String name;
+
+        private final String transaction;
+
+        private final String hash;
+
+        private final String from;
+
+        private final BigInteger nonce;
+
+        private String status;
+
+        private String error;
+
+        public SignedTransaction(String name, String transaction, String from, BigInteger nonce) {
+            this.name = name;
+            this.transaction = transaction;
+            this.hash = Hash.sha3(transaction);
+            this.from = from;
+            this.nonce = nonce;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public String getHash() {
+            return this.hash;
+        }
+
+        public String getFrom() {
+            return this.from;
+        }
+
+        public BigInteger getNonce() {
+            return this.nonce;
+        }
+
+        /**
+         * Gives the transmission status: sent, known, failed or skipped.
+         *
+         * @return
+         */
+        public String getStatus() {
+            return this.status;
+        }
+
+        public String getError() {
+            return this.error;
+        }
+
+        private boolean isSent() {
+            return "sent".equals(this.status) || "known".equals(this.status);
+        }
+    }
+
+    private final Web3j web3;
+
+    private final int batchSize;
+
+    private final int retries;
+
+    private final long initialBackoffMillis;
+
+    public BulkTransmitter(Web3j web3, int batchSize, int retries, long initialBackoffMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size should be at least 1");
+        }
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries should not be negative");
+        }
+        this.web3 = web3;
+        this.batchSize = batchSize;
+        this.retries = retries;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Transmits the given signed transactions. Every transaction gets a record
+     * with the columns name, hash, from, nonce, status and error.
+     *
+     * @param signedTransactions
+     * @param recordWriter
+     * @return the number of sent or already known transactions.
+     * @throws Exception
+     */
+    public int transmit(List<SignedTransaction> signedTransactions, RecordWriter recordWriter) throws Exception {
+        List<SignedTransaction> sortedTransactions = new ArrayList<>(signedTransactions);
+        // a node only accepts the next nonce of a sender once it knows the previous one
+        sortedTransactions.sort(Comparator.comparing((SignedTransaction signedTransaction) -> signedTransaction.from)
+                .thenComparing(signedTransaction -> signedTransaction.nonce));
+        Map<String, Deque<SignedTransaction>> chains = new LinkedHashMap<>();
+        for (SignedTransaction signedTransaction : sortedTransactions) {
+            chains.computeIfAbsent(signedTransaction.from, from -> new ArrayDeque<>()).add(signedTransaction);
+        }
+        int sentCount = 0;
+        while (!chains.isEmpty()) {
+            // up to a batch of the next nonces of every sender, so a failure stops the chain before the remaining nonces get sent
+            List<SignedTransaction> round = new ArrayList<>();
+            for (Deque<SignedTransaction> chain : chains.values()) {
+                for (int idx = 0; idx < this.batchSize && !chain.isEmpty(); idx++) {
+                    round.add(chain.poll());
+                }
+            }
+            for (int offset = 0; offset < round.size(); offset += this.batchSize) {
+                sendBatch(round.subList(offset, Math.min(offset + this.batchSize, round.size())));
+            }
+            Set<String> failedSenders = new HashSet<>();
+            for (SignedTransaction signedTransaction : round) {
+                write(recordWriter, signedTransaction);
+                if (signedTransaction.isSent()) {
+                    sentCount++;
+                } else {
+                    failedSenders.add(signedTransaction.from);
+                }
+            }
+            for (String failedSender : failedSenders) {
+                Deque<SignedTransaction> chain = chains.get(failedSender);
+                for (SignedTransaction skippedTransaction : chain) {
+                    skippedTransaction.status = "skipped";
+                    skippedTransaction.error = "earlier nonce failed";
+                    write(recordWriter, skippedTransaction);
+                }
+                chain.clear();
+            }
+            chains.values().removeIf(Deque::isEmpty);
+        }
+        return sentCount;
+    }
+
+    private void write(RecordWriter recordWriter, SignedTransaction signedTransaction) throws IOException {
+        if (!signedTransaction.isSent()) {
+            Output.error(signedTransaction.name + ": " + signedTransaction.status + ": " + signedTransaction.error);
+        }
+        recordWriter.write(signedTransaction.name, signedTransaction.hash, signedTransaction.from,
+                signedTransaction.nonce, signedTransaction.status, signedTransaction.error);
+    }
+
+    private void sendBatch(List<SignedTransaction> batch) throws InterruptedException {
+        List<SignedTransaction> pending = batch;
+        long backoffMillis = this.initialBackoffMillis;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                System.out.println("Retrying " + pending.size() + " transactions in " + backoffMillis + " ms ...");
+                Thread.sleep(backoffMillis);
+                backoffMillis *= 2;
+            }
+            boolean lastAttempt = attempt >= this.retries;
+            RpcBatch rpcBatch = new RpcBatch(this.web3);
+            List<RpcBatch.Result<EthSendTransaction>> rpcResults = new ArrayList<>(pending.size());
+            for (SignedTransaction signedTransaction : pending) {
+                rpcResults.add(rpcBatch.add(this.web3.ethSendRawTransaction(signedTransaction.transaction)));
+            }
+            try {
+                rpcBatch.send();
+            } catch (IOException ex) {
+                if (lastAttempt) {
+                    for (SignedTransaction signedTransaction : pending) {
+                        signedTransaction.status = "failed";
+                        signedTransaction.error = ex.getMessage();
+                    }
+                    return;
+                }
+                continue;
+            }
+            List<SignedTransaction> retry = new ArrayList<>();
+            for (int idx = 0; idx < pending.size(); idx++) {
+                SignedTransaction signedTransaction = pending.get(idx);
+                EthSendTransaction ethSendTransaction = rpcResults.get(idx).get();
+                if (!ethSendTransaction.hasError()) {
+                    signedTransaction.status = "sent";
+                    signedTransaction.error = null;
+                    continue;
+                }
+                Response.Error error = ethSendTransaction.getError();
+                String errorMessage = null == error.getMessage() ? "" : error.getMessage().toLowerCase();
+                if (errorMessage.contains("already known") || errorMessage.contains("already imported")) {
+                    // for example from an earlier interrupted run
+                    signedTransaction.status = "known";
+                    signedTransaction.error = null;
+                } else if (!lastAttempt && isTransient(error.getCode(), errorMessage)) {
+                    retry.add(signedTransaction);
+                } else {
+                    signedTransaction.status = "failed";
+                    signedTransaction.error = error.getMessage();
+                }
+            }
+            pending = retry;
+        }
+    }
+
+    private static boolean isTransient(int code, String errorMessage) {
+        // -32005: limit exceeded
+        return code == -32005 || errorMessage.contains("timeout") || errorMessage.contains("rate limit")
+                || errorMessage.contains("too many requests") || errorMessage.contains("try again");
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Async;
+import org.web3j.utils.Numeric;
+
+/**
+ * Serves historical blocks, transactions and receipts from a local on-disk
+ * cache. Only data that is buried under enough confirmations gets cached, so a
+ * chain reorganization cannot leave us with stale entries. The cache is kept
+ * per chain identifier.
+ */
+public class CachingWeb3jService extends ForwardingWeb3jService {
+
+    private static final Set<String> CACHEABLE_METHODS = new HashSet<>(Arrays.asList(
+            "eth_getBlockByNumber",
+            "eth_getBlockByHash",
+            "eth_getTransactionByHash",
+            "eth_getTransactionReceipt"));
+
+    // refresh the latest block number at most every 10 seconds
+    private static final long LATEST_BLOCK_REFRESH_MILLIS = 10 * 1000;
+
+    private final File directory;
+
+    private final long confirmations;
+
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong hits;
+
+    private final AtomicLong misses;
+
+    private BlockCache blockCache;
+
+    private long latestBlockNumber;
+
+    private long latestBlockNumberTimestamp;
+
+    public CachingWeb3jService(Web3jService web3jService, File directory, long confirmations) {
+        super(web3jService);
+        this.directory = directory;
+        this.confirmations = confirmations;
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.latestBlockNumber = -1;
+    }
+
+    /**
+     * Response type used towards the node, so we get the result as is.
+     */
+    public static class RawResponse extends Response<JsonNode> {
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        String key = getCacheKey(request);
+        if (null == key) {
+            return this.web3jService.send(request, responseType);
+        }
+        String cachedResult = getBlockCache().get(key);
+        if (null != cachedResult) {
+            this.hits.incrementAndGet();
+            return toResponse(request.getId(), this.objectMapper.readTree(cachedResult), null, responseType);
+        }
+        this.misses.incrementAndGet();
+        RawResponse rawResponse = this.web3jService.send(toRawRequest(request), RawResponse.class);
+        store(key, rawResponse);
+        return toResponse(request.getId(), rawResponse.getResult(), rawResponse.getError(), responseType);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        if (null == getCacheKey(request)) {
+            return this.web3jService.sendAsync(request, responseType);
+        }
+        return Async.run(() -> send(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        boolean cacheable = false;
+        for (Request<?, ? extends Response<?>> request : requests) {
+            if (null != getCacheKey(request)) {
+                cacheable = true;
+                break;
+            }
+        }
+        if (!cacheable) {
+            return this.web3jService.sendBatch(batchRequest);
+        }
+        BlockCache cache = getBlockCache();
+        Response<?>[] responses = new Response<?>[requests.size()];
+        String[] keys = new String[requests.size()];
+        BatchRequest missBatchRequest = new BatchRequest(this.web3jService);
+        List<Integer> missIndexes = new LinkedList<>();
+        for (int idx = 0; idx < requests.size(); idx++) {
+            Request<?, ? extends Response<?>> request = requests.get(idx);
+            String key = getCacheKey(request);
+            keys[idx] = key;
+            String cachedResult = null == key ? null : cache.get(key);
+            if (null != cachedResult) {
+                this.hits.incrementAndGet();
+                responses[idx] = toResponse(request.getId(), this.objectMapper.readTree(cachedResult), null, request.getResponseType());
+                continue;
+            }
+            if (null != key) {
+                this.misses.incrementAndGet();
+            }
+            missBatchRequest.add(toRawRequest(request));
+            missIndexes.add(idx);
+        }
+        if (!missIndexes.isEmpty()) {
+            List<? extends Response<?>> missResponses = this.web3jService.sendBatch(missBatchRequest).getResponses();
+            if (missResponses.size() != missIndexes.size()) {
+                // let the caller fall back to individual requests
+                return new BatchResponse(requests, Collections.emptyList());
+            }
+            Map<Long, RawResponse> missResponsesById = new HashMap<>();
+            for (Response<?> missResponse : missResponses) {
+                missResponsesById.put(missResponse.getId(), (RawResponse) missResponse);
+            }
+            int missIdx = 0;
+            for (int idx : missIndexes) {
+                Request<?, ? extends Response<?>> request = requests.get(idx);
+                RawResponse rawResponse = missResponsesById.get(request.getId());
+                if (null == rawResponse) {
+                    rawResponse = (RawResponse) missResponses.get(missIdx);
+                }
+                if (null != keys[idx]) {
+                    store(keys[idx], rawResponse);
+                }
+                responses[idx] = toResponse(request.getId(), rawResponse.getResult(), rawResponse.getError(), request.getResponseType());
+                missIdx++;
+            }
+        }
+        return new BatchResponse(requests, Arrays.asList(responses));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return Async.run(() -> sendBatch(batchRequest));
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (null != this.blockCache) {
+                this.blockCache.close();
+            }
+        }
+        super.close();
+    }
+
+    private String getCacheKey(Request<?, ?> request) {
+        String method = request.getMethod();
+        if (!CACHEABLE_METHODS.contains(method)) {
+            return null;
+        }
+        List<?> params = request.getParams();
+        if (params.isEmpty()) {
+            return null;
+        }
+        if ("eth_getBlockByNumber".equals(method) && !params.get(0).toString().startsWith("0x")) {
+            // latest, pending, and friends
+            return null;
+        }
+        StringBuilder key = new StringBuilder(method);
+        for (Object param : params) {
+            key.append(':');
+            key.append(param.toString().toLowerCase());
+        }
+        return key.toString();
+    }
+
+    private Request<?, RawResponse> toRawRequest(Request<?, ?> request) {
+        Request<?, RawResponse> rawRequest = new Request<>(request.getMethod(), request.getParams(),
+                this.web3jService, RawResponse.class);
+        rawRequest.setId(request.getId());
+        return rawRequest;
+    }
+
+    private <T extends Response> T toResponse(long id, JsonNode result, Response.Error error, Class<T> responseType) throws IOException {
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        if (null != error) {
+            response.set("error", this.objectMapper.valueToTree(error));
+        } else {
+            response.set("result", result);
+        }
+        return this.objectMapper.treeToValue(response, responseType);
+    }
+
+    private void store(String key, RawResponse rawResponse) throws IOException {
+        if (rawResponse.hasError()) {
+            return;
+        }
+        JsonNode result = rawResponse.getResult();
+        if (null == result || !result.isObject()) {
+            // unknown block or transaction
+            return;
+        }
+        JsonNode blockNumberNode = key.startsWith("eth_getBlock") ? result.get("number") : result.get("blockNumber");
+        if (null == blockNumberNode || !blockNumberNode.isTextual()) {
+            // pending block or transaction
+            return;
+        }
+        long blockNumber = Numeric.decodeQuantity(blockNumberNode.asText()).longValue();
+        if (!isFinal(blockNumber)) {
+            return;
+        }
+        getBlockCache().put(key, this.objectMapper.writeValueAsString(result));
+    }
+
+    private synchronized boolean isFinal(long blockNumber) throws IOException {
+        long now = System.currentTimeMillis();
+        if (blockNumber > this.latestBlockNumber - this.confirmations
+                && now - this.latestBlockNumberTimestamp > LATEST_BLOCK_REFRESH_MILLIS) {
+            this.latestBlockNumber = sendRaw("eth_blockNumber").longValue();
+            this.latestBlockNumberTimestamp = now;
+        }
+        return blockNumber <= this.latestBlockNumber - this.confirmations;
+    }
+
+    private synchronized BlockCache getBlockCache() throws IOException {
+        if (null == this.blockCache) {
+            // every chain gets its own cache
+            BigInteger chainId = sendRaw("eth_chainId");
+            this.blockCache = new BlockCache(new File(this.directory, chainId.toString()));
+        }
+        return this.blockCache;
+    }
+
+    private BigInteger sendRaw(String method) throws IOException {
+        Request<?, RawResponse> request = new Request<>(method, Collections.emptyList(),
+                this.web3jService, RawResponse.class);
+        RawResponse response = request.send();
+        if (response.hasError()) {
+            throw new IOException(method + " error: " + response.getError().getMessage());
+        }
+        return Numeric.decodeQuantity(response.getResult().asText());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Ether exchange rates via the Coinbase API.
+ */
+public class CoinbaseRateProvider implements RateProvider {
+
+    public static final String DEFAULT_URL = "https://api.coinbase.com/v2/exchange-rates?currency=ETH";
+
+    // rates are nice to have, so we never wait long for them
+    private static final long TIMEOUT_MILLIS = 3000;
+
+    // shared, so the connection pool survives across lookups
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+            .readTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+            .callTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    private final String url;
+
+    public CoinbaseRateProvider() {
+        this(DEFAULT_URL);
+    }
+
+    public CoinbaseRateProvider(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public Map<String, BigDecimal> fetchRates() throws IOException {
+        Request request = new Request.Builder().url(this.url).build();
+        try (Response response = HTTP_CLIENT.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || null == body) {
+                throw new IOException("exchange rates HTTP status: " + response.code());
+            }
+            ObjectMapper objectMapper = new ObjectMapper();
+            JsonNode rootNode = objectMapper.readTree(body.byteStream());
+            JsonNode ratesNode = rootNode.path("data").path("rates");
+            if (!ratesNode.isObject()) {
+                throw new IOException("no exchange rates in response");
+            }
+            Map<String, BigDecimal> rates = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = ratesNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                rates.put(field.getKey(), new BigDecimal(field.getValue().asText()));
+            }
+            return rates;
+        }
+    }
+}
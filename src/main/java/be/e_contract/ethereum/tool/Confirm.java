@@ -17,18 +17,32 @@
  */
 package be.e_contract.ethereum.tool;
 
+import io.reactivex.disposables.Disposable;
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import org.apache.commons.io.FileUtils;
 import org.web3j.crypto.Hash;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthGetBalance;
+import org.web3j.protocol.core.methods.response.EthGetBlockTransactionCountByNumber;
 import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
 import org.web3j.protocol.core.methods.response.EthTransaction;
 import org.web3j.protocol.core.methods.response.Transaction;
@@ -45,46 +59,81 @@ public class Confirm implements Callable<Void> {
     @CommandLine.Option(names = {"-f", "--file"}, description = "the transaction file")
     private File transactionFile;
 
-    @CommandLine.Option(names = {"-h", "--hash"}, description = "the transaction hash")
-    private String transactionHash;
+    @CommandLine.Option(names = {"-h", "--hash"}, split = ",", description = "the transaction hash, can be repeated when watching")
+    private List<String> transactionHashes;
+
+    @CommandLine.Option(names = {"--hashes-file"}, description = "file with one transaction hash per line, for watching")
+    private File hashesFile;
+
+    @CommandLine.Option(names = {"-w", "--watch"}, description = "follow new blocks until all transactions are final")
+    private boolean watch;
+
+    @CommandLine.Option(names = {"-n", "--confirmations"}, description = "number of confirming blocks for a transaction to be final when watching (default: ${DEFAULT-VALUE})")
+    private int confirmations = 12;
+
+    // number of receipts we request per batch
+    private static final int RECEIPT_BATCH_SIZE = 100;
 
     @Override
     public Void call() throws Exception {
-        if (null == this.transactionFile && null == this.transactionHash) {
+        // keep the order as given by the user for the output
+        Set<String> hashes = new LinkedHashSet<>();
+        if (null != this.transactionFile) {
+            if (!this.transactionFile.exists()) {
+                Output.error("Transaction file not found");
+                return null;
+            }
+            String transactionHex = FileUtils.readFileToString(this.transactionFile, "UTF-8");
+            hashes.add(Hash.sha3(transactionHex));
+        }
+        if (null != this.transactionHashes) {
+            for (String transactionHash : this.transactionHashes) {
+                hashes.add(transactionHash.toLowerCase());
+            }
+        }
+        if (null != this.hashesFile) {
+            for (String line : Files.readAllLines(this.hashesFile.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    hashes.add(line.toLowerCase());
+                }
+            }
+        }
+        if (hashes.isEmpty()) {
             Output.error("Provide transaction file or transaction hash");
             picocli.CommandLine.usage(this, System.out);
             return null;
         }
-        String _transactionHash;
-        if (null != transactionFile) {
-            if (!this.transactionFile.exists()) {
-                Output.error("Transaction file not found");
+        for (String hash : hashes) {
+            if (!hash.matches("0x[0-9a-f]{64}")) {
+                Output.error("Invalid transaction hash: " + hash);
                 return null;
             }
-            String transactionHex = FileUtils.readFileToString(this.transactionFile, "UTF-8");
-            _transactionHash = Hash.sha3(transactionHex);
-        } else {
-            _transactionHash = this.transactionHash.toLowerCase();
         }
+        if (this.watch) {
+            return callWatch(hashes);
+        }
+        if (hashes.size() > 1) {
+            Output.error("Use --watch for multiple transactions");
+            return null;
+        }
+        String _transactionHash = hashes.iterator().next();
         System.out.println("Transaction hash: " + _transactionHash);
-        EthGetTransactionReceipt getTransactionReceipt = this.web3.ethGetTransactionReceipt(_transactionHash).send();
-        Optional<TransactionReceipt> transactionReceiptOptional = getTransactionReceipt.getTransactionReceipt();
+        RpcBatch batch = new RpcBatch(this.web3);
+        RpcBatch.Result<EthGetTransactionReceipt> getTransactionReceipt = batch.add(this.web3.ethGetTransactionReceipt(_transactionHash));
+        RpcBatch.Result<EthBlockNumber> ethBlockNumber = batch.add(this.web3.ethBlockNumber());
+        RpcBatch.Result<EthTransaction> ethTransaction = batch.add(this.web3.ethGetTransactionByHash(_transactionHash));
+        batch.send();
+        Optional<TransactionReceipt> transactionReceiptOptional = getTransactionReceipt.get().getTransactionReceipt();
         if (!transactionReceiptOptional.isPresent()) {
             System.out.println("Transaction receipt not available");
-            EthBlock pendingEthBlock = this.web3.ethGetBlockByNumber(DefaultBlockParameterName.PENDING, true).send();
-            EthBlock.Block pendingBlock = pendingEthBlock.getBlock();
-            boolean pendingTransaction = false;
-            for (EthBlock.TransactionResult transactionResult : pendingBlock.getTransactions()) {
-                EthBlock.TransactionObject transactionObject = (EthBlock.TransactionObject) transactionResult;
-                Transaction transaction = transactionObject.get();
-                if (_transactionHash.equals(transaction.getHash())) {
-                    pendingTransaction = true;
-                    break;
-                }
-            }
-            if (pendingTransaction) {
+            // the node knows the transaction but has no receipt, so it is pending
+            if (ethTransaction.get().getTransaction().isPresent()) {
                 System.out.println("Transaction is pending");
-                System.out.println("Number of pending transactions: " + pendingBlock.getTransactions().size());
+                EthGetBlockTransactionCountByNumber pendingTransactionCount = this.web3.ethGetBlockTransactionCountByNumber(DefaultBlockParameterName.PENDING).send();
+                if (!pendingTransactionCount.hasError()) {
+                    System.out.println("Number of pending transactions: " + pendingTransactionCount.getTransactionCount());
+                }
             } else {
                 Output.warning("Transaction is not pending");
             }
@@ -101,18 +150,20 @@ public class Confirm implements Callable<Void> {
         System.out.println("Transaction block number: " + transactionBlockNumber);
         BigDecimal gasUsed = new BigDecimal(transactionReceipt.getGasUsed());
         System.out.println("Gas used: " + gasUsed + " gas units");
-        EthBlock ethBlock = this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(transactionBlockNumber), false).send();
-        EthBlock.Block block = ethBlock.getBlock();
+        RpcBatch.Result<EthBlock> ethBlock = batch.add(this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(transactionBlockNumber), false));
+        RpcBatch.Result<EthGetBalance> fromBalance = batch.add(this.web3.ethGetBalance(transactionReceipt.getFrom(), DefaultBlockParameterName.LATEST));
+        RpcBatch.Result<EthGetBalance> toBalance = batch.add(this.web3.ethGetBalance(transactionReceipt.getTo(), DefaultBlockParameterName.LATEST));
+        batch.send();
+        EthBlock.Block block = ethBlock.get().getBlock();
         BigInteger timestamp = block.getTimestamp();
         Date timestampDate = new Date(timestamp.multiply(BigInteger.valueOf(1000)).longValue());
         System.out.println("Transaction block timestamp: " + timestampDate);
-        BigInteger latestBlockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
+        BigInteger latestBlockNumber = ethBlockNumber.get().getBlockNumber();
         System.out.println("Latest block number: " + latestBlockNumber);
         // add one, since the transaction block also serves as confirmation
         BigInteger blocksOnTop = latestBlockNumber.subtract(transactionBlockNumber).add(BigInteger.ONE);
         System.out.println("Number of confirming blocks: " + blocksOnTop);
-        EthTransaction ethTransaction = this.web3.ethGetTransactionByHash(_transactionHash).send();
-        Transaction transaction = ethTransaction.getTransaction().get();
+        Transaction transaction = ethTransaction.get().getTransaction().get();
         BigInteger nonce = transaction.getNonce();
         System.out.println("Nonce: " + nonce);
         BigDecimal valueWei = new BigDecimal(transaction.getValue());
@@ -124,12 +175,175 @@ public class Confirm implements Callable<Void> {
         BigDecimal transactionCostWei = gasUsed.multiply(gasPriceWei);
         BigDecimal transactionCostEther = Convert.fromWei(transactionCostWei, Convert.Unit.ETHER);
         System.out.println("Transaction cost: " + transactionCostEther + " ether");
-        BigInteger fromBalance = this.web3.ethGetBalance(transactionReceipt.getFrom(), DefaultBlockParameterName.LATEST).send().getBalance();
-        BigDecimal fromBalanceEther = Convert.fromWei(new BigDecimal(fromBalance), Convert.Unit.ETHER);
+        BigDecimal fromBalanceEther = Convert.fromWei(new BigDecimal(fromBalance.get().getBalance()), Convert.Unit.ETHER);
         System.out.println("Balance from address: " + fromBalanceEther + " ether");
-        BigInteger toBalance = this.web3.ethGetBalance(transactionReceipt.getTo(), DefaultBlockParameterName.LATEST).send().getBalance();
-        BigDecimal toBalanceEther = Convert.fromWei(new BigDecimal(toBalance), Convert.Unit.ETHER);
+        BigDecimal toBalanceEther = Convert.fromWei(new BigDecimal(toBalance.get().getBalance()), Convert.Unit.ETHER);
         System.out.println("Balance to address: " + toBalanceEther + " ether");
         return null;
     }
+
+    private Void callWatch(Set<String> hashes) throws Exception {
+        Map<String, WatchedTransaction> watchedTransactions = new LinkedHashMap<>();
+        for (String hash : hashes) {
+            watchedTransactions.put(hash, new WatchedTransaction(hash));
+        }
+        System.out.println("Watching " + hashes.size() + " transaction(s) for " + this.confirmations + " confirmations ...");
+        // some transactions might already be included
+        long latestBlockNumber = this.web3.ethBlockNumber().send().getBlockNumber().longValueExact();
+        fetchReceipts(new ArrayList<>(watchedTransactions.values()));
+        if (checkConfirmations(watchedTransactions, latestBlockNumber)) {
+            return null;
+        }
+        CountDownLatch finalLatch = new CountDownLatch(1);
+        long[] lastBlockNumber = new long[]{latestBlockNumber};
+        Disposable blockDisposable = this.web3.blockFlowable(false).subscribe((EthBlock ethBlock) -> {
+            try {
+                EthBlock.Block head = ethBlock.getBlock();
+                long headNumber = head.getNumber().longValueExact();
+                List<EthBlock.Block> blocks = new ArrayList<>();
+                boolean missedBlocksComplete = true;
+                if (headNumber > lastBlockNumber[0] + 1) {
+                    // we might have missed some blocks
+                    RpcBatch batch = new RpcBatch(this.web3);
+                    List<RpcBatch.Result<EthBlock>> missedBlocks = new ArrayList<>();
+                    for (long number = lastBlockNumber[0] + 1; number < headNumber; number++) {
+                        missedBlocks.add(batch.add(this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(number)), false)));
+                    }
+                    batch.send();
+                    for (RpcBatch.Result<EthBlock> missedBlock : missedBlocks) {
+                        EthBlock.Block block = missedBlock.get().getBlock();
+                        if (null == block) {
+                            // the node is lagging behind
+                            missedBlocksComplete = false;
+                            continue;
+                        }
+                        blocks.add(block);
+                    }
+                }
+                blocks.add(head);
+                List<WatchedTransaction> matches = new ArrayList<>();
+                for (EthBlock.Block block : blocks) {
+                    for (EthBlock.TransactionResult transactionResult : block.getTransactions()) {
+                        WatchedTransaction watchedTransaction = watchedTransactions.get(((String) transactionResult.get()).toLowerCase());
+                        if (null != watchedTransaction) {
+                            matches.add(watchedTransaction);
+                        }
+                    }
+                }
+                // only receipts for our own transactions
+                fetchReceipts(matches);
+                if (missedBlocksComplete) {
+                    lastBlockNumber[0] = headNumber;
+                } else {
+                    // we pick up the missing blocks again on the next head
+                    Output.warning("Missing blocks before block " + headNumber);
+                }
+                if (checkConfirmations(watchedTransactions, headNumber)) {
+                    finalLatch.countDown();
+                }
+            } catch (IOException ex) {
+                // we pick up the blocks again on the next head
+                Output.warning("Error processing block: " + ex.getMessage());
+            }
+        }, error -> {
+            Output.error(error.getMessage());
+            finalLatch.countDown();
+        });
+        try {
+            finalLatch.await();
+        } finally {
+            blockDisposable.dispose();
+        }
+        return null;
+    }
+
+    private void fetchReceipts(List<WatchedTransaction> watchedTransactions) throws IOException {
+        for (int offset = 0; offset < watchedTransactions.size(); offset += RECEIPT_BATCH_SIZE) {
+            List<WatchedTransaction> chunk = watchedTransactions.subList(offset, Math.min(offset + RECEIPT_BATCH_SIZE, watchedTransactions.size()));
+            RpcBatch batch = new RpcBatch(this.web3);
+            List<RpcBatch.Result<EthGetTransactionReceipt>> receipts = new ArrayList<>(chunk.size());
+            for (WatchedTransaction watchedTransaction : chunk) {
+                receipts.add(batch.add(this.web3.ethGetTransactionReceipt(watchedTransaction.hash)));
+            }
+            batch.send();
+            for (int idx = 0; idx < chunk.size(); idx++) {
+                WatchedTransaction watchedTransaction = chunk.get(idx);
+                Optional<TransactionReceipt> transactionReceiptOptional = receipts.get(idx).get().getTransactionReceipt();
+                if (!transactionReceiptOptional.isPresent()) {
+                    if (null != watchedTransaction.blockHash) {
+                        Output.warning("Transaction " + watchedTransaction.hash + " no longer included, chain reorganization");
+                        watchedTransaction.blockHash = null;
+                    }
+                    continue;
+                }
+                TransactionReceipt transactionReceipt = transactionReceiptOptional.get();
+                if (transactionReceipt.getBlockHash().equals(watchedTransaction.blockHash)) {
+                    continue;
+                }
+                if (null != watchedTransaction.blockHash) {
+                    Output.warning("Transaction " + watchedTransaction.hash + " moved to another block, chain reorganization");
+                }
+                watchedTransaction.blockHash = transactionReceipt.getBlockHash();
+                watchedTransaction.blockNumber = transactionReceipt.getBlockNumber().longValueExact();
+                watchedTransaction.statusOK = transactionReceipt.isStatusOK();
+                System.out.println("Transaction " + watchedTransaction.hash + " included in block " + watchedTransaction.blockNumber);
+            }
+        }
+    }
+
+    /**
+     * Reports the transactions that became final.
+     *
+     * @param watchedTransactions
+     * @param latestBlockNumber
+     * @return true if all transactions are final.
+     * @throws IOException
+     */
+    private boolean checkConfirmations(Map<String, WatchedTransaction> watchedTransactions, long latestBlockNumber) throws IOException {
+        List<WatchedTransaction> confirmed = new ArrayList<>();
+        boolean allFinal = true;
+        for (WatchedTransaction watchedTransaction : watchedTransactions.values()) {
+            if (watchedTransaction.isFinal) {
+                continue;
+            }
+            // the transaction block also serves as confirmation
+            if (null != watchedTransaction.blockHash && latestBlockNumber - watchedTransaction.blockNumber + 1 >= this.confirmations) {
+                confirmed.add(watchedTransaction);
+            } else {
+                allFinal = false;
+            }
+        }
+        // check again that the receipts are still on the canonical chain
+        fetchReceipts(confirmed);
+        for (WatchedTransaction watchedTransaction : confirmed) {
+            if (null == watchedTransaction.blockHash || latestBlockNumber - watchedTransaction.blockNumber + 1 < this.confirmations) {
+                allFinal = false;
+                continue;
+            }
+            watchedTransaction.isFinal = true;
+            if (watchedTransaction.statusOK) {
+                Output.printlnBold("Transaction " + watchedTransaction.hash + " final in block " + watchedTransaction.blockNumber);
+            } else {
+                Output.error("Transaction " + watchedTransaction.hash + " final in block " + watchedTransaction.blockNumber + " but has failed");
+            }
+        }
+        return allFinal;
+    }
+
+    private static final class WatchedTransaction {
+
+        private final String hash;
+
+        private String blockHash;
+
+        private long blockNumber;
+
+        private boolean statusOK;
+
+        private boolean isFinal;
+
+        private WatchedTransaction(String hash) {
+            this.hash = hash;
+        }
+    }
 }
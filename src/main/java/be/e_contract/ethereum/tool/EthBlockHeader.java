@@ -0,0 +1,152 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.io.IOException;
+import org.web3j.protocol.core.Response;
+
+/**
+ * Response of eth_getBlockByNumber that only keeps the block header fields we
+ * need for scanning. The transactions and all other large fields are skipped
+ * by the parser without ever being materialized.
+ */
+public class EthBlockHeader extends Response<EthBlockHeader.BlockHeader> {
+
+    @Override
+    @JsonDeserialize(using = BlockHeaderDeserializer.class)
+    public void setResult(BlockHeader result) {
+        super.setResult(result);
+    }
+
+    public BlockHeader getBlockHeader() {
+        return getResult();
+    }
+
+    public static final class BlockHeader {
+
+        private long number;
+
+        private long timestamp;
+
+        private String miner;
+
+        // zero before the London fork
+        private long baseFeePerGas;
+
+        private long gasUsed;
+
+        public long getNumber() {
+            return this.number;
+        }
+
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        public String getMiner() {
+            return this.miner;
+        }
+
+        public long getBaseFeePerGas() {
+            return this.baseFeePerGas;
+        }
+
+        public long getGasUsed() {
+            return this.gasUsed;
+        }
+    }
+
+    public static class BlockHeaderDeserializer extends JsonDeserializer<BlockHeader> {
+
+        @Override
+        public BlockHeader deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                // unknown block
+                return null;
+            }
+            BlockHeader blockHeader = new BlockHeader();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if (valueToken == JsonToken.START_ARRAY || valueToken == JsonToken.START_OBJECT) {
+                    // transactions, uncles, withdrawals
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (fieldName) {
+                    case "number":
+                        blockHeader.number = parseQuantity(parser);
+                        break;
+                    case "timestamp":
+                        blockHeader.timestamp = parseQuantity(parser);
+                        break;
+                    case "miner":
+                        blockHeader.miner = parser.getValueAsString();
+                        break;
+                    case "baseFeePerGas":
+                        blockHeader.baseFeePerGas = parseQuantity(parser);
+                        break;
+                    case "gasUsed":
+                        blockHeader.gasUsed = parseQuantity(parser);
+                        break;
+                    default:
+                        // the value text is never materialized
+                        break;
+                }
+            }
+            return blockHeader;
+        }
+
+        /**
+         * Parses a hexadecimal quantity straight from the parser buffer.
+         *
+         * @param parser
+         * @return
+         * @throws IOException
+         */
+        private static long parseQuantity(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.VALUE_STRING) {
+                return 0;
+            }
+            char[] characters = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (length < 3 || characters[offset] != '0' || (characters[offset + 1] != 'x' && characters[offset + 1] != 'X')) {
+                throw new IOException("invalid quantity: " + parser.getText());
+            }
+            if (length > 18) {
+                // more than 64 bits
+                throw new IOException("quantity too large: " + parser.getText());
+            }
+            long value = 0;
+            for (int idx = offset + 2; idx < offset + length; idx++) {
+                int digit = Character.digit(characters[idx], 16);
+                if (digit < 0) {
+                    throw new IOException("invalid quantity: " + parser.getText());
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+    }
+}
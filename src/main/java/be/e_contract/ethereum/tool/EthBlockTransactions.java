@@ -0,0 +1,255 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.Transaction;
+import org.web3j.utils.Numeric;
+
+/**
+ * Response of eth_getBlockByNumber with full transaction objects, streamed
+ * into a compact form. Per transaction we only keep hash, from, to, value, and
+ * whether there is input data. Input data, signatures, and access lists are
+ * skipped by the parser without ever being materialized. Commands filter on
+ * this compact form, and only create web3j transaction objects for the
+ * matches.
+ */
+public class EthBlockTransactions extends Response<EthBlockTransactions.BlockTransactions> {
+
+    @Override
+    @JsonDeserialize(using = BlockTransactionsDeserializer.class)
+    public void setResult(BlockTransactions result) {
+        super.setResult(result);
+    }
+
+    public BlockTransactions getBlockTransactions() {
+        return getResult();
+    }
+
+    public static final class BlockTransactions {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private String hash;
+
+        // -1 for the pending block
+        private long number = -1;
+
+        private long timestamp;
+
+        private int count;
+
+        private String[] hashes = new String[INITIAL_CAPACITY];
+
+        private String[] froms = new String[INITIAL_CAPACITY];
+
+        private String[] tos = new String[INITIAL_CAPACITY];
+
+        // hexadecimal, only decoded on request
+        private String[] values = new String[INITIAL_CAPACITY];
+
+        private boolean[] inputs = new boolean[INITIAL_CAPACITY];
+
+        private void add(String transactionHash, String from, String to, String value, boolean input) {
+            if (this.count == this.hashes.length) {
+                int capacity = this.count * 2;
+                this.hashes = Arrays.copyOf(this.hashes, capacity);
+                this.froms = Arrays.copyOf(this.froms, capacity);
+                this.tos = Arrays.copyOf(this.tos, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+                this.inputs = Arrays.copyOf(this.inputs, capacity);
+            }
+            this.hashes[this.count] = transactionHash;
+            this.froms[this.count] = from;
+            this.tos[this.count] = to;
+            this.values[this.count] = value;
+            this.inputs[this.count] = input;
+            this.count++;
+        }
+
+        public String getHash() {
+            return this.hash;
+        }
+
+        public long getNumber() {
+            return this.number;
+        }
+
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        public int getTransactionCount() {
+            return this.count;
+        }
+
+        public String getTransactionHash(int transactionIndex) {
+            return this.hashes[transactionIndex];
+        }
+
+        public String getFrom(int transactionIndex) {
+            return this.froms[transactionIndex];
+        }
+
+        /**
+         * @param transactionIndex
+         * @return the to address, or null for contract creation.
+         */
+        public String getTo(int transactionIndex) {
+            return this.tos[transactionIndex];
+        }
+
+        public BigInteger getValue(int transactionIndex) {
+            String value = this.values[transactionIndex];
+            if (null == value) {
+                return BigInteger.ZERO;
+            }
+            return Numeric.decodeQuantity(value);
+        }
+
+        /**
+         * @param transactionIndex
+         * @return true for contract calls and contract creations.
+         */
+        public boolean hasInput(int transactionIndex) {
+            return this.inputs[transactionIndex];
+        }
+
+        /**
+         * Creates a web3j transaction with the fields we kept.
+         *
+         * @param transactionIndex
+         * @return
+         */
+        public Transaction toTransaction(int transactionIndex) {
+            Transaction transaction = new Transaction();
+            transaction.setHash(this.hashes[transactionIndex]);
+            transaction.setFrom(this.froms[transactionIndex]);
+            transaction.setTo(this.tos[transactionIndex]);
+            transaction.setValue(null == this.values[transactionIndex] ? "0x0" : this.values[transactionIndex]);
+            transaction.setTransactionIndex(Numeric.encodeQuantity(BigInteger.valueOf(transactionIndex)));
+            if (-1 != this.number) {
+                transaction.setBlockHash(this.hash);
+                transaction.setBlockNumber(Numeric.encodeQuantity(BigInteger.valueOf(this.number)));
+            }
+            return transaction;
+        }
+    }
+
+    public static class BlockTransactionsDeserializer extends JsonDeserializer<BlockTransactions> {
+
+        @Override
+        public BlockTransactions deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                // unknown block
+                return null;
+            }
+            BlockTransactions blockTransactions = new BlockTransactions();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("transactions".equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    parseTransactions(parser, blockTransactions);
+                    continue;
+                }
+                if (valueToken == JsonToken.START_ARRAY || valueToken == JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (valueToken != JsonToken.VALUE_STRING) {
+                    // null for the pending block
+                    continue;
+                }
+                switch (fieldName) {
+                    case "hash":
+                        blockTransactions.hash = parser.getText();
+                        break;
+                    case "number":
+                        blockTransactions.number = Numeric.decodeQuantity(parser.getText()).longValueExact();
+                        break;
+                    case "timestamp":
+                        blockTransactions.timestamp = Numeric.decodeQuantity(parser.getText()).longValueExact();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return blockTransactions;
+        }
+
+        private static void parseTransactions(JsonParser parser, BlockTransactions blockTransactions) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.VALUE_STRING) {
+                    // block without full transaction objects
+                    blockTransactions.add(parser.getText(), null, null, null, false);
+                    continue;
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("unexpected transaction token: " + token);
+                }
+                String transactionHash = null;
+                String from = null;
+                String to = null;
+                String value = null;
+                boolean input = false;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.currentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if (valueToken == JsonToken.START_ARRAY || valueToken == JsonToken.START_OBJECT) {
+                        // access lists and blob hashes
+                        parser.skipChildren();
+                        continue;
+                    }
+                    if (valueToken != JsonToken.VALUE_STRING) {
+                        continue;
+                    }
+                    switch (fieldName) {
+                        case "hash":
+                            transactionHash = parser.getText();
+                            break;
+                        case "from":
+                            from = parser.getText();
+                            break;
+                        case "to":
+                            to = parser.getText();
+                            break;
+                        case "value":
+                            value = parser.getText();
+                            break;
+                        case "input":
+                            // only the length, the data itself is never copied out of the parser buffer
+                            input = parser.getTextLength() > 2;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                blockTransactions.add(transactionHash, from, to, value, input);
+            }
+        }
+    }
+}
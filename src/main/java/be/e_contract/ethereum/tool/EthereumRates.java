@@ -19,65 +19,190 @@ package be.e_contract.ethereum.tool;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Ether exchange rates, cached on disk for a limited time. Call prefetch()
+ * early, so the rates are fetched while the command talks to the node.
+ */
 public class EthereumRates {
 
-    private Double eurRate;
-    private Double dollarRate;
+    private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // on top of the timeout of the provider itself
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final RateProvider rateProvider;
+
+    private final File cacheFile;
+
+    private final long ttlMillis;
+
+    private CompletableFuture<Map<String, BigDecimal>> rates;
+
+    public EthereumRates() {
+        this(new CoinbaseRateProvider(), getDefaultCacheFile(), DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param rateProvider
+     * @param cacheFile the cache file, or null for no cache.
+     * @param ttlMillis how long cached rates remain valid.
+     */
+    public EthereumRates(RateProvider rateProvider, File cacheFile, long ttlMillis) {
+        this.rateProvider = rateProvider;
+        this.cacheFile = cacheFile;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public static File getDefaultCacheFile() {
+        return new File(new File(System.getProperty("user.home"), ".ethereum-tool"), "rates.json");
+    }
+
+    private static final class CachedRates {
 
-    private void init() throws IOException {
-        if (null != this.eurRate) {
+        private final long timestamp;
+
+        private final Map<String, BigDecimal> rates;
+
+        private CachedRates(long timestamp, Map<String, BigDecimal> rates) {
+            this.timestamp = timestamp;
+            this.rates = rates;
+        }
+    }
+
+    /**
+     * Starts looking up the rates in the background, unless already done.
+     */
+    public synchronized void prefetch() {
+        if (null != this.rates) {
             return;
         }
-        OkHttpClient httpClient = new OkHttpClient();
-        Request request = new Request.Builder().url("https://api.coinbase.com/v2/exchange-rates?currency=ETH").build();
-        Response response = httpClient.newCall(request).execute();
-        ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode rootNode = objectMapper.readTree(response.body().byteStream());
-        JsonNode dataNode = rootNode.get("data");
-        JsonNode ratesNode = dataNode.get("rates");
-        this.eurRate = ratesNode.get("EUR").asDouble();
-        this.dollarRate = ratesNode.get("USD").asDouble();
+        CompletableFuture<Map<String, BigDecimal>> future = new CompletableFuture<>();
+        this.rates = future;
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(lookup());
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        }, "exchange-rates");
+        // never keep the tool alive for exchange rates
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    public double getEuro(double ether) {
+    private Map<String, BigDecimal> lookup() throws IOException {
+        CachedRates cachedRates = readCache();
+        if (null != cachedRates && System.currentTimeMillis() - cachedRates.timestamp < this.ttlMillis) {
+            return cachedRates.rates;
+        }
+        Map<String, BigDecimal> freshRates;
         try {
-            init();
+            freshRates = this.rateProvider.fetchRates();
         } catch (IOException ex) {
-            return 0;
+            if (null != cachedRates) {
+                // outdated rates are still better than no rates at all
+                return cachedRates.rates;
+            }
+            throw ex;
         }
-        return this.eurRate * ether;
+        writeCache(freshRates);
+        return freshRates;
     }
 
-    public double getDollar(double ether) {
+    private CachedRates readCache() {
+        if (null == this.cacheFile || !this.cacheFile.exists()) {
+            return null;
+        }
         try {
-            init();
+            JsonNode rootNode = new ObjectMapper().readTree(this.cacheFile);
+            Map<String, BigDecimal> cachedRates = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = rootNode.path("rates").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                cachedRates.put(field.getKey(), field.getValue().decimalValue());
+            }
+            return new CachedRates(rootNode.path("timestamp").asLong(), cachedRates);
         } catch (IOException ex) {
-            return 0;
+            // corrupt cache file, will be overwritten
+            return null;
         }
-        return this.dollarRate * ether;
     }
 
-    public BigDecimal getEuro(BigDecimal ether) {
+    private void writeCache(Map<String, BigDecimal> rates) {
+        if (null == this.cacheFile) {
+            return;
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode rootNode = objectMapper.createObjectNode();
+        rootNode.put("timestamp", System.currentTimeMillis());
+        ObjectNode ratesNode = rootNode.putObject("rates");
+        for (Map.Entry<String, BigDecimal> rate : rates.entrySet()) {
+            ratesNode.put(rate.getKey(), rate.getValue());
+        }
         try {
-            init();
+            File directory = this.cacheFile.getAbsoluteFile().getParentFile();
+            directory.mkdirs();
+            // other runs should never see a half written file
+            File tmpFile = File.createTempFile("rates", ".tmp", directory);
+            objectMapper.writeValue(tmpFile, rootNode);
+            Files.move(tmpFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException ex) {
+            // caching is best effort
+        }
+    }
+
+    private BigDecimal getRate(String currency) {
+        prefetch();
+        Map<String, BigDecimal> currentRates;
+        try {
+            currentRates = this.rates.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            return null;
+        }
+        return currentRates.get(currency);
+    }
+
+    public double getEuro(double ether) {
+        BigDecimal rate = getRate("EUR");
+        if (null == rate) {
+            return 0;
+        }
+        return rate.doubleValue() * ether;
+    }
+
+    public double getDollar(double ether) {
+        BigDecimal rate = getRate("USD");
+        if (null == rate) {
+            return 0;
+        }
+        return rate.doubleValue() * ether;
+    }
+
+    public BigDecimal getEuro(BigDecimal ether) {
+        BigDecimal rate = getRate("EUR");
+        if (null == rate) {
             return BigDecimal.ZERO;
         }
-        return ether.multiply(BigDecimal.valueOf(this.eurRate));
+        return ether.multiply(rate);
     }
 
     public BigDecimal getDollar(BigDecimal ether) {
-        try {
-            init();
-        } catch (IOException ex) {
+        BigDecimal rate = getRate("USD");
+        if (null == rate) {
             return BigDecimal.ZERO;
         }
-        return ether.multiply(BigDecimal.valueOf(this.dollarRate));
+        return ether.multiply(rate);
     }
 }
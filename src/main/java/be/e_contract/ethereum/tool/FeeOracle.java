@@ -0,0 +1,256 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+
+/**
+ * Gas fee oracle based on eth_feeHistory. Keeps a rolling window of base fees
+ * and priority fee (reward) percentiles per block. On a new head, only the
+ * blocks we have not seen yet are fetched.
+ * <p>
+ * The lowest reward percentile of a block approximates the tip needed to get
+ * into that block. A transaction with tip t misses a block with probability q,
+ * the fraction of blocks in the window that required more than t. To get
+ * included within n blocks with a miss probability of at most 10%, we need q^n
+ * to be at most 0.1.
+ */
+public class FeeOracle {
+
+    public static final List<Double> REWARD_PERCENTILES = Collections.unmodifiableList(Arrays.asList(10d, 25d, 50d, 75d, 90d));
+
+    // reward percentile index that approximates the tip needed for inclusion
+    private static final int INCLUSION_PERCENTILE_INDEX = 0;
+
+    private static final double MISS_PROBABILITY = 0.1;
+
+    // covers six consecutive full blocks, given the EIP-1559 maximum base fee increase of 12.5% per block
+    private static final BigInteger BASE_FEE_HEADROOM = BigInteger.valueOf(2);
+
+    private final Web3j web3;
+
+    private final int window;
+
+    private final TreeMap<Long, BlockFees> blocks;
+
+    private BigInteger nextBaseFeePerGas;
+
+    public FeeOracle(Web3j web3, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window should be at least 1");
+        }
+        this.web3 = web3;
+        this.window = window;
+        this.blocks = new TreeMap<>();
+    }
+
+    public static final class BlockFees {
+
+        private final long blockNumber;
+
+        private final BigInteger baseFeePerGas;
+
+        private final double gasUsedRatio;
+
+        // per REWARD_PERCENTILES entry
+        private final List<BigInteger> rewards;
+
+        private BlockFees(long blockNumber, BigInteger baseFeePerGas, double gasUsedRatio, List<BigInteger> rewards) {
+            this.blockNumber = blockNumber;
+            this.baseFeePerGas = baseFeePerGas;
+            this.gasUsedRatio = gasUsedRatio;
+            this.rewards = rewards;
+        }
+
+        public long getBlockNumber() {
+            return this.blockNumber;
+        }
+
+        public BigInteger getBaseFeePerGas() {
+            return this.baseFeePerGas;
+        }
+
+        public double getGasUsedRatio() {
+            return this.gasUsedRatio;
+        }
+
+        public List<BigInteger> getRewards() {
+            return this.rewards;
+        }
+    }
+
+    public static final class Recommendation {
+
+        private final int targetBlocks;
+
+        private final BigInteger maxPriorityFeePerGas;
+
+        private final BigInteger maxFeePerGas;
+
+        private Recommendation(int targetBlocks, BigInteger maxPriorityFeePerGas, BigInteger maxFeePerGas) {
+            this.targetBlocks = targetBlocks;
+            this.maxPriorityFeePerGas = maxPriorityFeePerGas;
+            this.maxFeePerGas = maxFeePerGas;
+        }
+
+        public int getTargetBlocks() {
+            return this.targetBlocks;
+        }
+
+        public BigInteger getMaxPriorityFeePerGas() {
+            return this.maxPriorityFeePerGas;
+        }
+
+        public BigInteger getMaxFeePerGas() {
+            return this.maxFeePerGas;
+        }
+    }
+
+    /**
+     * Fills the full window up to the latest block, via a single call.
+     *
+     * @throws IOException
+     */
+    public synchronized void update() throws IOException {
+        add(ethFeeHistory().send());
+    }
+
+    /**
+     * Gives back the request for the full window up to the latest block, so
+     * it can become part of a batch. Feed the response to
+     * {@link #add(EthFeeHistory)}.
+     *
+     * @return
+     */
+    public Request<?, EthFeeHistory> ethFeeHistory() {
+        return this.web3.ethFeeHistory(this.window, DefaultBlockParameterName.LATEST, REWARD_PERCENTILES);
+    }
+
+    /**
+     * Adds the blocks up to the given new head that are not yet in the window.
+     * The head itself is always fetched again, in case of a reorganization.
+     *
+     * @param headBlockNumber
+     * @throws IOException
+     */
+    public synchronized void update(BigInteger headBlockNumber) throws IOException {
+        long head = headBlockNumber.longValueExact();
+        int blockCount;
+        if (this.blocks.isEmpty()) {
+            blockCount = this.window;
+        } else {
+            blockCount = (int) Math.max(1, Math.min(this.window, head - this.blocks.lastKey()));
+        }
+        add(this.web3.ethFeeHistory(blockCount, DefaultBlockParameter.valueOf(headBlockNumber), REWARD_PERCENTILES).send());
+    }
+
+    public synchronized void add(EthFeeHistory ethFeeHistory) throws IOException {
+        if (ethFeeHistory.hasError()) {
+            throw new IOException("fee history error: " + ethFeeHistory.getError().getMessage());
+        }
+        add(ethFeeHistory.getFeeHistory());
+    }
+
+    /**
+     * Adds the given fee history to the window. Blocks we already have get
+     * replaced.
+     *
+     * @param feeHistory
+     */
+    public synchronized void add(EthFeeHistory.FeeHistory feeHistory) {
+        long oldestBlock = feeHistory.getOldestBlock().longValueExact();
+        List<BigInteger> baseFeePerGas = feeHistory.getBaseFeePerGas();
+        List<Double> gasUsedRatio = feeHistory.getGasUsedRatio();
+        // not returned by every node when there are no transactions at all
+        List<List<BigInteger>> rewards = null != feeHistory.getRewardRaw() ? feeHistory.getReward() : null;
+        int blockCount = gasUsedRatio.size();
+        if (0 == blockCount) {
+            return;
+        }
+        long newestBlock = oldestBlock + blockCount - 1;
+        for (int idx = 0; idx < blockCount; idx++) {
+            List<BigInteger> blockRewards;
+            if (null != rewards && idx < rewards.size()) {
+                blockRewards = rewards.get(idx);
+            } else {
+                blockRewards = Collections.emptyList();
+            }
+            this.blocks.put(oldestBlock + idx, new BlockFees(oldestBlock + idx, baseFeePerGas.get(idx), gasUsedRatio.get(idx), blockRewards));
+        }
+        if (newestBlock == this.blocks.lastKey()) {
+            // the extra entry is the base fee of the next block
+            this.nextBaseFeePerGas = baseFeePerGas.get(baseFeePerGas.size() - 1);
+        }
+        this.blocks.headMap(this.blocks.lastKey() - this.window, true).clear();
+    }
+
+    public synchronized List<BlockFees> getBlocks() {
+        return new ArrayList<>(this.blocks.values());
+    }
+
+    public synchronized BigInteger getNextBaseFeePerGas() {
+        return this.nextBaseFeePerGas;
+    }
+
+    /**
+     * Recommends fees to get included within the given number of blocks.
+     *
+     * @param targetBlocks
+     * @return
+     */
+    public synchronized Recommendation recommend(int targetBlocks) {
+        if (targetBlocks < 1) {
+            throw new IllegalArgumentException("target should be at least 1 block");
+        }
+        if (null == this.nextBaseFeePerGas) {
+            throw new IllegalStateException("no fee history yet");
+        }
+        List<BigInteger> inclusionTips = new ArrayList<>();
+        for (Map.Entry<Long, BlockFees> entry : this.blocks.entrySet()) {
+            BlockFees blockFees = entry.getValue();
+            if (0 == blockFees.gasUsedRatio || blockFees.rewards.size() <= INCLUSION_PERCENTILE_INDEX) {
+                // empty blocks say nothing about the competition
+                continue;
+            }
+            inclusionTips.add(blockFees.rewards.get(INCLUSION_PERCENTILE_INDEX));
+        }
+        BigInteger maxPriorityFeePerGas;
+        if (inclusionTips.isEmpty()) {
+            maxPriorityFeePerGas = BigInteger.ZERO;
+        } else {
+            Collections.sort(inclusionTips);
+            double missProbability = Math.pow(MISS_PROBABILITY, 1d / targetBlocks);
+            int index = (int) Math.ceil((1 - missProbability) * inclusionTips.size()) - 1;
+            maxPriorityFeePerGas = inclusionTips.get(Math.max(0, Math.min(inclusionTips.size() - 1, index)));
+        }
+        BigInteger maxFeePerGas = this.nextBaseFeePerGas.multiply(BASE_FEE_HEADROOM).add(maxPriorityFeePerGas);
+        return new Recommendation(targetBlocks, maxPriorityFeePerGas, maxFeePerGas);
+    }
+}
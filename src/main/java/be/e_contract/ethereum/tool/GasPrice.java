@@ -19,34 +19,51 @@ package be.e_contract.ethereum.tool;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.concurrent.Callable;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "gasprice", description = "retrieve the gas price", separator = " ")
 public class GasPrice implements Callable<Void> {
 
+    // fast, normal, and slow inclusion
+    private static final int[] TARGET_BLOCKS = {1, 3, 10};
+
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
+    @CommandLine.Option(names = {"-w", "--window"}, description = "fee history window in blocks (default: ${DEFAULT-VALUE})")
+    private int window = 20;
+
     @Override
     public Void call() throws Exception {
+        // runs alongside the node calls
+        EthereumRates ethereumRates = new EthereumRates();
+        ethereumRates.prefetch();
+
+        // everything we need in a single round trip
+        FeeOracle feeOracle = new FeeOracle(this.web3, this.window);
+        RpcBatch batch = new RpcBatch(this.web3);
+        RpcBatch.Result<EthGasPrice> ethGasPrice = batch.add(this.web3.ethGasPrice());
+        RpcBatch.Result<EthBlock> latestBlock = batch.add(this.web3.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false));
+        RpcBatch.Result<EthFeeHistory> ethFeeHistory = batch.add(feeOracle.ethFeeHistory());
+        batch.send();
+        feeOracle.add(ethFeeHistory.get());
+
         // calculates on latest blocks median gas price
-        BigDecimal gasPriceWei = BigDecimal.valueOf(this.web3.ethGasPrice().send().getGasPrice().longValueExact());
+        BigDecimal gasPriceWei = BigDecimal.valueOf(ethGasPrice.get().getGasPrice().longValueExact());
         System.out.println("Gas price per unit: " + gasPriceWei + " wei");
         BigDecimal gasPriceGwei = Convert.fromWei(gasPriceWei, Convert.Unit.GWEI);
         System.out.println("Gas price per unit: " + gasPriceGwei + " Gwei");
 
-        BigInteger blockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
-        EthBlock.Block block = this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), true).send().getBlock();
+        EthBlock.Block block = latestBlock.get().getBlock();
         BigDecimal baseFeePerGasWei = BigDecimal.valueOf(block.getBaseFeePerGas().longValueExact());
         System.out.println("Base fee per gas: " + baseFeePerGasWei + " wei");
         BigDecimal baseFeePerGasGwei = Convert.fromWei(baseFeePerGasWei, Convert.Unit.GWEI);
@@ -62,49 +79,45 @@ public class GasPrice implements Callable<Void> {
         BigDecimal costEther = gasUsed.multiply(gasPriceEther);
         System.out.println("Cost regular transaction: " + costEther + " ETH");
 
-        EthereumRates ethereumRates = new EthereumRates();
         BigDecimal costUsd = ethereumRates.getDollar(costEther);
         BigDecimal costEur = ethereumRates.getEuro(costEther);
         System.out.println("Cost regular transaction: " + costUsd + " USD");
         System.out.println("Cost regular transaction: " + costEur + " EUR");
 
-        List<Double> requestedRewardPercentiles = new LinkedList<>();
-        requestedRewardPercentiles.add(25d);
-        requestedRewardPercentiles.add(50d);
-        requestedRewardPercentiles.add(75d);
-        EthFeeHistory.FeeHistory feeHistory = this.web3.ethFeeHistory(10, DefaultBlockParameterName.LATEST, requestedRewardPercentiles)
-                .send().getFeeHistory();
-
         System.out.println("Fee History");
         System.out.println("\tBFPG = Base Fee Per Gas (Gwei)");
         System.out.println("\tUR% = Usage Ratio in %");
         System.out.println("\tRPxx = Reward Percentile xx (Gwei)");
-        System.out.println("Block\tBFPG\tUR%\tRP25\tRP50\tRP75");
-        int n = feeHistory.getBaseFeePerGas().size();
+        System.out.print("Block\tBFPG\tUR%");
+        for (Double rewardPercentile : FeeOracle.REWARD_PERCENTILES) {
+            System.out.print("\tRP" + rewardPercentile.intValue());
+        }
+        System.out.println();
         DecimalFormat decimalFormat = new DecimalFormat("#.00");
-        for (int idx = 0; idx < n; idx++) {
-            BigInteger baseFeePerGas = feeHistory.getBaseFeePerGas().get(idx);
-            baseFeePerGasWei = BigDecimal.valueOf(baseFeePerGas.longValueExact());
-            baseFeePerGasGwei = Convert.fromWei(baseFeePerGasWei, Convert.Unit.GWEI);
-            System.out.print((n - idx) + "\t" + baseFeePerGasGwei.setScale(4, BigDecimal.ROUND_HALF_UP) + "\t");
-            if (idx < feeHistory.getGasUsedRatio().size()) {
-                double gasUsedRatio = feeHistory.getGasUsedRatio().get(idx) * 100;
-                System.out.print(decimalFormat.format(gasUsedRatio));
-            }
-            System.out.print("\t");
-            if (idx < feeHistory.getReward().size()) {
-                List<BigInteger> rewardPercentiles = feeHistory.getReward().get(idx);
-                for (BigInteger rewardPercentile : rewardPercentiles) {
-                    BigDecimal rewardPercentileWei = BigDecimal.valueOf(rewardPercentile.longValueExact());
-                    BigDecimal rewardPercentileGwei = Convert.fromWei(rewardPercentileWei, Convert.Unit.GWEI);
-                    System.out.print(rewardPercentileGwei.setScale(4, BigDecimal.ROUND_HALF_UP) + "\t");
-                }
+        for (FeeOracle.BlockFees blockFees : feeOracle.getBlocks()) {
+            System.out.print(blockFees.getBlockNumber() + "\t" + toGwei(blockFees.getBaseFeePerGas()) + "\t");
+            System.out.print(decimalFormat.format(blockFees.getGasUsedRatio() * 100));
+            for (BigInteger reward : blockFees.getRewards()) {
+                System.out.print("\t" + toGwei(reward));
             }
             System.out.println();
         }
+        System.out.println("Next base fee per gas: " + toGwei(feeOracle.getNextBaseFeePerGas()) + " Gwei");
+
+        System.out.println("Recommended fees (Gwei)");
+        System.out.println("Within\tMax fee\tMax priority fee");
+        for (int targetBlocks : TARGET_BLOCKS) {
+            FeeOracle.Recommendation recommendation = feeOracle.recommend(targetBlocks);
+            System.out.println(targetBlocks + " blocks\t" + toGwei(recommendation.getMaxFeePerGas()) + "\t"
+                    + toGwei(recommendation.getMaxPriorityFeePerGas()));
+        }
 
         Output.warning("This displayed gas price is the price reported by the node itself.");
         Output.warning("This is not necessarily the sharpest price possible on the network.");
         return null;
     }
+
+    private static BigDecimal toGwei(BigInteger wei) {
+        return Convert.fromWei(new BigDecimal(wei), Convert.Unit.GWEI).setScale(4, RoundingMode.HALF_UP);
+    }
 }
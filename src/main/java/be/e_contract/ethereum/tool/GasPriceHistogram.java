@@ -0,0 +1,151 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import org.web3j.utils.Convert;
+
+/**
+ * Inclusion latency histogram over fixed, log-scaled gas price buckets. The
+ * histogram keeps one row of buckets per block within a sliding window of
+ * blocks. All state lives in primitive arrays, so the memory footprint does
+ * not depend on the number of processed transactions.
+ */
+public class GasPriceHistogram {
+
+    private static final int BUCKETS_PER_DECADE = 10;
+
+    // 0.01 Gwei
+    private static final long MIN_GAS_PRICE_WEI = 10_000_000L;
+
+    // up to 100000 Gwei
+    private static final int DECADES = 7;
+
+    private static final long[] LOWER_BOUNDS_WEI;
+
+    static {
+        // bucket 0 catches everything below the minimum gas price
+        LOWER_BOUNDS_WEI = new long[DECADES * BUCKETS_PER_DECADE + 1];
+        LOWER_BOUNDS_WEI[0] = 0;
+        for (int idx = 1; idx < LOWER_BOUNDS_WEI.length; idx++) {
+            LOWER_BOUNDS_WEI[idx] = Math.round(MIN_GAS_PRICE_WEI * Math.pow(10, (double) (idx - 1) / BUCKETS_PER_DECADE));
+        }
+    }
+
+    private final int window;
+
+    private final int bucketCount;
+
+    // per block rows, used as ring buffer
+    private final long[] blockCounts;
+
+    private final long[] blockTotalNanos;
+
+    // aggregated over all rows of the window
+    private final long[] counts;
+
+    private final long[] totalNanos;
+
+    private int currentRow;
+
+    private int rows;
+
+    public GasPriceHistogram(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window should be at least 1");
+        }
+        this.window = window;
+        this.bucketCount = LOWER_BOUNDS_WEI.length;
+        this.blockCounts = new long[window * this.bucketCount];
+        this.blockTotalNanos = new long[window * this.bucketCount];
+        this.counts = new long[this.bucketCount];
+        this.totalNanos = new long[this.bucketCount];
+        this.currentRow = -1;
+    }
+
+    public static int getBucket(BigInteger gasPriceWei) {
+        if (gasPriceWei.bitLength() > 63) {
+            return LOWER_BOUNDS_WEI.length - 1;
+        }
+        return getBucket(gasPriceWei.longValue());
+    }
+
+    public static int getBucket(long gasPriceWei) {
+        int idx = Arrays.binarySearch(LOWER_BOUNDS_WEI, gasPriceWei);
+        if (idx >= 0) {
+            return idx;
+        }
+        // insertion point minus one gives the bucket with the lower bound just below
+        return -idx - 2;
+    }
+
+    public static BigDecimal getLowerBoundGwei(int bucket) {
+        return Convert.fromWei(BigDecimal.valueOf(LOWER_BOUNDS_WEI[bucket]), Convert.Unit.GWEI);
+    }
+
+    /**
+     * Starts a new block row. Once the window is full, the oldest block row
+     * gets evicted from the aggregated statistics.
+     */
+    public synchronized void nextBlock() {
+        this.currentRow = (this.currentRow + 1) % this.window;
+        int offset = this.currentRow * this.bucketCount;
+        if (this.rows == this.window) {
+            for (int bucket = 0; bucket < this.bucketCount; bucket++) {
+                this.counts[bucket] -= this.blockCounts[offset + bucket];
+                this.totalNanos[bucket] -= this.blockTotalNanos[offset + bucket];
+            }
+        } else {
+            this.rows++;
+        }
+        Arrays.fill(this.blockCounts, offset, offset + this.bucketCount, 0);
+        Arrays.fill(this.blockTotalNanos, offset, offset + this.bucketCount, 0);
+    }
+
+    public synchronized void add(int bucket, long latencyNanos) {
+        if (this.currentRow == -1) {
+            nextBlock();
+        }
+        int offset = this.currentRow * this.bucketCount;
+        this.blockCounts[offset + bucket]++;
+        this.blockTotalNanos[offset + bucket] += latencyNanos;
+        this.counts[bucket]++;
+        this.totalNanos[bucket] += latencyNanos;
+    }
+
+    public int getBucketCount() {
+        return this.bucketCount;
+    }
+
+    public synchronized int getRows() {
+        return this.rows;
+    }
+
+    public synchronized long getCount(int bucket) {
+        return this.counts[bucket];
+    }
+
+    public synchronized long getAverageNanos(int bucket) {
+        if (0 == this.counts[bucket]) {
+            return 0;
+        }
+        return this.totalNanos[bucket] / this.counts[bucket];
+    }
+}
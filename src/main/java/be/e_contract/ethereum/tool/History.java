@@ -17,58 +17,238 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.File;
+import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthTransaction;
 import org.web3j.protocol.core.methods.response.Transaction;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
 
-@CommandLine.Command(name = "history", description = "history of an address", separator = " ")
+@CommandLine.Command(name = "history", description = "history of addresses", separator = " ")
 public class History implements Callable<Void> {
 
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
-    @CommandLine.Option(names = {"-a", "--address"}, required = true, description = "the key address")
-    private Address address;
+    @CommandLine.Option(names = {"-a", "--address"}, split = ",", description = "the key address, can be repeated")
+    private List<Address> addresses;
+
+    @CommandLine.Option(names = {"-f", "--addresses-file"}, description = "file with one address per line")
+    private File addressesFile;
 
     @CommandLine.Option(names = {"-n", "--blocks"}, required = true, description = "number of blocks from latest to scan")
     private int n;
 
+    @CommandLine.Option(names = {"-c", "--concurrency"}, description = "number of concurrent block requests (default: ${DEFAULT-VALUE})")
+    private int concurrency = 8;
+
+    @CommandLine.Option(names = {"-i", "--index"}, description = "the address index directory, as built via the index command")
+    private File indexDirectory;
+
+    // number of index postings we resolve per batch
+    private static final int INDEX_BATCH_SIZE = 100;
+
+    @CommandLine.Option(names = {"--format"}, description = "output format: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    // only when streaming records
+    private RecordWriter recordWriter;
+
     @Override
     public Void call() throws Exception {
+        // keep the order as given by the user for the output
+        Map<String, List<Match>> matches = new LinkedHashMap<>();
+        if (null != this.addresses) {
+            for (Address address : this.addresses) {
+                matches.put(address.getAddress(), new LinkedList<>());
+            }
+        }
+        if (null != this.addressesFile) {
+            for (Address address : Address.load(this.addressesFile)) {
+                matches.putIfAbsent(address.getAddress(), new LinkedList<>());
+            }
+        }
+        if (matches.isEmpty()) {
+            Output.error("Provide at least one address.");
+            return null;
+        }
+        // keep standard output clean for the records
+        PrintStream status = OutputFormat.TEXT == this.format ? System.out : System.err;
+        if (OutputFormat.TEXT != this.format) {
+            this.recordWriter = RecordWriter.open(this.format, "address", "hash", "from", "to", "value", "blockNumber", "timestamp");
+        }
         BigInteger blockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
-        System.out.println("Scanning from block " + blockNumber + " down to block " + blockNumber.subtract(BigInteger.valueOf(this.n)) + " ...");
+        long top = blockNumber.longValueExact();
+        long bottom = Math.max(0, top - this.n + 1);
+        status.println("Scanning from block " + blockNumber + " down to block " + blockNumber.subtract(BigInteger.valueOf(this.n)) + " for " + matches.size() + " address(es) ...");
         // cannot use transaction count here as we would then miss incoming transactions
         // also cannot use "historical" balance as we might receive "missing trie node" errors
-        while (this.n > 0) {
-            EthBlock.Block block = this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), true).send().getBlock();
-            for (EthBlock.TransactionResult transactionResult : block.getTransactions()) {
-                EthBlock.TransactionObject transactionObject = (EthBlock.TransactionObject) transactionResult;
-                Transaction transaction = transactionObject.get();
-                if (this.address.getAddress().equals(transaction.getFrom())
-                        || this.address.getAddress().equals(transaction.getTo())) {
-                    Output.printlnBold("Transaction hash: " + transaction.getHash());
-                    Output.println(10, "From: " + transaction.getFrom());
-                    Output.println(10, "To: " + transaction.getTo());
-                    Output.println(10, "Value: " + Convert.fromWei(new BigDecimal(transaction.getValue()), Convert.Unit.ETHER) + " ether");
-                    Output.println(10, "Block number: " + blockNumber);
-                    BigInteger timestamp = block.getTimestamp();
-                    Date timestampDate = new Date(timestamp.multiply(BigInteger.valueOf(1000)).longValue());
-                    Output.println(10, "Transaction block timestamp: " + timestampDate);
+        ToolWeb3j toolWeb3j = (ToolWeb3j) this.web3;
+        BlockScanner<EthBlockTransactions.BlockTransactions> blockScanner = new BlockScanner<>(
+                number -> toolWeb3j.ethGetBlockTransactionsByNumber(DefaultBlockParameter.valueOf(number)).send().getBlockTransactions(),
+                this.concurrency);
+        // single pass over the blocks for all addresses
+        BlockScanner.BlockVisitor<EthBlockTransactions.BlockTransactions> visitor = (number, block) -> {
+            BigInteger timestamp = BigInteger.valueOf(block.getTimestamp());
+            for (int transactionIndex = 0; transactionIndex < block.getTransactionCount(); transactionIndex++) {
+                String from = null == block.getFrom(transactionIndex) ? null : block.getFrom(transactionIndex).toLowerCase();
+                List<Match> fromMatches = null == from ? null : matches.get(from);
+                String to = null == block.getTo(transactionIndex) ? null : block.getTo(transactionIndex).toLowerCase();
+                List<Match> toMatches = null == to ? null : matches.get(to);
+                if (null == fromMatches && null == toMatches) {
+                    continue;
+                }
+                // only matching transactions get materialized
+                Transaction transaction = block.toTransaction(transactionIndex);
+                if (null != fromMatches) {
+                    addMatch(fromMatches, from, transaction, timestamp);
+                }
+                if (null != toMatches && toMatches != fromMatches) {
+                    addMatch(toMatches, to, transaction, timestamp);
+                }
+            }
+        };
+        AddressIndex addressIndex = null;
+        if (null != this.indexDirectory) {
+            addressIndex = AddressIndex.open(this.indexDirectory);
+            if (null == addressIndex) {
+                Output.warning("No address index found at: " + this.indexDirectory.getAbsolutePath());
+            } else if (addressIndex.getChainId() != this.web3.ethChainId().send().getChainId().longValueExact()) {
+                Output.warning("Address index is for another chain.");
+                addressIndex = null;
+            }
+        }
+        if (null == addressIndex || addressIndex.getFromBlock() > top || addressIndex.getToBlock() < bottom) {
+            blockScanner.scan(blockNumber, top - bottom + 1, visitor);
+        } else {
+            // newest blocks first, as they are most likely not yet indexed
+            if (top > addressIndex.getToBlock()) {
+                blockScanner.scan(blockNumber, top - addressIndex.getToBlock(), visitor);
+            }
+            long indexHigh = Math.min(top, addressIndex.getToBlock());
+            long indexLow = Math.max(bottom, addressIndex.getFromBlock());
+            long startMillis = System.currentTimeMillis();
+            lookupIndex(addressIndex, indexLow, indexHigh, matches);
+            status.println("Blocks " + indexLow + " - " + indexHigh + " answered from the index in "
+                    + (System.currentTimeMillis() - startMillis) + " ms");
+            if (bottom < addressIndex.getFromBlock()) {
+                blockScanner.scan(BigInteger.valueOf(addressIndex.getFromBlock() - 1), addressIndex.getFromBlock() - bottom, visitor);
+            }
+        }
+        if (null != this.recordWriter) {
+            this.recordWriter.close();
+            blockScanner.printStatistics(status);
+            return null;
+        }
+        for (Map.Entry<String, List<Match>> entry : matches.entrySet()) {
+            if (matches.size() > 1) {
+                Output.printlnBold("Address: " + entry.getKey());
+                if (entry.getValue().isEmpty()) {
+                    Output.println(10, "No transactions found.");
                 }
             }
-            this.n--;
-            blockNumber = blockNumber.subtract(BigInteger.ONE);
-            if (blockNumber.signum() == -1) {
-                return null;
+            for (Match match : entry.getValue()) {
+                Transaction transaction = match.transaction;
+                Output.printlnBold("Transaction hash: " + transaction.getHash());
+                Output.println(10, "From: " + transaction.getFrom());
+                Output.println(10, "To: " + transaction.getTo());
+                Output.println(10, "Value: " + Convert.fromWei(new BigDecimal(transaction.getValue()), Convert.Unit.ETHER) + " ether");
+                Output.println(10, "Block number: " + transaction.getBlockNumber());
+                Date timestampDate = new Date(match.timestamp.multiply(BigInteger.valueOf(1000)).longValue());
+                Output.println(10, "Transaction block timestamp: " + timestampDate);
             }
         }
+        blockScanner.printStatistics();
         return null;
     }
+
+    private void lookupIndex(AddressIndex addressIndex, long low, long high, Map<String, List<Match>> matches) throws Exception {
+        RpcBatch batch = new RpcBatch(this.web3);
+        int batchSize = 0;
+        Map<Long, RpcBatch.Result<EthBlock>> blockResults = new HashMap<>();
+        Map<String, List<RpcBatch.Result<EthTransaction>>> transactionResults = new HashMap<>();
+        // for the warnings
+        Map<RpcBatch.Result<EthTransaction>, AddressIndex.Posting> resultPostings = new HashMap<>();
+        for (String address : matches.keySet()) {
+            List<RpcBatch.Result<EthTransaction>> addressTransactionResults = new LinkedList<>();
+            transactionResults.put(address, addressTransactionResults);
+            List<AddressIndex.Posting> postings = addressIndex.lookup(address);
+            // same order as the block scan
+            for (int idx = postings.size() - 1; idx >= 0; idx--) {
+                AddressIndex.Posting posting = postings.get(idx);
+                long postingBlockNumber = posting.getBlockNumber();
+                if (postingBlockNumber < low || postingBlockNumber > high) {
+                    continue;
+                }
+                DefaultBlockParameter blockParameter = DefaultBlockParameter.valueOf(BigInteger.valueOf(postingBlockNumber));
+                RpcBatch.Result<EthTransaction> transactionResult = batch.add(this.web3.ethGetTransactionByBlockNumberAndIndex(blockParameter,
+                        BigInteger.valueOf(posting.getTransactionIndex())));
+                addressTransactionResults.add(transactionResult);
+                resultPostings.put(transactionResult, posting);
+                batchSize++;
+                if (!blockResults.containsKey(postingBlockNumber)) {
+                    // for the block timestamp
+                    blockResults.put(postingBlockNumber, batch.add(this.web3.ethGetBlockByNumber(blockParameter, false)));
+                    batchSize++;
+                }
+                if (batchSize >= INDEX_BATCH_SIZE) {
+                    batch.send();
+                    batchSize = 0;
+                }
+            }
+        }
+        batch.send();
+        for (Map.Entry<String, List<RpcBatch.Result<EthTransaction>>> entry : transactionResults.entrySet()) {
+            List<Match> addressMatches = matches.get(entry.getKey());
+            for (RpcBatch.Result<EthTransaction> transactionResult : entry.getValue()) {
+                Optional<Transaction> transaction = transactionResult.get().getTransaction();
+                if (!transaction.isPresent()) {
+                    AddressIndex.Posting posting = resultPostings.get(transactionResult);
+                    Output.warning("Indexed transaction not available on the node: block " + posting.getBlockNumber()
+                            + ", index " + posting.getTransactionIndex());
+                    continue;
+                }
+                EthBlock.Block block = blockResults.get(transaction.get().getBlockNumber().longValueExact()).get().getBlock();
+                if (null == block) {
+                    Output.warning("Indexed block not available on the node: " + transaction.get().getBlockNumber());
+                    continue;
+                }
+                addMatch(addressMatches, entry.getKey(), transaction.get(), block.getTimestamp());
+            }
+        }
+    }
+
+    private void addMatch(List<Match> addressMatches, String address, Transaction transaction, BigInteger timestamp) throws Exception {
+        if (null == this.recordWriter) {
+            addressMatches.add(new Match(transaction, timestamp));
+            return;
+        }
+        this.recordWriter.write(address, transaction.getHash(), transaction.getFrom(), transaction.getTo(),
+                transaction.getValue(), transaction.getBlockNumber(), timestamp);
+    }
+
+    private static final class Match {
+
+        private final Transaction transaction;
+
+        private final BigInteger timestamp;
+
+        private Match(Transaction transaction, BigInteger timestamp) {
+            this.transaction = transaction;
+            this.timestamp = timestamp;
+        }
+    }
 }
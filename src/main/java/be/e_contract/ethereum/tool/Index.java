@@ -0,0 +1,130 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "index", description = "build or extend a local address activity index", separator = " ")
+public class Index implements Callable<Void> {
+
+    @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
+    private Web3j web3;
+
+    @CommandLine.Option(names = {"-d", "--directory"}, required = true, description = "the index directory")
+    private File directory;
+
+    @CommandLine.Option(names = {"--from"}, description = "first block to index (default: start of the existing index)")
+    private Long fromBlock;
+
+    @CommandLine.Option(names = {"--to"}, description = "last block to index (default: latest block minus confirmations)")
+    private Long toBlock;
+
+    @CommandLine.Option(names = {"--confirmations"}, description = "only index blocks with at least this number of confirmations (default: ${DEFAULT-VALUE})")
+    private long confirmations = 64;
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, description = "number of concurrent block requests (default: ${DEFAULT-VALUE})")
+    private int concurrency = 8;
+
+    @CommandLine.Option(names = {"--max-segments"}, description = "merge the index into a single segment when it has more segments (default: ${DEFAULT-VALUE})")
+    private int maxSegments = 16;
+
+    @Override
+    public Void call() throws Exception {
+        long chainId = this.web3.ethChainId().send().getChainId().longValueExact();
+        AddressIndex addressIndex = AddressIndex.open(this.directory);
+        if (null != addressIndex && addressIndex.getChainId() != chainId) {
+            Output.error("Index is for chain " + addressIndex.getChainId() + ", node is on chain " + chainId);
+            return null;
+        }
+        long from;
+        if (null != this.fromBlock) {
+            from = this.fromBlock;
+        } else if (null != addressIndex) {
+            from = addressIndex.getFromBlock();
+        } else {
+            Output.error("Provide the first block to index for a new index.");
+            return null;
+        }
+        long to;
+        if (null != this.toBlock) {
+            to = this.toBlock;
+        } else {
+            // blocks that might still be reorganized are not indexed
+            to = this.web3.ethBlockNumber().send().getBlockNumber().longValueExact() - this.confirmations;
+        }
+        if (from > to) {
+            Output.error("Invalid block range: " + from + " - " + to);
+            return null;
+        }
+        if (this.maxSegments < 1) {
+            Output.error("Maximum number of segments should be at least 1");
+            return null;
+        }
+
+        ToolWeb3j toolWeb3j = (ToolWeb3j) this.web3;
+        BlockScanner<EthBlockTransactions.BlockTransactions> blockScanner = new BlockScanner<>(
+                number -> toolWeb3j.ethGetBlockTransactionsByNumber(DefaultBlockParameter.valueOf(number)).send().getBlockTransactions(),
+                this.concurrency);
+        if (null == addressIndex) {
+            indexBlocks(blockScanner, chainId, from, to);
+        } else {
+            if (from > addressIndex.getToBlock() + 1 || to < addressIndex.getFromBlock() - 1) {
+                Output.error("Block range " + from + " - " + to + " would leave a gap with the index range "
+                        + addressIndex.getFromBlock() + " - " + addressIndex.getToBlock());
+                return null;
+            }
+            // only the blocks that are not yet indexed, as new segments
+            if (to > addressIndex.getToBlock()) {
+                indexBlocks(blockScanner, chainId, addressIndex.getToBlock() + 1, to);
+            }
+            if (from < addressIndex.getFromBlock()) {
+                indexBlocks(blockScanner, chainId, from, addressIndex.getFromBlock() - 1);
+            }
+        }
+        blockScanner.printStatistics();
+        addressIndex = AddressIndex.open(this.directory);
+        if (addressIndex.getSegmentCount() > this.maxSegments) {
+            System.out.println("Merging " + addressIndex.getSegmentCount() + " segments ...");
+            addressIndex = addressIndex.compact();
+        }
+        System.out.println("Index covers blocks " + addressIndex.getFromBlock() + " - " + addressIndex.getToBlock()
+                + " with " + addressIndex.getAddressCount() + " addresses in " + addressIndex.getSegmentCount() + " segment(s)");
+        return null;
+    }
+
+    private void indexBlocks(BlockScanner<EthBlockTransactions.BlockTransactions> blockScanner, long chainId, long from, long to) throws Exception {
+        System.out.println("Indexing blocks " + from + " - " + to + " ...");
+        AddressIndex.Builder builder = new AddressIndex.Builder();
+        blockScanner.scan(BigInteger.valueOf(to), to - from + 1, (number, block) -> {
+            for (int transactionIndex = 0; transactionIndex < block.getTransactionCount(); transactionIndex++) {
+                if (null != block.getFrom(transactionIndex)) {
+                    builder.add(block.getFrom(transactionIndex), number.longValueExact(), transactionIndex);
+                }
+                if (null != block.getTo(transactionIndex)) {
+                    builder.add(block.getTo(transactionIndex), number.longValueExact(), transactionIndex);
+                }
+            }
+        });
+        builder.write(this.directory, chainId, from, to);
+    }
+}
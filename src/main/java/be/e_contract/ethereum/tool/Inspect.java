@@ -31,6 +31,10 @@ import org.web3j.crypto.transaction.type.Transaction1559;
 import org.web3j.crypto.transaction.type.TransactionType;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGasPrice;
+import org.web3j.protocol.core.methods.response.EthGetBalance;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthMaxPriorityFeePerGas;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
 
@@ -70,8 +74,21 @@ public class Inspect implements Callable<Void> {
         }
         BigInteger nonce = transaction.getNonce();
         System.out.println("Nonce: " + nonce);
+        RpcBatch.Result<EthGetTransactionCount> ethGetTransactionCount = null;
+        RpcBatch.Result<EthGasPrice> ethGasPrice = null;
+        RpcBatch.Result<EthMaxPriorityFeePerGas> ethMaxPriorityFeePerGas = null;
+        RpcBatch.Result<EthGetBalance> ethGetBalance = null;
         if (null != this.web3) {
-            BigInteger transactionCount = this.web3.ethGetTransactionCount(from, DefaultBlockParameterName.LATEST).send().getTransactionCount();
+            // all sanity checks in a single round trip
+            RpcBatch batch = new RpcBatch(this.web3);
+            ethGetTransactionCount = batch.add(this.web3.ethGetTransactionCount(from, DefaultBlockParameterName.LATEST));
+            if (transaction.getType() == TransactionType.EIP1559) {
+                ethGasPrice = batch.add(this.web3.ethGasPrice());
+                ethMaxPriorityFeePerGas = batch.add(this.web3.ethMaxPriorityFeePerGas());
+                ethGetBalance = batch.add(this.web3.ethGetBalance(from, DefaultBlockParameterName.LATEST));
+            }
+            batch.send();
+            BigInteger transactionCount = ethGetTransactionCount.get().getTransactionCount();
             if (!transactionCount.equals(nonce)) {
                 Output.error("Nonce " + nonce + " incorrect. Should be " + transactionCount);
             }
@@ -92,18 +109,18 @@ public class Inspect implements Callable<Void> {
             BigDecimal maxPriorityFeePerGasGwei = Convert.fromWei(maxPriorityFeePerGasWei, Convert.Unit.GWEI);
             System.out.println("Maximum priority fee per gas: " + maxPriorityFeePerGasGwei + " Gwei");
             if (null != this.web3) {
-                BigInteger nodeGasPrice = this.web3.ethGasPrice().send().getGasPrice();
+                BigInteger nodeGasPrice = ethGasPrice.get().getGasPrice();
                 if (nodeGasPrice.compareTo(transaction1559.getMaxFeePerGas()) > 0) {
                     Output.error("Current gas price above maximum fee per gas.");
                     BigDecimal nodeGasPriceWei = new BigDecimal(nodeGasPrice);
                     BigDecimal nodeGasPriceGwei = Convert.fromWei(nodeGasPriceWei, Convert.Unit.GWEI);
                     Output.error("Current gas price: " + nodeGasPriceGwei + " Gwei.");
                 }
-                BigInteger nodeMaxPriorityFeePerGas = this.web3.ethMaxPriorityFeePerGas().send().getMaxPriorityFeePerGas();
+                BigInteger nodeMaxPriorityFeePerGas = ethMaxPriorityFeePerGas.get().getMaxPriorityFeePerGas();
                 BigDecimal nodeMaxPriorityFeePerGasWei = new BigDecimal(nodeMaxPriorityFeePerGas);
                 BigDecimal nodeMaxPriorityFeePerGasGwei = Convert.fromWei(nodeMaxPriorityFeePerGasWei, Convert.Unit.GWEI);
                 System.out.println("Current maximum priority fee per gas: " + nodeMaxPriorityFeePerGasGwei + " Gwei");
-                BigInteger balance = this.web3.ethGetBalance(from, DefaultBlockParameterName.LATEST).send().getBalance();
+                BigInteger balance = ethGetBalance.get().getBalance();
                 BigInteger maxTotalCost = transaction.getValue().add(transaction.getGasLimit().multiply(transaction1559.getMaxFeePerGas()));
                 if (balance.compareTo(maxTotalCost) < 0) {
                     Output.error("Balance might be too low.");
@@ -0,0 +1,124 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Async;
+
+/**
+ * Reports every JSON-RPC call towards the node to a listener, with its latency
+ * and whether it failed. Requests within a batch all get the latency of the
+ * batch. Calls pass through untouched, so the response decoding stays with
+ * the transport. Subscription notifications are not reported.
+ */
+public class InstrumentedWeb3jService extends ForwardingWeb3jService {
+
+    public interface RpcListener {
+
+        /**
+         * Called once the node answered, or once the call failed.
+         *
+         * @param method the JSON-RPC method.
+         * @param latencyNanos
+         * @param batchSize the number of requests that shared this latency.
+         * @param error
+         */
+        void onCall(String method, long latencyNanos, int batchSize, boolean error);
+
+        /**
+         * Called by a transport meter once a call went over the wire.
+         *
+         * @param method the JSON-RPC method.
+         * @param bytesOut the size of the JSON request.
+         * @param bytesIn the size of the JSON response, 0 on transport errors.
+         * @see TransportMeter
+         */
+        void onTransfer(String method, long bytesOut, long bytesIn);
+    }
+
+    private final RpcListener listener;
+
+    public InstrumentedWeb3jService(Web3jService web3jService, RpcListener listener) {
+        super(web3jService);
+        this.listener = listener;
+    }
+
+    public RpcListener getListener() {
+        return this.listener;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        long start = System.nanoTime();
+        T response;
+        try {
+            response = this.web3jService.send(request, responseType);
+        } catch (IOException | RuntimeException ex) {
+            this.listener.onCall(request.getMethod(), System.nanoTime() - start, 1, true);
+            throw ex;
+        }
+        this.listener.onCall(request.getMethod(), System.nanoTime() - start, 1, null == response || response.hasError());
+        return response;
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return Async.run(() -> send(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        long start = System.nanoTime();
+        BatchResponse batchResponse;
+        try {
+            batchResponse = this.web3jService.sendBatch(batchRequest);
+        } catch (IOException | RuntimeException ex) {
+            long latency = System.nanoTime() - start;
+            for (Request<?, ? extends Response<?>> request : requests) {
+                this.listener.onCall(request.getMethod(), latency, requests.size(), true);
+            }
+            throw ex;
+        }
+        long latency = System.nanoTime() - start;
+        if (null == batchResponse) {
+            return null;
+        }
+        for (Response<?> response : batchResponse.getResponses()) {
+            for (Request<?, ? extends Response<?>> request : requests) {
+                if (request.getId() == response.getId()) {
+                    this.listener.onCall(request.getMethod(), latency, requests.size(), response.hasError());
+                    break;
+                }
+            }
+        }
+        return batchResponse;
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return Async.run(() -> sendBatch(batchRequest));
+    }
+}
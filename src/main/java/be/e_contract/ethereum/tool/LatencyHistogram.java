@@ -0,0 +1,133 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+/**
+ * Latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * Every power of two is split into a fixed number of linear sub-buckets, so
+ * the relative error stays within a few percent over the full range, while the
+ * footprint is a single fixed-size array.
+ */
+public class LatencyHistogram {
+
+    // 16 sub-buckets per power of two gives about 6% precision
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // covers microseconds up to about 12 days
+    private static final int MAX_SHIFT = 36;
+
+    private final long[] counts;
+
+    private long totalCount;
+
+    private long totalMicros;
+
+    private long maxMicros;
+
+    public LatencyHistogram() {
+        this.counts = new long[(MAX_SHIFT + 2) * SUB_BUCKETS];
+    }
+
+    static int getIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return (MAX_SHIFT + 2) * SUB_BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gives back the highest value that ends up in the given bucket.
+     *
+     * @param index
+     * @return
+     */
+    static long getHighestMicros(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    public synchronized void record(long latencyNanos) {
+        long micros = latencyNanos / 1000;
+        this.counts[getIndex(micros)]++;
+        this.totalCount++;
+        this.totalMicros += micros;
+        this.maxMicros = Math.max(this.maxMicros, micros);
+    }
+
+    public synchronized long getCount() {
+        return this.totalCount;
+    }
+
+    public synchronized long getTotalMicros() {
+        return this.totalMicros;
+    }
+
+    public synchronized long getMaxMicros() {
+        return this.maxMicros;
+    }
+
+    /**
+     * Gives back the latency in microseconds below which the given fraction of
+     * the recorded values falls.
+     *
+     * @param percentile between 0 and 1.
+     * @return
+     */
+    public synchronized long getPercentileMicros(double percentile) {
+        if (0 == this.totalCount) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(this.totalCount * percentile));
+        long count = 0;
+        for (int index = 0; index < this.counts.length; index++) {
+            count += this.counts[index];
+            if (count >= target) {
+                return Math.min(getHighestMicros(index), this.maxMicros);
+            }
+        }
+        return this.maxMicros;
+    }
+
+    /**
+     * Gives back the number of recorded values up to the given latency.
+     *
+     * @param micros
+     * @return
+     */
+    public synchronized long getCountAtOrBelow(long micros) {
+        long count = 0;
+        for (int index = 0; index < this.counts.length; index++) {
+            if (getHighestMicros(index) > micros) {
+                break;
+            }
+            count += this.counts[index];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "lock", description = "lock the key of a running signing agent", separator = " ")
+public class Lock implements Callable<Void> {
+
+    @CommandLine.Option(names = {"-s", "--socket"}, description = "the signing agent socket file (default: ~/.ethereum-tool/signer.sock)")
+    private File socketFile = SigningAgent.getDefaultSocketFile();
+
+    @Override
+    public Void call() throws Exception {
+        SigningAgentClient signingAgentClient = new SigningAgentClient(this.socketFile);
+        if (!signingAgentClient.isAvailable()) {
+            Output.error("No signing agent running at: " + this.socketFile.getAbsolutePath());
+            return null;
+        }
+        signingAgentClient.lock();
+        System.out.println("Key locked.");
+        return null;
+    }
+}
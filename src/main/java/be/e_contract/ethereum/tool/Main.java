@@ -17,6 +17,7 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.File;
 import java.util.concurrent.Callable;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.AnsiConsole;
@@ -52,7 +53,11 @@ import org.web3j.protocol.Web3j;
             Trace.class,
             Block.class,
             Price.class,
-            Prepare.class
+            Prepare.class,
+            Index.class,
+            Unlock.class,
+            Lock.class,
+            Replay.class
         },
         versionProvider = VersionProvider.class,
         footer = "Copyright (C) 2018-2024 Frank Cornelis\nDonations: " + Version.DONATION,
@@ -60,6 +65,47 @@ import org.web3j.protocol.Web3j;
 )
 public class Main implements Callable<Void> {
 
+    private final Web3TypeConverter web3TypeConverter;
+
+    public Main(Web3TypeConverter web3TypeConverter) {
+        this.web3TypeConverter = web3TypeConverter;
+    }
+
+    @picocli.CommandLine.Option(names = {"--poll-interval"}, description = "the polling interval in milliseconds for HTTP and IPC connections (default: 500)")
+    public void setPollInterval(long pollInterval) {
+        this.web3TypeConverter.setPollInterval(pollInterval);
+    }
+
+    @picocli.CommandLine.Option(names = {"--cache"}, description = "directory for the local cache of historical blocks, transactions and receipts")
+    public void setCacheDirectory(File cacheDirectory) {
+        this.web3TypeConverter.setCacheDirectory(cacheDirectory);
+    }
+
+    @picocli.CommandLine.Option(names = {"--cache-confirmations"}, description = "only cache data that has at least this number of confirmations (default: 64)")
+    public void setCacheConfirmations(long cacheConfirmations) {
+        this.web3TypeConverter.setCacheConfirmations(cacheConfirmations);
+    }
+
+    @picocli.CommandLine.Option(names = {"--record"}, description = "record all JSON-RPC traffic to this file, for the replay command")
+    public void setRecordFile(File recordFile) {
+        this.web3TypeConverter.setRecordFile(recordFile);
+    }
+
+    @picocli.CommandLine.Option(names = {"--metrics"}, description = "print per JSON-RPC method call statistics on exit")
+    public void setMetrics(boolean metrics) {
+        this.web3TypeConverter.setMetrics(metrics);
+    }
+
+    @picocli.CommandLine.Option(names = {"--no-health-check"}, description = "skip the node health checks at startup")
+    public void setNoHealthCheck(boolean noHealthCheck) {
+        this.web3TypeConverter.setHealthCheck(!noHealthCheck);
+    }
+
+    @picocli.CommandLine.Option(names = {"--node-statistics"}, description = "print per node latency and error statistics on exit, for multiple comma separated locations")
+    public void setNodeStatistics(boolean nodeStatistics) {
+        this.web3TypeConverter.setNodeStatistics(nodeStatistics);
+    }
+
     public static void main(String[] args) throws Exception {
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
@@ -69,9 +115,11 @@ public class Main implements Callable<Void> {
             }
 
         });
-        picocli.CommandLine commandLine = new picocli.CommandLine(new Main());
-        commandLine.registerConverter(Web3j.class, new Web3TypeConverter());
+        Web3TypeConverter web3TypeConverter = new Web3TypeConverter();
+        picocli.CommandLine commandLine = new picocli.CommandLine(new Main(web3TypeConverter));
+        commandLine.registerConverter(Web3j.class, web3TypeConverter);
         commandLine.registerConverter(Address.class, new AddressTypeConverter());
+        commandLine.setCaseInsensitiveEnumValuesAllowed(true);
         commandLine.parseWithHandler(new picocli.CommandLine.RunLast(), args);
     }
 
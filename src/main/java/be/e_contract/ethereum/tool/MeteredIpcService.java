@@ -0,0 +1,56 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.ipc.UnixIpcService;
+
+/**
+ * IPC transport that counts the JSON-RPC bytes via a transport meter.
+ */
+public class MeteredIpcService extends UnixIpcService {
+
+    private final TransportMeter transportMeter;
+
+    public MeteredIpcService(String ipcSocketPath, TransportMeter transportMeter) {
+        super(ipcSocketPath);
+        this.transportMeter = transportMeter;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        Request<?, ?> meteredRequest = request;
+        return this.transportMeter.meter(Collections.singletonList(meteredRequest), () -> super.send(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return this.transportMeter.meter(batchRequest.getRequests(), () -> super.sendBatch(batchRequest));
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        return this.transportMeter.meter(payload, super.performIO(payload));
+    }
+}
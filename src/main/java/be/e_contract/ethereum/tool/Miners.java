@@ -17,6 +17,7 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -24,12 +25,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.AnsiConsole;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
-import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
 
@@ -42,30 +46,70 @@ public class Miners implements Callable<Void> {
     @CommandLine.Option(names = {"-n", "--blocks"}, required = true, description = "number of blocks from latest to scan")
     private int n;
 
+    @CommandLine.Option(names = {"-c", "--concurrency"}, description = "number of concurrent block requests (default: ${DEFAULT-VALUE})")
+    private int concurrency = 8;
+
+    @CommandLine.Option(names = {"--format"}, description = "output format: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private OutputFormat format = OutputFormat.TEXT;
+
     @Override
     public Void call() throws Exception {
+        // keep standard output clean for the records
+        PrintStream status = OutputFormat.TEXT == this.format ? System.out : System.err;
         BigInteger blockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
-        System.out.println("Scanning from block " + blockNumber + " down to block " + blockNumber.subtract(BigInteger.valueOf(this.n)) + " ...");
+        status.println("Scanning from block " + blockNumber + " down to block " + blockNumber.subtract(BigInteger.valueOf(this.n)) + " ...");
         Map<String, Miner> miners = new HashMap<>();
-        int count = this.n;
-        while (count > 0) {
-            EthBlock.Block block = this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), false).send().getBlock();
-            String minerAddress = block.getMiner();
-            Miner miner = miners.get(minerAddress);
-            if (null == miner) {
-                miner = new Miner(minerAddress);
-                miners.put(minerAddress, miner);
-            } else {
-                miner.addBlock();
-            }
-            count--;
-            blockNumber = blockNumber.subtract(BigInteger.ONE);
-            if (blockNumber.signum() == -1) {
-                break;
+        ToolWeb3j toolWeb3j = (ToolWeb3j) this.web3;
+        // we only need the miner, so we skip parsing the rest of the block
+        BlockScanner<EthBlockHeader.BlockHeader> blockScanner = new BlockScanner<>(
+                number -> toolWeb3j.ethGetBlockHeaderByNumber(DefaultBlockParameter.valueOf(number)).send().getBlockHeader(),
+                this.concurrency);
+        // balances are looked up while the scan goes on
+        ExecutorService balanceExecutorService = Executors.newFixedThreadPool(this.concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "miner-balance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long count;
+        List<Miner> minerList;
+        try {
+            count = blockScanner.scan(blockNumber, this.n, (number, block) -> {
+                String minerAddress = block.getMiner();
+                Miner miner = miners.get(minerAddress);
+                if (null == miner) {
+                    miner = new Miner(minerAddress);
+                    miner.balanceFuture = balanceExecutorService.submit(
+                            () -> this.web3.ethGetBalance(minerAddress, DefaultBlockParameterName.LATEST).send().getBalance());
+                    miners.put(minerAddress, miner);
+                } else {
+                    miner.addBlock();
+                }
+            });
+            blockScanner.printStatistics(status);
+            minerList = new ArrayList<>(miners.values());
+            for (Miner miner : minerList) {
+                try {
+                    miner.balance = miner.balanceFuture.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw ex;
+                }
             }
+        } finally {
+            balanceExecutorService.shutdownNow();
         }
-        List<Miner> minerList = new ArrayList<>(miners.values());
         minerList.sort((o1, o2) -> Integer.compare(o2.getBlocks(), o1.getBlocks()));
+        if (OutputFormat.TEXT != this.format) {
+            try (RecordWriter recordWriter = RecordWriter.open(this.format, "miner", "blocks", "percentage", "balance")) {
+                for (Miner miner : minerList) {
+                    recordWriter.write(miner.address, miner.blocks, (double) miner.blocks / count * 100, miner.balance);
+                }
+            }
+            return null;
+        }
         System.out.print("Number of blocks");
         AnsiConsole.out().print(Ansi.ansi().cursorToColumn(20));
         System.out.print("% of blocks");
@@ -76,12 +120,11 @@ public class Miners implements Callable<Void> {
         for (Miner miner : minerList) {
             System.out.print(miner.blocks);
             AnsiConsole.out().print(Ansi.ansi().cursorToColumn(20));
-            System.out.print((double) miner.blocks / (this.n - count) * 100);
+            System.out.print((double) miner.blocks / count * 100);
             AnsiConsole.out().print(Ansi.ansi().cursorToColumn(40));
             System.out.print(miner.address);
             AnsiConsole.out().print(Ansi.ansi().cursorToColumn(90));
-            BigDecimal balance = new BigDecimal(this.web3.ethGetBalance(miner.address, DefaultBlockParameterName.LATEST).send().getBalance());
-            BigDecimal balanceEther = Convert.fromWei(balance, Convert.Unit.ETHER);
+            BigDecimal balanceEther = Convert.fromWei(new BigDecimal(miner.balance), Convert.Unit.ETHER);
             System.out.println(balanceEther);
         }
         return null;
@@ -91,6 +134,8 @@ public class Miners implements Callable<Void> {
 
         private final String address;
         private int blocks;
+        private Future<BigInteger> balanceFuture;
+        private BigInteger balance;
 
         public Miner(String address) {
             this.address = address;
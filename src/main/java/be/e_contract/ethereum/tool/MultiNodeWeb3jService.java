@@ -0,0 +1,531 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.reactivex.Flowable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+/**
+ * Spreads requests over several redundant nodes. Reads go to the fastest
+ * healthy node first. If that node does not answer within its usual latency,
+ * the same request is also sent to the next node, and the first answer wins.
+ * Errors and null results only count as answer when no node knows better.
+ * Transactions are broadcast to all nodes. Filters are installed on a single
+ * node, and polled on that same node.
+ */
+public class MultiNodeWeb3jService implements Web3jService {
+
+    private static final String SEND_RAW_TRANSACTION = "eth_sendRawTransaction";
+
+    private static final Set<String> NEW_FILTER_METHODS = new HashSet<>(Arrays.asList(
+            "eth_newFilter", "eth_newBlockFilter", "eth_newPendingTransactionFilter"));
+
+    private static final Set<String> FILTER_METHODS = new HashSet<>(Arrays.asList(
+            "eth_getFilterChanges", "eth_getFilterLogs", "eth_uninstallFilter"));
+
+    private static final String UNINSTALL_FILTER = "eth_uninstallFilter";
+
+    // latency percentile after which we hedge a request on the next node
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    // until we have enough latency samples
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 250;
+
+    private static final long MIN_HEDGE_DELAY_MILLIS = 10;
+
+    private static final int LATENCY_WINDOW = 128;
+
+    // a node that always fails ranks as if it takes this long
+    private static final long ERROR_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<Node> nodes;
+
+    private final ScheduledExecutorService scheduler;
+
+    // filter identifier to the node that installed the filter
+    private final Map<String, Node> filterNodes;
+
+    public MultiNodeWeb3jService(List<String> locations, List<Web3jService> services) {
+        this.nodes = new ArrayList<>(services.size());
+        for (int idx = 0; idx < services.size(); idx++) {
+            this.nodes.add(new Node(locations.get(idx), services.get(idx)));
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.filterNodes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gives back the node service for eth_subscribe, if any.
+     *
+     * @return
+     */
+    public Web3jService getSubscriptionService() {
+        for (Node node : this.nodes) {
+            if (ForwardingWeb3jService.unwrap(node.service) instanceof ReconnectingWebSocketService) {
+                return node.service;
+            }
+        }
+        return this.nodes.get(0).service;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return get(sendAsync(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        String method = request.getMethod();
+        if (SEND_RAW_TRANSACTION.equals(method)) {
+            return broadcast(node -> node.service.sendAsync(request, responseType), response -> !response.hasError());
+        }
+        if (NEW_FILTER_METHODS.contains(method)) {
+            // no hedging, else we install the filter on several nodes
+            return race(node -> node.service.sendAsync(request, responseType)
+                    .thenApply(response -> {
+                        installed(response, node);
+                        return response;
+                    }), MultiNodeWeb3jService::isAnswer, false);
+        }
+        if (FILTER_METHODS.contains(method)) {
+            Node filterNode = getFilterNode(request);
+            if (null != filterNode) {
+                return pinned(filterNode, node -> node.service.sendAsync(request, responseType));
+            }
+            return race(node -> node.service.sendAsync(request, responseType), MultiNodeWeb3jService::isAnswer, false);
+        }
+        return race(node -> node.service.sendAsync(request, responseType), MultiNodeWeb3jService::isAnswer, true);
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return get(sendBatchAsync(batchRequest));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        boolean filters = false;
+        Node filterNode = null;
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            String method = request.getMethod();
+            if (SEND_RAW_TRANSACTION.equals(method)) {
+                return broadcastBatch(batchRequest);
+            }
+            if (FILTER_METHODS.contains(method) && null == filterNode) {
+                filterNode = getFilterNode(request);
+            }
+            filters |= NEW_FILTER_METHODS.contains(method) || FILTER_METHODS.contains(method);
+        }
+        Predicate<BatchResponse> accepted = batchResponse -> batchResponse.getResponses().stream().allMatch(MultiNodeWeb3jService::isAnswer);
+        if (!filters) {
+            return race(node -> node.service.sendBatchAsync(batchRequest), accepted, true);
+        }
+        Function<Node, CompletableFuture<BatchResponse>> call = node -> node.service.sendBatchAsync(batchRequest)
+                .thenApply(batchResponse -> {
+                    installed(batchRequest, batchResponse, node);
+                    return batchResponse;
+                });
+        if (null != filterNode) {
+            return pinned(filterNode, call);
+        }
+        return race(call, accepted, false);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        return getSubscriptionService().subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.scheduler.shutdownNow();
+        for (Node node : this.nodes) {
+            node.service.close();
+        }
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && null != error.getCause()) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static boolean isAnswer(Response<?> response) {
+        if (response.hasError()) {
+            return false;
+        }
+        Object result = response.getResult();
+        if (result instanceof JsonNode) {
+            return !((JsonNode) result).isNull();
+        }
+        return null != result;
+    }
+
+    private static String toFilterKey(Object filterId) {
+        String value = filterId instanceof JsonNode ? ((JsonNode) filterId).asText() : String.valueOf(filterId);
+        try {
+            // web3j drops leading zeros when polling
+            return Numeric.toBigInt(value).toString(16);
+        } catch (NumberFormatException ex) {
+            return value;
+        }
+    }
+
+    private void installed(Response<?> response, Node node) {
+        if (isAnswer(response)) {
+            this.filterNodes.put(toFilterKey(response.getResult()), node);
+        }
+    }
+
+    private void installed(BatchRequest batchRequest, BatchResponse batchResponse, Node node) {
+        for (Response<?> response : batchResponse.getResponses()) {
+            for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+                if (request.getId() == response.getId() && NEW_FILTER_METHODS.contains(request.getMethod())) {
+                    installed(response, node);
+                }
+            }
+        }
+    }
+
+    private Node getFilterNode(Request<?, ?> request) {
+        if (request.getParams().isEmpty()) {
+            return null;
+        }
+        String filterKey = toFilterKey(request.getParams().get(0));
+        if (UNINSTALL_FILTER.equals(request.getMethod())) {
+            return this.filterNodes.remove(filterKey);
+        }
+        return this.filterNodes.get(filterKey);
+    }
+
+    private <T> CompletableFuture<T> pinned(Node node, Function<Node, CompletableFuture<T>> call) {
+        long startNanos = System.nanoTime();
+        node.start();
+        return call.apply(node).whenComplete((response, error) -> node.complete(System.nanoTime() - startNanos, null == error));
+    }
+
+    private <T> CompletableFuture<T> race(Function<Node, CompletableFuture<T>> call, Predicate<T> accepted, boolean hedge) {
+        List<Node> rankedNodes = new ArrayList<>(this.nodes);
+        rankedNodes.sort(Comparator.comparingDouble(Node::getScore));
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger nextNode = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        // the first answer that was not accepted, in case no node does better
+        AtomicReference<T> fallback = new AtomicReference<>();
+        startNext(rankedNodes, nextNode, finished, fallback, call, accepted, hedge, result);
+        return result;
+    }
+
+    private <T> void startNext(List<Node> rankedNodes, AtomicInteger nextNode, AtomicInteger finished, AtomicReference<T> fallback,
+            Function<Node, CompletableFuture<T>> call, Predicate<T> accepted, boolean hedge, CompletableFuture<T> result) {
+        int nodeIdx = nextNode.getAndIncrement();
+        if (nodeIdx >= rankedNodes.size() || result.isDone()) {
+            return;
+        }
+        Node node = rankedNodes.get(nodeIdx);
+        long startNanos = System.nanoTime();
+        node.start();
+        call.apply(node).whenComplete((response, error) -> {
+            node.complete(System.nanoTime() - startNanos, null == error);
+            if (null == error && accepted.test(response)) {
+                if (result.complete(response) && nodeIdx > 0) {
+                    node.hedgeWin();
+                }
+                return;
+            }
+            if (null == error) {
+                // for example a lagging node that does not know the block yet
+                fallback.compareAndSet(null, response);
+            }
+            if (finished.incrementAndGet() == rankedNodes.size()) {
+                T fallbackResponse = fallback.get();
+                if (null != fallbackResponse) {
+                    result.complete(fallbackResponse);
+                } else {
+                    result.completeExceptionally(unwrap(error));
+                }
+            } else {
+                // no need to wait for the hedge delay
+                startNext(rankedNodes, nextNode, finished, fallback, call, accepted, hedge, result);
+            }
+        });
+        if (hedge && nodeIdx + 1 < rankedNodes.size()) {
+            this.scheduler.schedule(() -> {
+                if (!result.isDone() && nextNode.get() == nodeIdx + 1) {
+                    startNext(rankedNodes, nextNode, finished, fallback, call, accepted, hedge, result);
+                }
+            }, node.getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private <T> CompletableFuture<T> broadcast(Function<Node, CompletableFuture<T>> call, Predicate<T> accepted) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger done = new AtomicInteger();
+        // the first rejection, in case no node accepts
+        CompletableFuture<T> firstRejection = new CompletableFuture<>();
+        for (Node node : this.nodes) {
+            long startNanos = System.nanoTime();
+            node.start();
+            call.apply(node).whenComplete((response, error) -> {
+                node.complete(System.nanoTime() - startNanos, null == error);
+                if (null == error) {
+                    if (accepted.test(response)) {
+                        result.complete(response);
+                    } else {
+                        firstRejection.complete(response);
+                    }
+                } else {
+                    firstRejection.completeExceptionally(unwrap(error));
+                }
+                if (done.incrementAndGet() == this.nodes.size() && !result.isDone()) {
+                    firstRejection.whenComplete((rejection, rejectionError) -> {
+                        if (null == rejectionError) {
+                            result.complete(rejection);
+                        } else {
+                            result.completeExceptionally(rejectionError);
+                        }
+                    });
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Broadcasts the batch to all nodes, and merges the responses per
+     * request. A transaction counts as accepted when any node accepted it.
+     *
+     * @param batchRequest
+     * @return
+     */
+    private CompletableFuture<BatchResponse> broadcastBatch(BatchRequest batchRequest) {
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        Map<Long, Integer> requestIndexes = new HashMap<>();
+        for (int idx = 0; idx < requests.size(); idx++) {
+            requestIndexes.put(requests.get(idx).getId(), idx);
+        }
+        CompletableFuture<BatchResponse> result = new CompletableFuture<>();
+        // per request, the best response so far
+        Response<?>[] merged = new Response<?>[requests.size()];
+        AtomicInteger done = new AtomicInteger();
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+        for (Node node : this.nodes) {
+            long startNanos = System.nanoTime();
+            node.start();
+            node.service.sendBatchAsync(batchRequest).whenComplete((batchResponse, error) -> {
+                node.complete(System.nanoTime() - startNanos, null == error);
+                synchronized (merged) {
+                    if (null == error) {
+                        List<? extends Response<?>> responses = batchResponse.getResponses();
+                        for (int responseIdx = 0; responseIdx < responses.size(); responseIdx++) {
+                            Response<?> response = responses.get(responseIdx);
+                            Integer idx = requestIndexes.getOrDefault(response.getId(), responseIdx);
+                            if (idx >= merged.length) {
+                                continue;
+                            }
+                            if (null == merged[idx] || (merged[idx].hasError() && !response.hasError())) {
+                                merged[idx] = response;
+                            }
+                        }
+                        if (Arrays.stream(merged).allMatch(response -> null != response && !response.hasError())) {
+                            // no need to wait for the other nodes
+                            result.complete(new BatchResponse(requests, Arrays.asList(merged)));
+                        }
+                    } else {
+                        lastError.set(unwrap(error));
+                    }
+                    if (done.incrementAndGet() == this.nodes.size() && !result.isDone()) {
+                        if (Arrays.stream(merged).allMatch(response -> null != response)) {
+                            result.complete(new BatchResponse(requests, Arrays.asList(merged)));
+                        } else if (null != lastError.get()) {
+                            result.completeExceptionally(lastError.get());
+                        } else {
+                            result.completeExceptionally(new IOException("incomplete batch response"));
+                        }
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    public void printStatistics(PrintStream printStream) {
+        for (Node node : this.nodes) {
+            printStream.println(node.getStatistics());
+        }
+    }
+
+    private static final class Node {
+
+        private final String location;
+
+        private final Web3jService service;
+
+        // ring buffer of the most recent latencies, negative for failures
+        private final long[] latencies;
+
+        private int latencyCount;
+
+        private long requests;
+
+        private long errors;
+
+        private int inFlight;
+
+        private long hedgeWins;
+
+        private Node(String location, Web3jService service) {
+            this.location = location;
+            this.service = service;
+            this.latencies = new long[LATENCY_WINDOW];
+        }
+
+        private synchronized void start() {
+            this.requests++;
+            this.inFlight++;
+        }
+
+        private synchronized void complete(long latencyNanos, boolean success) {
+            this.inFlight--;
+            if (!success) {
+                this.errors++;
+            }
+            this.latencies[this.latencyCount % LATENCY_WINDOW] = success ? latencyNanos : -latencyNanos;
+            this.latencyCount++;
+        }
+
+        private synchronized void hedgeWin() {
+            this.hedgeWins++;
+        }
+
+        private synchronized long[] getSortedLatencies() {
+            int count = Math.min(this.latencyCount, LATENCY_WINDOW);
+            long[] sortedLatencies = new long[count];
+            for (int idx = 0; idx < count; idx++) {
+                sortedLatencies[idx] = Math.abs(this.latencies[idx]);
+            }
+            Arrays.sort(sortedLatencies);
+            return sortedLatencies;
+        }
+
+        private synchronized double getRecentErrorRate() {
+            int count = Math.min(this.latencyCount, LATENCY_WINDOW);
+            if (0 == count) {
+                return 0;
+            }
+            int failures = 0;
+            for (int idx = 0; idx < count; idx++) {
+                if (this.latencies[idx] < 0) {
+                    failures++;
+                }
+            }
+            return (double) failures / count;
+        }
+
+        private static long percentile(long[] sortedLatencies, double percentile) {
+            return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, Math.floor(sortedLatencies.length * percentile))];
+        }
+
+        /**
+         * Lower is better. Nodes that fail often move to the back, even when
+         * they fail fast.
+         */
+        private double getScore() {
+            long[] sortedLatencies = getSortedLatencies();
+            if (0 == sortedLatencies.length) {
+                synchronized (this) {
+                    // give unknown nodes a chance, unless they are still busy with their first request
+                    return 0 == this.inFlight ? 0 : Double.MAX_VALUE;
+                }
+            }
+            return percentile(sortedLatencies, 0.5) + getRecentErrorRate() * ERROR_PENALTY_NANOS;
+        }
+
+        private long getHedgeDelayMillis() {
+            long[] sortedLatencies = getSortedLatencies();
+            if (sortedLatencies.length < 16) {
+                return DEFAULT_HEDGE_DELAY_MILLIS;
+            }
+            return Math.max(MIN_HEDGE_DELAY_MILLIS, TimeUnit.NANOSECONDS.toMillis(percentile(sortedLatencies, HEDGE_PERCENTILE)));
+        }
+
+        private String getStatistics() {
+            long[] sortedLatencies = getSortedLatencies();
+            String latency;
+            if (0 == sortedLatencies.length) {
+                latency = "no latency samples";
+            } else {
+                latency = "latency p50 " + TimeUnit.NANOSECONDS.toMillis(percentile(sortedLatencies, 0.5))
+                        + " ms, p95 " + TimeUnit.NANOSECONDS.toMillis(percentile(sortedLatencies, 0.95)) + " ms";
+            }
+            synchronized (this) {
+                return "Node " + this.location + ": " + this.requests + " requests, " + this.errors + " errors, "
+                        + this.hedgeWins + " hedge wins, " + latency;
+            }
+        }
+    }
+}
@@ -21,8 +21,13 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.concurrent.Callable;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthChainId;
+import org.web3j.protocol.core.methods.response.EthSyncing;
+import org.web3j.protocol.core.methods.response.NetPeerCount;
+import org.web3j.protocol.core.methods.response.NetVersion;
+import org.web3j.protocol.core.methods.response.Web3ClientVersion;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
 
@@ -34,23 +39,30 @@ public class Node implements Callable<Void> {
 
     @Override
     public Void call() throws Exception {
-        String clientVersion = this.web3.web3ClientVersion().send().getWeb3ClientVersion();
+        RpcBatch batch = new RpcBatch(this.web3);
+        RpcBatch.Result<Web3ClientVersion> web3ClientVersion = batch.add(this.web3.web3ClientVersion());
+        RpcBatch.Result<EthSyncing> ethSyncing = batch.add(this.web3.ethSyncing());
+        RpcBatch.Result<NetVersion> netVersion = batch.add(this.web3.netVersion());
+        RpcBatch.Result<NetPeerCount> netPeerCount = batch.add(this.web3.netPeerCount());
+        RpcBatch.Result<EthChainId> ethChainId = batch.add(this.web3.ethChainId());
+        RpcBatch.Result<EthBlock> ethBlock = batch.add(this.web3.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false));
+        batch.send();
+        String clientVersion = web3ClientVersion.get().getWeb3ClientVersion();
         if (null != clientVersion) {
             System.out.println("Client version: " + clientVersion);
         }
-        boolean syncing = this.web3.ethSyncing().send().isSyncing();
+        boolean syncing = ethSyncing.get().isSyncing();
         System.out.println("Syncing: " + syncing);
-        String version = this.web3.netVersion().send().getNetVersion();
+        String version = netVersion.get().getNetVersion();
         System.out.println("Network version: " + version);
-        BigInteger peerCount = this.web3.netPeerCount().send().getQuantity();
+        BigInteger peerCount = netPeerCount.get().getQuantity();
         System.out.println("Peer count: " + peerCount);
-        BigInteger chainId = this.web3.ethChainId().send().getChainId();
+        BigInteger chainId = ethChainId.get().getChainId();
         if (null != chainId) {
             System.out.println("Chain id: " + chainId);
         }
-        BigInteger blockNumber = this.web3.ethBlockNumber().send().getBlockNumber();
-        System.out.println("Latest block: " + blockNumber);
-        EthBlock.Block block = this.web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), true).send().getBlock();
+        EthBlock.Block block = ethBlock.get().getBlock();
+        System.out.println("Latest block: " + block.getNumber());
         double percentageGasUsed = (double) block.getGasUsed().longValueExact() / block.getGasLimit().longValueExact() * 100;
         System.out.println("Gas used: " + block.getGasUsed() + " gas units");
         System.out.println("Gas limit: " + block.getGasLimit() + " gas units (" + percentageGasUsed + " %)");
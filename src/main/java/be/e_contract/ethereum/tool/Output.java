@@ -26,16 +26,17 @@ public class Output {
         AnsiConsole.systemInstall();
     }
 
+    // errors and warnings go to standard error, so they never end up in machine readable output
     public static void error(String message) {
-        AnsiConsole.out().print(Ansi.ansi().reset().fg(Ansi.Color.RED));
-        System.out.println(message);
-        AnsiConsole.out().print(Ansi.ansi().reset());
+        AnsiConsole.err().print(Ansi.ansi().reset().fg(Ansi.Color.RED));
+        System.err.println(message);
+        AnsiConsole.err().print(Ansi.ansi().reset());
     }
 
     public static void warning(String message) {
-        AnsiConsole.out().print(Ansi.ansi().reset().fg(Ansi.Color.YELLOW));
-        System.out.println(message);
-        AnsiConsole.out().print(Ansi.ansi().reset());
+        AnsiConsole.err().print(Ansi.ansi().reset().fg(Ansi.Color.YELLOW));
+        System.err.println(message);
+        AnsiConsole.err().print(Ansi.ansi().reset());
     }
 
     public static void println(int indent, String message) {
@@ -20,7 +20,6 @@ package be.e_contract.ethereum.tool;
 import java.util.concurrent.Callable;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterName;
-import org.web3j.protocol.core.methods.response.EthBlock;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "pending", description = "information on pending block", separator = " ")
@@ -31,9 +30,9 @@ public class Pending implements Callable<Void> {
 
     @Override
     public Void call() throws Exception {
-        EthBlock pendingEthBlock = this.web3.ethGetBlockByNumber(DefaultBlockParameterName.PENDING, true).send();
-        EthBlock.Block pendingBlock = pendingEthBlock.getBlock();
-        int pendingTransactionCount = pendingBlock.getTransactions().size();
+        EthBlockTransactions.BlockTransactions pendingBlock = ((ToolWeb3j) this.web3)
+                .ethGetBlockTransactionsByNumber(DefaultBlockParameterName.PENDING).send().getBlockTransactions();
+        int pendingTransactionCount = pendingBlock.getTransactionCount();
         System.out.println("Number of pending transactions: " + pendingTransactionCount);
         return null;
     }
@@ -0,0 +1,293 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap index of pending transaction hashes. The 32-byte transaction hashes
+ * are kept in an open-addressing hash table (linear probing) within a direct
+ * byte buffer, together with the first-seen timestamp, the block number at
+ * which the transaction was first seen, and an application specific int value.
+ * Transaction hashes are parsed directly from their hexadecimal form, so
+ * neither inserts nor lookups allocate heap objects.
+ */
+public class PendingTransactionIndex {
+
+    // 4 longs for the hash, created, block number, value, used flag
+    private static final int SLOT_SIZE = 56;
+
+    private static final int CREATED_OFFSET = 32;
+
+    private static final int BLOCK_NUMBER_OFFSET = 40;
+
+    private static final int VALUE_OFFSET = 48;
+
+    private static final int USED_OFFSET = 52;
+
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / SLOT_SIZE;
+
+    private ByteBuffer table;
+
+    private int capacity;
+
+    private int mask;
+
+    private int size;
+
+    public PendingTransactionIndex(int initialCapacity) {
+        int tableCapacity = 16;
+        while (tableCapacity < initialCapacity * 2 && tableCapacity < MAX_CAPACITY / 2) {
+            tableCapacity *= 2;
+        }
+        allocate(tableCapacity);
+    }
+
+    public static final class Entry {
+
+        private long created;
+
+        private long blockNumber;
+
+        private int value;
+
+        public long getCreated() {
+            return this.created;
+        }
+
+        public long getBlockNumber() {
+            return this.blockNumber;
+        }
+
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    private void allocate(int tableCapacity) {
+        this.capacity = tableCapacity;
+        this.mask = tableCapacity - 1;
+        this.table = ByteBuffer.allocateDirect(tableCapacity * SLOT_SIZE);
+        this.size = 0;
+    }
+
+    /**
+     * Adds a pending transaction. An existing entry for the same transaction
+     * hash is kept as is, as we are interested in the first-seen timestamp.
+     *
+     * @param transactionHash the hexadecimal transaction hash.
+     * @param created the first-seen timestamp.
+     * @param blockNumber the latest block number at the moment we saw the
+     * transaction.
+     * @param value
+     * @return true if the transaction was added.
+     */
+    public synchronized boolean put(String transactionHash, long created, long blockNumber, int value) {
+        long h0 = parseHashPart(transactionHash, 0);
+        long h1 = parseHashPart(transactionHash, 1);
+        long h2 = parseHashPart(transactionHash, 2);
+        long h3 = parseHashPart(transactionHash, 3);
+        if ((this.size + 1) * 2 > this.capacity) {
+            grow();
+        }
+        int slot = findSlot(h0, h1, h2, h3);
+        int offset = slot * SLOT_SIZE;
+        if (isUsed(offset)) {
+            return false;
+        }
+        write(offset, h0, h1, h2, h3, created, blockNumber, value);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Removes a pending transaction.
+     *
+     * @param transactionHash the hexadecimal transaction hash.
+     * @param entry receives the data of the removed entry. Can be null.
+     * @return true if the transaction was present.
+     */
+    public synchronized boolean remove(String transactionHash, Entry entry) {
+        long h0 = parseHashPart(transactionHash, 0);
+        long h1 = parseHashPart(transactionHash, 1);
+        long h2 = parseHashPart(transactionHash, 2);
+        long h3 = parseHashPart(transactionHash, 3);
+        int slot = findSlot(h0, h1, h2, h3);
+        int offset = slot * SLOT_SIZE;
+        if (!isUsed(offset)) {
+            return false;
+        }
+        if (null != entry) {
+            entry.created = this.table.getLong(offset + CREATED_OFFSET);
+            entry.blockNumber = this.table.getLong(offset + BLOCK_NUMBER_OFFSET);
+            entry.value = this.table.getInt(offset + VALUE_OFFSET);
+        }
+        delete(slot);
+        return true;
+    }
+
+    public synchronized boolean contains(String transactionHash) {
+        int slot = findSlot(parseHashPart(transactionHash, 0), parseHashPart(transactionHash, 1),
+                parseHashPart(transactionHash, 2), parseHashPart(transactionHash, 3));
+        return isUsed(slot * SLOT_SIZE);
+    }
+
+    /**
+     * Evicts all transactions that were first seen before the given block
+     * number.
+     *
+     * @param blockNumber
+     * @return the number of evicted transactions.
+     */
+    public synchronized int evictBefore(long blockNumber) {
+        int evicted = 0;
+        int slot = 0;
+        while (slot < this.capacity) {
+            int offset = slot * SLOT_SIZE;
+            if (isUsed(offset) && this.table.getLong(offset + BLOCK_NUMBER_OFFSET) < blockNumber) {
+                // backward shift can move another entry into this slot, so check it again
+                delete(slot);
+                evicted++;
+            } else {
+                slot++;
+            }
+        }
+        return evicted;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized int getCapacity() {
+        return this.capacity;
+    }
+
+    private int findSlot(long h0, long h1, long h2, long h3) {
+        int slot = home(h0);
+        while (true) {
+            int offset = slot * SLOT_SIZE;
+            if (!isUsed(offset)) {
+                return slot;
+            }
+            if (this.table.getLong(offset) == h0
+                    && this.table.getLong(offset + 8) == h1
+                    && this.table.getLong(offset + 16) == h2
+                    && this.table.getLong(offset + 24) == h3) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    private int home(long h0) {
+        // transaction hashes are uniformly distributed already
+        return (int) (h0 ^ (h0 >>> 32)) & this.mask;
+    }
+
+    private boolean isUsed(int offset) {
+        return this.table.getInt(offset + USED_OFFSET) != 0;
+    }
+
+    private void write(int offset, long h0, long h1, long h2, long h3, long created, long blockNumber, int value) {
+        this.table.putLong(offset, h0);
+        this.table.putLong(offset + 8, h1);
+        this.table.putLong(offset + 16, h2);
+        this.table.putLong(offset + 24, h3);
+        this.table.putLong(offset + CREATED_OFFSET, created);
+        this.table.putLong(offset + BLOCK_NUMBER_OFFSET, blockNumber);
+        this.table.putInt(offset + VALUE_OFFSET, value);
+        this.table.putInt(offset + USED_OFFSET, 1);
+    }
+
+    private void delete(int slot) {
+        // backward shift deletion keeps the probe sequences intact without tombstones
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & this.mask;
+            int nextOffset = next * SLOT_SIZE;
+            if (!isUsed(nextOffset)) {
+                break;
+            }
+            int nextHome = home(this.table.getLong(nextOffset));
+            boolean move;
+            if (hole <= next) {
+                move = nextHome <= hole || nextHome > next;
+            } else {
+                move = nextHome <= hole && nextHome > next;
+            }
+            if (move) {
+                copySlot(next, hole);
+                hole = next;
+            }
+        }
+        this.table.putInt(hole * SLOT_SIZE + USED_OFFSET, 0);
+        this.size--;
+    }
+
+    private void copySlot(int from, int to) {
+        int fromOffset = from * SLOT_SIZE;
+        int toOffset = to * SLOT_SIZE;
+        for (int idx = 0; idx < SLOT_SIZE; idx += 8) {
+            this.table.putLong(toOffset + idx, this.table.getLong(fromOffset + idx));
+        }
+    }
+
+    private void grow() {
+        if (this.capacity >= MAX_CAPACITY / 2) {
+            throw new IllegalStateException("pending transaction index full");
+        }
+        ByteBuffer oldTable = this.table;
+        int oldCapacity = this.capacity;
+        allocate(oldCapacity * 2);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = slot * SLOT_SIZE;
+            if (oldTable.getInt(offset + USED_OFFSET) == 0) {
+                continue;
+            }
+            long h0 = oldTable.getLong(offset);
+            long h1 = oldTable.getLong(offset + 8);
+            long h2 = oldTable.getLong(offset + 16);
+            long h3 = oldTable.getLong(offset + 24);
+            int newSlot = findSlot(h0, h1, h2, h3);
+            write(newSlot * SLOT_SIZE, h0, h1, h2, h3,
+                    oldTable.getLong(offset + CREATED_OFFSET),
+                    oldTable.getLong(offset + BLOCK_NUMBER_OFFSET),
+                    oldTable.getInt(offset + VALUE_OFFSET));
+            this.size++;
+        }
+    }
+
+    private static long parseHashPart(String transactionHash, int part) {
+        int start = transactionHash.startsWith("0x") || transactionHash.startsWith("0X") ? 2 : 0;
+        if (transactionHash.length() - start != 64) {
+            throw new IllegalArgumentException("invalid transaction hash: " + transactionHash);
+        }
+        long result = 0;
+        int offset = start + part * 16;
+        for (int idx = offset; idx < offset + 16; idx++) {
+            int digit = Character.digit(transactionHash.charAt(idx), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("invalid transaction hash: " + transactionHash);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+}
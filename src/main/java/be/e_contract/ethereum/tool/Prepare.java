@@ -34,6 +34,8 @@ import picocli.CommandLine;
 @CommandLine.Command(name = "prepare", description = "prepare a transaction", separator = " ")
 public class Prepare implements Callable<Void> {
 
+    private static final int FEE_HISTORY_WINDOW = 20;
+
     @CommandLine.Option(names = {"-o", "--outfile"}, required = true, description = "the transaction template output file")
     private File outFile;
 
@@ -52,6 +54,9 @@ public class Prepare implements Callable<Void> {
     @CommandLine.Option(names = {"-e", "--empty"}, description = "take a value to empty the from address")
     private boolean[] empty;
 
+    @CommandLine.Option(names = {"--target-blocks"}, description = "get included within this number of blocks (default: ${DEFAULT-VALUE})")
+    private int targetBlocks = 3;
+
     @Override
     public Void call() throws Exception {
         if (this.value == null && this.empty == null) {
@@ -75,13 +80,15 @@ public class Prepare implements Callable<Void> {
         transactionTemplate.to = Keys.toChecksumAddress(this.to.getAddress());
         transactionTemplate.chainId = chainId.longValueExact();
 
-        BigInteger gasPrice = this.web3.ethGasPrice().send().getGasPrice();
-        BigInteger maxFeePerGas = gasPrice.multiply(BigInteger.valueOf(2));
+        FeeOracle feeOracle = new FeeOracle(this.web3, FEE_HISTORY_WINDOW);
+        feeOracle.update();
+        FeeOracle.Recommendation recommendation = feeOracle.recommend(this.targetBlocks);
+        BigInteger maxFeePerGas = recommendation.getMaxFeePerGas();
         BigDecimal maxFeePerGasWei = new BigDecimal(maxFeePerGas);
         BigDecimal maxFeePerGasGwei = Convert.fromWei(maxFeePerGasWei, Convert.Unit.GWEI);
         transactionTemplate.maxFeePerGas = maxFeePerGasGwei.doubleValue();
 
-        BigInteger maxPriorityFeePerGas = this.web3.ethMaxPriorityFeePerGas().send().getMaxPriorityFeePerGas();
+        BigInteger maxPriorityFeePerGas = recommendation.getMaxPriorityFeePerGas();
         BigDecimal maxPriorityFeePerGasWei = new BigDecimal(maxPriorityFeePerGas);
         BigDecimal maxPriorityFeePerGasGwei = Convert.fromWei(maxPriorityFeePerGasWei, Convert.Unit.GWEI);
         transactionTemplate.maxPriorityFeePerGas = maxPriorityFeePerGasGwei.doubleValue();
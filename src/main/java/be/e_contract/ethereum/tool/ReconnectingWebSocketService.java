@@ -0,0 +1,135 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import io.reactivex.Flowable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.Notification;
+
+/**
+ * WebSocket service that reconnects after losing the connection to the node.
+ * Subscriptions are established again on the new connection, so subscribers
+ * only notice a gap in the events.
+ */
+public class ReconnectingWebSocketService implements Web3jService {
+
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    private final String url;
+
+    private final WebSocketService webSocketService;
+
+    private boolean connected;
+
+    private boolean closed;
+
+    public ReconnectingWebSocketService(String url) {
+        this.url = url;
+        this.webSocketService = new WebSocketService(url, false);
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    public synchronized void connect() throws ConnectException {
+        if (this.connected) {
+            return;
+        }
+        if (this.closed) {
+            throw new ConnectException("WebSocket service closed");
+        }
+        this.webSocketService.connect(message -> {
+        }, error -> {
+        }, this::onClose);
+        this.connected = true;
+    }
+
+    private synchronized void onClose() {
+        this.connected = false;
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        connect();
+        return this.webSocketService.send(request, responseType);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        try {
+            connect();
+        } catch (ConnectException ex) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            result.completeExceptionally(ex);
+            return result;
+        }
+        return this.webSocketService.sendAsync(request, responseType);
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        connect();
+        return this.webSocketService.sendBatch(batchRequest);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        try {
+            connect();
+        } catch (ConnectException ex) {
+            CompletableFuture<BatchResponse> result = new CompletableFuture<>();
+            result.completeExceptionally(ex);
+            return result;
+        }
+        return this.webSocketService.sendBatchAsync(batchRequest);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        return Flowable.defer(() -> {
+            connect();
+            return this.webSocketService.subscribe(request, unsubscribeMethod, responseType);
+        }).retryWhen(errors -> errors.flatMap(error -> {
+            synchronized (this) {
+                if (this.closed) {
+                    return Flowable.error(error);
+                }
+            }
+            Output.warning("Lost subscription on " + this.url + ": " + error.getMessage());
+            Output.warning("Resubscribing...");
+            return Flowable.timer(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        this.connected = false;
+        this.webSocketService.close();
+    }
+}
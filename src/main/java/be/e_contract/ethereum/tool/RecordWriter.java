@@ -0,0 +1,182 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes machine readable records to standard output. Output goes through a
+ * large buffer directly on the standard output file descriptor, so there are
+ * no ANSI escape codes and no flush per record. Status messages should go to
+ * standard error while a record writer is active.
+ */
+public abstract class RecordWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final String[] columns;
+
+    protected RecordWriter(String[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Creates a record writer on standard output.
+     *
+     * @param format JSONL or CSV.
+     * @param columns the record columns.
+     * @return
+     * @throws IOException
+     */
+    public static RecordWriter open(OutputFormat format, String... columns) throws IOException {
+        return open(format, new FileOutputStream(FileDescriptor.out), columns);
+    }
+
+    public static RecordWriter open(OutputFormat format, OutputStream outputStream, String... columns) throws IOException {
+        OutputStream bufferedOutputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        switch (format) {
+            case JSONL:
+                return new JsonLinesRecordWriter(bufferedOutputStream, columns);
+            case CSV:
+                return new CsvRecordWriter(bufferedOutputStream, columns);
+            default:
+                throw new IllegalArgumentException("no record writer for format: " + format);
+        }
+    }
+
+    /**
+     * Writes a single record.
+     *
+     * @param values the values, in the order of the columns.
+     * @throws IOException
+     */
+    public abstract void write(Object... values) throws IOException;
+
+    public abstract void flush() throws IOException;
+
+    /**
+     * Flushes all records. The underlying standard output stays open.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private static final class JsonLinesRecordWriter extends RecordWriter {
+
+        private final JsonGenerator generator;
+
+        JsonLinesRecordWriter(OutputStream outputStream, String[] columns) throws IOException {
+            super(columns);
+            JsonFactory jsonFactory = new JsonFactory();
+            this.generator = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.enable(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN);
+            this.generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        }
+
+        @Override
+        public void write(Object... values) throws IOException {
+            this.generator.writeStartObject();
+            for (int idx = 0; idx < this.columns.length; idx++) {
+                this.generator.writeFieldName(this.columns[idx]);
+                Object value = values[idx];
+                if (null == value) {
+                    this.generator.writeNull();
+                } else if (value instanceof BigInteger) {
+                    this.generator.writeNumber((BigInteger) value);
+                } else if (value instanceof BigDecimal) {
+                    this.generator.writeNumber((BigDecimal) value);
+                } else if (value instanceof Long || value instanceof Integer) {
+                    this.generator.writeNumber(((Number) value).longValue());
+                } else if (value instanceof Number) {
+                    this.generator.writeNumber(((Number) value).doubleValue());
+                } else if (value instanceof Boolean) {
+                    this.generator.writeBoolean((Boolean) value);
+                } else {
+                    this.generator.writeString(value.toString());
+                }
+            }
+            this.generator.writeEndObject();
+            this.generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.generator.flush();
+        }
+    }
+
+    private static final class CsvRecordWriter extends RecordWriter {
+
+        private final Writer writer;
+
+        CsvRecordWriter(OutputStream outputStream, String[] columns) throws IOException {
+            super(columns);
+            this.writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            write((Object[]) columns);
+        }
+
+        @Override
+        public void write(Object... values) throws IOException {
+            for (int idx = 0; idx < this.columns.length; idx++) {
+                if (idx > 0) {
+                    this.writer.write(',');
+                }
+                Object value = values[idx];
+                if (null == value) {
+                    continue;
+                }
+                String text;
+                if (value instanceof BigDecimal) {
+                    text = ((BigDecimal) value).toPlainString();
+                } else {
+                    text = value.toString();
+                }
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    this.writer.write('"');
+                    this.writer.write(text.replace("\"", "\"\""));
+                    this.writer.write('"');
+                } else {
+                    this.writer.write(text);
+                }
+            }
+            this.writer.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+        }
+    }
+}
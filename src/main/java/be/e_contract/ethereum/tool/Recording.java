@@ -0,0 +1,144 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.web3j.protocol.ObjectMapperFactory;
+
+/**
+ * Recorded JSON-RPC traffic, as written via the --record option. The file
+ * holds one {"method", "params", "result"} or {"method", "params", "error"}
+ * object per line, and is gzip compressed when the file name ends with .gz.
+ * <p>
+ * The same request can have been recorded several times with different
+ * answers, for example when polling for new blocks. Replay gives back these
+ * answers in the recorded order, and then keeps repeating the last one.
+ * Filter polls are the exception: once their recorded answers are used up,
+ * there are no further changes.
+ */
+public class Recording {
+
+    private static final String FILTER_CHANGES = "eth_getFilterChanges";
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, List<JsonNode>> answers;
+
+    private final Map<String, Integer> cursors;
+
+    public Recording() {
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        this.answers = new HashMap<>();
+        this.cursors = new HashMap<>();
+    }
+
+    public static Recording load(File file) throws IOException {
+        Recording recording = new Recording();
+        InputStream inputStream = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode entry = recording.objectMapper.readTree(line);
+                recording.add(entry.get("method").asText(), entry.get("params"), entry);
+            }
+        }
+        return recording;
+    }
+
+    public static String getKey(String method, JsonNode params) {
+        return method + (null == params ? "[]" : params.toString());
+    }
+
+    public void put(String method, JsonNode params, JsonNode result) {
+        ObjectNode entry = this.objectMapper.createObjectNode();
+        entry.set("result", result);
+        add(method, params, entry);
+    }
+
+    private synchronized void add(String method, JsonNode params, JsonNode entry) {
+        this.answers.computeIfAbsent(getKey(method, params), key -> new ArrayList<>()).add(entry);
+    }
+
+    public synchronized int size() {
+        return this.answers.size();
+    }
+
+    /**
+     * Gives back the JSON-RPC response for the given JSON-RPC request.
+     *
+     * @param request
+     * @return
+     */
+    public ObjectNode respond(JsonNode request) {
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", request.get("id"));
+        JsonNode method = request.get("method");
+        JsonNode entry = null == method ? null : next(method.asText(), request.get("params"));
+        if (null == entry) {
+            ObjectNode error = response.putObject("error");
+            error.put("code", -32000);
+            error.put("message", "not recorded: " + (null == method ? null : method.asText()));
+        } else if (entry.has("error")) {
+            response.set("error", entry.get("error"));
+        } else {
+            response.set("result", entry.get("result"));
+        }
+        return response;
+    }
+
+    private synchronized JsonNode next(String method, JsonNode params) {
+        String key = getKey(method, params);
+        List<JsonNode> keyAnswers = this.answers.get(key);
+        if (null == keyAnswers) {
+            return null;
+        }
+        int cursor = this.cursors.getOrDefault(key, 0);
+        if (cursor < keyAnswers.size()) {
+            this.cursors.put(key, cursor + 1);
+            return keyAnswers.get(cursor);
+        }
+        if (FILTER_CHANGES.equals(method)) {
+            // else polling commands keep processing the last block over and over
+            ObjectNode entry = this.objectMapper.createObjectNode();
+            entry.putArray("result");
+            return entry;
+        }
+        return keyAnswers.get(keyAnswers.size() - 1);
+    }
+}
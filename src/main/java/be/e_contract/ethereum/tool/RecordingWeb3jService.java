@@ -0,0 +1,182 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.utils.Async;
+
+/**
+ * Records all JSON-RPC traffic towards the node, for later replay via the
+ * replay command. Subscription notifications are not recorded.
+ */
+public class RecordingWeb3jService extends ForwardingWeb3jService {
+
+    private final ObjectMapper objectMapper;
+
+    private final OutputStream outputStream;
+
+    private final GZIPOutputStream gzipOutputStream;
+
+    private final Writer writer;
+
+    private boolean finished;
+
+    public RecordingWeb3jService(Web3jService web3jService, File recordFile) throws IOException {
+        super(web3jService);
+        this.objectMapper = ObjectMapperFactory.getObjectMapper();
+        this.outputStream = new BufferedOutputStream(new FileOutputStream(recordFile), 64 * 1024);
+        if (recordFile.getName().endsWith(".gz")) {
+            this.gzipOutputStream = new GZIPOutputStream(this.outputStream, 64 * 1024);
+            this.writer = new OutputStreamWriter(this.gzipOutputStream, StandardCharsets.UTF_8);
+        } else {
+            this.gzipOutputStream = null;
+            this.writer = new OutputStreamWriter(this.outputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        CachingWeb3jService.RawResponse rawResponse = this.web3jService.send(toRawRequest(request), CachingWeb3jService.RawResponse.class);
+        record(request, rawResponse);
+        return toResponse(request.getId(), rawResponse, responseType);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return Async.run(() -> send(request, responseType));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Request<?, ? extends Response<?>>> requests = batchRequest.getRequests();
+        BatchRequest rawBatchRequest = new BatchRequest(this.web3jService);
+        for (Request<?, ? extends Response<?>> request : requests) {
+            rawBatchRequest.add(toRawRequest(request));
+        }
+        List<? extends Response<?>> rawResponses = this.web3jService.sendBatch(rawBatchRequest).getResponses();
+        List<Response<?>> responses = new ArrayList<>(rawResponses.size());
+        for (Response<?> response : rawResponses) {
+            CachingWeb3jService.RawResponse rawResponse = (CachingWeb3jService.RawResponse) response;
+            Request<?, ? extends Response<?>> request = null;
+            for (Request<?, ? extends Response<?>> candidate : requests) {
+                if (candidate.getId() == rawResponse.getId()) {
+                    request = candidate;
+                    break;
+                }
+            }
+            if (null == request) {
+                continue;
+            }
+            record(request, rawResponse);
+            responses.add(toResponse(request.getId(), rawResponse, request.getResponseType()));
+        }
+        return new BatchResponse(requests, responses);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return Async.run(() -> sendBatch(batchRequest));
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        synchronized (this.writer) {
+            this.writer.close();
+        }
+        super.close();
+    }
+
+    /**
+     * Makes sure that everything recorded so far is on disk. Requests still in
+     * flight complete normally, but are no longer recorded, as a compressed
+     * recording cannot be appended to once finished.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        synchronized (this.writer) {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            this.writer.flush();
+            if (null != this.gzipOutputStream) {
+                this.gzipOutputStream.finish();
+            }
+            this.outputStream.flush();
+        }
+    }
+
+    private void record(Request<?, ?> request, CachingWeb3jService.RawResponse rawResponse) throws IOException {
+        ObjectNode entry = this.objectMapper.createObjectNode();
+        entry.put("method", request.getMethod());
+        entry.set("params", this.objectMapper.valueToTree(request.getParams()));
+        if (rawResponse.hasError()) {
+            entry.set("error", this.objectMapper.valueToTree(rawResponse.getError()));
+        } else {
+            entry.set("result", rawResponse.getResult());
+        }
+        String line = this.objectMapper.writeValueAsString(entry);
+        synchronized (this.writer) {
+            if (this.finished) {
+                return;
+            }
+            this.writer.write(line);
+            this.writer.write('\n');
+        }
+    }
+
+    private Request<?, CachingWeb3jService.RawResponse> toRawRequest(Request<?, ?> request) {
+        Request<?, CachingWeb3jService.RawResponse> rawRequest = new Request<>(request.getMethod(), request.getParams(),
+                this.web3jService, CachingWeb3jService.RawResponse.class);
+        rawRequest.setId(request.getId());
+        return rawRequest;
+    }
+
+    private <T extends Response> T toResponse(long id, CachingWeb3jService.RawResponse rawResponse, Class<T> responseType) throws IOException {
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        if (rawResponse.hasError()) {
+            response.set("error", this.objectMapper.valueToTree(rawResponse.getError()));
+        } else {
+            response.set("result", rawResponse.getResult());
+        }
+        return this.objectMapper.treeToValue(response, responseType);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.web3j.protocol.ObjectMapperFactory;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "replay", description = "serve recorded JSON-RPC traffic as a local node", separator = " ")
+public class Replay implements Callable<Void> {
+
+    @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "the recording, as written via --record")
+    private File recordingFile;
+
+    @CommandLine.Option(names = {"-p", "--port"}, description = "the HTTP port (default: ${DEFAULT-VALUE})")
+    private int port = 8545;
+
+    @CommandLine.Option(names = {"--ipc"}, description = "serve on this IPC socket file instead of HTTP")
+    private File ipcFile;
+
+    @CommandLine.Option(names = {"--latency"}, description = "injected latency per request in milliseconds (default: ${DEFAULT-VALUE})")
+    private long latency;
+
+    @CommandLine.Option(names = {"--jitter"}, description = "additional random latency per request in milliseconds (default: ${DEFAULT-VALUE})")
+    private long jitter;
+
+    @CommandLine.Option(names = {"--threads"}, description = "number of request handling threads (default: ${DEFAULT-VALUE})")
+    private int threads = 16;
+
+    private Recording recording;
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    @Override
+    public Void call() throws Exception {
+        if (!this.recordingFile.exists()) {
+            Output.error("Recording not found: " + this.recordingFile.getAbsolutePath());
+            return null;
+        }
+        this.recording = Recording.load(this.recordingFile);
+        System.out.println("Loaded " + this.recording.size() + " recorded requests");
+        ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+        if (null != this.ipcFile) {
+            serveIpc(executorService);
+            return null;
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", this.port), 0);
+        httpServer.setExecutor(executorService);
+        httpServer.createContext("/", exchange -> {
+            JsonNode response;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                response = respond(this.objectMapper.readTree(inputStream));
+            }
+            byte[] body = this.objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        httpServer.start();
+        System.out.println("Serving on http://localhost:" + this.port + " - press Ctrl-C to stop");
+        new CountDownLatch(1).await();
+        return null;
+    }
+
+    private void serveIpc(ExecutorService executorService) throws Exception {
+        if (this.ipcFile.exists()) {
+            Output.error("IPC file already exists: " + this.ipcFile.getAbsolutePath());
+            return;
+        }
+        UnixServerSocketChannel serverSocketChannel = UnixServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new UnixSocketAddress(this.ipcFile));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> this.ipcFile.delete()));
+        System.out.println("Serving on " + this.ipcFile.getAbsolutePath() + " - press Ctrl-C to stop");
+        while (true) {
+            UnixSocketChannel channel = serverSocketChannel.accept();
+            // unexpected errors end up at the default uncaught exception handler
+            executorService.execute(() -> handle(channel));
+        }
+    }
+
+    private void handle(UnixSocketChannel acceptedChannel) {
+        // IPC clients stream JSON requests on a single connection
+        try (UnixSocketChannel channel = acceptedChannel;
+                JsonParser parser = this.objectMapper.getFactory().createParser(Channels.newInputStream(channel))) {
+            OutputStream outputStream = Channels.newOutputStream(channel);
+            MappingIterator<JsonNode> requests = this.objectMapper.readValues(parser, JsonNode.class);
+            while (requests.hasNextValue()) {
+                outputStream.write(this.objectMapper.writeValueAsBytes(respond(requests.nextValue())));
+                // web3j reads up to the newline, like geth sends it
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+        } catch (JsonEOFException ex) {
+            // client went away halfway a request
+        } catch (JsonProcessingException ex) {
+            Output.error("Invalid IPC request: " + ex.getOriginalMessage());
+        } catch (IOException ex) {
+            // client went away
+        }
+    }
+
+    private JsonNode respond(JsonNode request) {
+        injectLatency();
+        if (!request.isArray()) {
+            return this.recording.respond(request);
+        }
+        ArrayNode responses = this.objectMapper.createArrayNode();
+        for (JsonNode batchRequest : request) {
+            responses.add(this.recording.respond(batchRequest));
+        }
+        return responses;
+    }
+
+    private void injectLatency() {
+        long delay = this.latency;
+        if (this.jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(this.jitter + 1);
+        }
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+/**
+ * Packs independent JSON-RPC calls into a single batch, so they cost only one
+ * round trip to the node. Every added request gets a result handle that is
+ * filled in once the batch has been sent.
+ */
+public class RpcBatch {
+
+    private final Web3j web3;
+
+    private final List<Result<?>> results;
+
+    public RpcBatch(Web3j web3) {
+        this.web3 = web3;
+        this.results = new LinkedList<>();
+    }
+
+    public <T extends Response<?>> Result<T> add(Request<?, T> request) {
+        Result<T> result = new Result<>(request);
+        this.results.add(result);
+        return result;
+    }
+
+    public void send() throws IOException {
+        if (this.results.isEmpty()) {
+            return;
+        }
+        if (this.results.size() == 1) {
+            // no need for batch overhead here
+            this.results.get(0).sendSingle();
+            this.results.clear();
+            return;
+        }
+        BatchRequest batchRequest = this.web3.newBatch();
+        for (Result<?> result : this.results) {
+            batchRequest.add(result.request);
+        }
+        BatchResponse batchResponse = batchRequest.send();
+        List<? extends Response<?>> responses = batchResponse.getResponses();
+        if (responses.size() != this.results.size()) {
+            // some nodes do not support batch requests at all
+            for (Result<?> result : this.results) {
+                result.sendSingle();
+            }
+            this.results.clear();
+            return;
+        }
+        Map<Long, Response<?>> responsesById = new HashMap<>();
+        for (Response<?> response : responses) {
+            responsesById.put(response.getId(), response);
+        }
+        int idx = 0;
+        for (Result<?> result : this.results) {
+            Response<?> response = responsesById.get(result.request.getId());
+            if (null == response) {
+                response = responses.get(idx);
+            }
+            result.setResponse(response);
+            idx++;
+        }
+        this.results.clear();
+    }
+
+    public static final class Result<T extends Response<?>> {
+
+        private final Request<?, T> request;
+
+        private T response;
+
+        private Result(Request<?, T> request) {
+            this.request = request;
+        }
+
+        private void sendSingle() throws IOException {
+            this.response = this.request.send();
+        }
+
+        private void setResponse(Response<?> response) {
+            this.response = this.request.getResponseType().cast(response);
+        }
+
+        public T get() {
+            if (null == this.response) {
+                throw new IllegalStateException("batch not yet sent");
+            }
+            return this.response;
+        }
+    }
+}
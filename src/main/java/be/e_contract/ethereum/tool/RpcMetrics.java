@@ -0,0 +1,219 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+
+/**
+ * Per JSON-RPC method call statistics. Comparing the time spent waiting on the
+ * node with the wall clock time shows whether the node or the local processing
+ * is the bottleneck. The bytes per method are counted on the wire, for HTTP
+ * and IPC connections.
+ */
+public class RpcMetrics implements InstrumentedWeb3jService.RpcListener {
+
+    // Prometheus histogram bucket boundaries in seconds
+    private static final double[] BUCKET_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final long startNanos;
+
+    private final Map<String, MethodMetrics> methods;
+
+    // every batch counts only once here
+    private final AtomicLong waitingNanos;
+
+    public RpcMetrics() {
+        this.startNanos = System.nanoTime();
+        this.methods = new ConcurrentHashMap<>();
+        this.waitingNanos = new AtomicLong();
+    }
+
+    private static final class MethodMetrics {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private long errors;
+
+        private long bytesOut;
+
+        private long bytesIn;
+    }
+
+    /**
+     * Gives back the metrics of the given client, if the client got created
+     * with the global --metrics option.
+     *
+     * @param web3
+     * @return the metrics, or null.
+     */
+    public static RpcMetrics find(Web3j web3) {
+        if (!(web3 instanceof ToolWeb3j)) {
+            return null;
+        }
+        Web3jService service = ((ToolWeb3j) web3).getService();
+        while (service instanceof ForwardingWeb3jService) {
+            if (service instanceof InstrumentedWeb3jService) {
+                InstrumentedWeb3jService.RpcListener listener = ((InstrumentedWeb3jService) service).getListener();
+                if (listener instanceof RpcMetrics) {
+                    return (RpcMetrics) listener;
+                }
+            }
+            service = ((ForwardingWeb3jService) service).getDelegate();
+        }
+        return null;
+    }
+
+    @Override
+    public void onCall(String method, long latencyNanos, int batchSize, boolean error) {
+        this.waitingNanos.addAndGet(latencyNanos / batchSize);
+        MethodMetrics methodMetrics = this.methods.computeIfAbsent(method, key -> new MethodMetrics());
+        methodMetrics.latencies.record(latencyNanos);
+        if (error) {
+            synchronized (methodMetrics) {
+                methodMetrics.errors++;
+            }
+        }
+    }
+
+    @Override
+    public void onTransfer(String method, long bytesOut, long bytesIn) {
+        MethodMetrics methodMetrics = this.methods.computeIfAbsent(method, key -> new MethodMetrics());
+        synchronized (methodMetrics) {
+            methodMetrics.bytesOut += bytesOut;
+            methodMetrics.bytesIn += bytesIn;
+        }
+    }
+
+    public long getCount(String method) {
+        MethodMetrics methodMetrics = this.methods.get(method);
+        if (null == methodMetrics) {
+            return 0;
+        }
+        return methodMetrics.latencies.getCount();
+    }
+
+    public void printSummary(PrintStream printStream) {
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos);
+        printStream.println(String.format(Locale.ROOT, "%-40s %8s %6s %9s %9s %9s %9s %12s %12s",
+                "method", "calls", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "bytes out", "bytes in"));
+        for (Map.Entry<String, MethodMetrics> entry : new TreeMap<>(this.methods).entrySet()) {
+            MethodMetrics methodMetrics = entry.getValue();
+            LatencyHistogram latencies = methodMetrics.latencies;
+            synchronized (methodMetrics) {
+                printStream.println(String.format(Locale.ROOT, "%-40s %8d %6d %9.1f %9.1f %9.1f %9.1f %12d %12d",
+                        entry.getKey(), latencies.getCount(), methodMetrics.errors,
+                        latencies.getPercentileMicros(0.5) / 1000.0, latencies.getPercentileMicros(0.9) / 1000.0,
+                        latencies.getPercentileMicros(0.99) / 1000.0, latencies.getMaxMicros() / 1000.0,
+                        methodMetrics.bytesOut, methodMetrics.bytesIn));
+            }
+        }
+        // concurrent calls can add up to more than the wall clock time
+        printStream.println("Time waiting on the node: " + TimeUnit.NANOSECONDS.toMillis(this.waitingNanos.get())
+                + " ms of " + wallMillis + " ms wall clock time");
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format.
+     *
+     * @param builder
+     */
+    public void writePrometheus(StringBuilder builder) {
+        Map<String, MethodMetrics> sortedMethods = new TreeMap<>(this.methods);
+        builder.append("# HELP ethereum_tool_rpc_latency_seconds JSON-RPC call latency.\n");
+        builder.append("# TYPE ethereum_tool_rpc_latency_seconds histogram\n");
+        for (Map.Entry<String, MethodMetrics> entry : sortedMethods.entrySet()) {
+            String method = entry.getKey();
+            LatencyHistogram latencies = entry.getValue().latencies;
+            for (double bucketSeconds : BUCKET_SECONDS) {
+                long count = latencies.getCountAtOrBelow((long) (bucketSeconds * 1000000));
+                builder.append("ethereum_tool_rpc_latency_seconds_bucket{method=\"").append(method)
+                        .append("\",le=\"").append(bucketSeconds).append("\"} ").append(count).append('\n');
+            }
+            builder.append("ethereum_tool_rpc_latency_seconds_bucket{method=\"").append(method)
+                    .append("\",le=\"+Inf\"} ").append(latencies.getCount()).append('\n');
+            builder.append("ethereum_tool_rpc_latency_seconds_sum{method=\"").append(method).append("\"} ")
+                    .append(latencies.getTotalMicros() / 1000000.0).append('\n');
+            builder.append("ethereum_tool_rpc_latency_seconds_count{method=\"").append(method).append("\"} ")
+                    .append(latencies.getCount()).append('\n');
+        }
+        appendCounter(builder, sortedMethods, "ethereum_tool_rpc_errors_total", "JSON-RPC calls that failed.", methodMetrics -> methodMetrics.errors);
+        appendCounter(builder, sortedMethods, "ethereum_tool_rpc_sent_bytes_total", "JSON-RPC request bytes.", methodMetrics -> methodMetrics.bytesOut);
+        appendCounter(builder, sortedMethods, "ethereum_tool_rpc_received_bytes_total", "JSON-RPC response bytes.", methodMetrics -> methodMetrics.bytesIn);
+        builder.append("# HELP ethereum_tool_uptime_seconds Wall clock time since start.\n");
+        builder.append("# TYPE ethereum_tool_uptime_seconds gauge\n");
+        builder.append("ethereum_tool_uptime_seconds ").append((System.nanoTime() - this.startNanos) / 1e9).append('\n');
+    }
+
+    private static void appendCounter(StringBuilder builder, Map<String, MethodMetrics> sortedMethods, String name, String help,
+            ToLongFunction<MethodMetrics> field) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, MethodMetrics> entry : sortedMethods.entrySet()) {
+            MethodMetrics methodMetrics = entry.getValue();
+            long value;
+            synchronized (methodMetrics) {
+                value = field.applyAsLong(methodMetrics);
+            }
+            builder.append(name).append("{method=\"").append(entry.getKey()).append("\"} ").append(value).append('\n');
+        }
+    }
+
+    /**
+     * Serves the metrics in the Prometheus text format on localhost, via a
+     * daemon thread.
+     *
+     * @param port
+     * @return
+     * @throws IOException
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        httpServer.createContext("/metrics", exchange -> {
+            StringBuilder builder = new StringBuilder();
+            writePrometheus(builder);
+            byte[] body = builder.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        httpServer.start();
+        return httpServer;
+    }
+}
@@ -18,38 +18,62 @@
 package be.e_contract.ethereum.tool;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.BufferedWriter;
 import java.io.Console;
 import java.io.File;
 import java.io.FileReader;
+import java.io.Writer;
 import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
 import org.web3j.crypto.CipherException;
 import org.web3j.crypto.Credentials;
 import org.web3j.crypto.Hash;
-import org.web3j.crypto.Keys;
-import org.web3j.crypto.RawTransaction;
-import org.web3j.crypto.TransactionEncoder;
 import org.web3j.crypto.WalletUtils;
-import org.web3j.utils.Convert;
-import org.web3j.utils.Numeric;
 import picocli.CommandLine;
 
 @CommandLine.Command(name = "sign", description = "sign a transaction", separator = " ")
 public class Sign implements Callable<Void> {
 
-    @CommandLine.Option(names = {"-o", "--outfile"}, required = true, description = "the transaction output file")
+    @CommandLine.Option(names = {"-o", "--outfile"}, required = true, description = "the transaction output file, or for batch signing an output directory or JSONL file")
     private File outFile;
 
-    @CommandLine.Option(names = {"-t", "--template"}, required = true, description = "the transaction template file")
+    @CommandLine.Option(names = {"-t", "--template"}, required = true, description = "the transaction template file, or for batch signing a directory or JSONL file of templates")
     private File templateFile;
 
-    @CommandLine.Option(names = {"-f", "--keyfile"}, required = true, description = "the key file")
+    @CommandLine.Option(names = {"-f", "--keyfile"}, description = "the key file")
     private File keyFile;
 
+    @CommandLine.Option(names = {"--agent"}, description = "sign via the signing agent as started by the unlock command")
+    private boolean agent;
+
+    @CommandLine.Option(names = {"-s", "--socket"}, description = "the signing agent socket file (default: ~/.ethereum-tool/signer.sock)")
+    private File socketFile = SigningAgent.getDefaultSocketFile();
+
+    @CommandLine.Option(names = {"--threads"}, description = "number of signing threads for batch signing (default: number of processors)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = {"-m", "--manifest"}, description = "the batch signing manifest file (default: manifest.json next to the output)")
+    private File manifestFile;
+
     @Override
     public Void call() throws Exception {
+        if (this.templateFile.isDirectory() || this.templateFile.getName().endsWith(".jsonl")) {
+            return callBatch();
+        }
         Console console = System.console();
         if (this.outFile.exists()) {
             System.out.println("Existing output file: " + this.outFile.getName());
@@ -62,22 +86,15 @@ public class Sign implements Callable<Void> {
             Output.error("Template file does not exist: " + this.templateFile.getAbsolutePath());
             return null;
         }
-        if (!this.keyFile.exists()) {
-            Output.error("Non existing key file: " + this.keyFile.getAbsolutePath());
+        if (!checkSignerOptions()) {
             return null;
         }
         Gson gson = new Gson();
         TransactionTemplate transactionTemplate = gson.fromJson(new FileReader(this.templateFile), TransactionTemplate.class);
-        if (transactionTemplate.gasPrice == null) {
-            if (transactionTemplate.maxFeePerGas == null || transactionTemplate.maxPriorityFeePerGas == null) {
-                Output.error("Provide either gasPrice or maxFeePerGas and maxPriorityFeePerGas.");
-                return null;
-            }
-        } else {
-            if (transactionTemplate.maxFeePerGas != null || transactionTemplate.maxPriorityFeePerGas != null) {
-                Output.error("Provide either gasPrice or maxFeePerGas and maxPriorityFeePerGas.");
-                return null;
-            }
+        String validationError = TransactionSigner.validate(transactionTemplate);
+        if (null != validationError) {
+            Output.error(validationError);
+            return null;
         }
         if (null != transactionTemplate.description) {
             System.out.println("Description: " + transactionTemplate.description);
@@ -87,39 +104,24 @@ public class Sign implements Callable<Void> {
         System.out.println("Value: " + transactionTemplate.value + " ether");
         if (null != transactionTemplate.gasPrice) {
             System.out.println("Gas price: " + transactionTemplate.gasPrice + " Gwei");
-            Output.error("Will create a legacy transaction!");
         } else {
             System.out.println("Maximum fee per gas: " + transactionTemplate.maxFeePerGas + " Gwei");
             System.out.println("Maximum priority fee per gas: " + transactionTemplate.maxPriorityFeePerGas + " Gwei");
-            if (0 == transactionTemplate.maxPriorityFeePerGas) {
-                Output.error("Maximum priority fee per gas is zero.");
-            }
         }
-        System.out.println("Nonce: " + transactionTemplate.nonce);
-        if (!WalletUtils.isValidAddress(transactionTemplate.to)) {
-            Output.error("Invalid address: " + transactionTemplate.to);
-            return null;
-        }
-        if (!transactionTemplate.to.toLowerCase().equals(transactionTemplate.to)) {
-            if (!Keys.toChecksumAddress(transactionTemplate.to).equals(transactionTemplate.to)) {
-                Output.error("Address checksum error: " + transactionTemplate.to);
-                return null;
-            }
+        for (String warning : getWarnings(transactionTemplate)) {
+            Output.error(warning);
         }
+        System.out.println("Nonce: " + transactionTemplate.nonce);
         boolean confirmation = askConfirmation(console, "Sign transaction? (y/n)");
         if (!confirmation) {
             return null;
         }
-        char[] password = console.readPassword("Passphrase: ");
-        Credentials credentials;
-        try {
-            credentials = WalletUtils.loadCredentials(new String(password), this.keyFile);
-        } catch (CipherException ex) {
-            Output.error("Incorrect passphrase");
+        Signer signer = loadSigner(console);
+        if (null == signer) {
             return null;
         }
-        String address = credentials.getAddress();
-        System.out.println("From address: " + credentials.getAddress());
+        String address = signer.getAddress();
+        System.out.println("From address: " + address);
         if (transactionTemplate.from != null) {
             String from = transactionTemplate.from.toLowerCase();
             if (!from.equals(address)) {
@@ -131,38 +133,10 @@ public class Sign implements Callable<Void> {
         if (!confirmation) {
             return null;
         }
-        BigInteger nonce = BigInteger.valueOf(transactionTemplate.nonce);
-        BigDecimal valueEther = BigDecimal.valueOf(transactionTemplate.value);
-        BigDecimal valueWei = Convert.toWei(valueEther, Convert.Unit.ETHER);
-        BigInteger gasLimit = BigInteger.valueOf(21000);
-        RawTransaction rawTransaction;
-        if (transactionTemplate.gasPrice != null) {
-            BigDecimal gasPriceGwei = BigDecimal.valueOf(transactionTemplate.gasPrice);
-            BigDecimal gasPriceWei = Convert.toWei(gasPriceGwei, Convert.Unit.GWEI);
-            rawTransaction = RawTransaction.createEtherTransaction(nonce, gasPriceWei.toBigIntegerExact(),
-                    gasLimit, transactionTemplate.to, valueWei.toBigIntegerExact());
-        } else {
-            long chainId;
-            if (null != transactionTemplate.chainId) {
-                chainId = transactionTemplate.chainId;
-            } else {
-                chainId = 1;
-            }
-            BigDecimal maxPriorityFeePerGasGwei = BigDecimal.valueOf(transactionTemplate.maxPriorityFeePerGas);
-            BigDecimal maxPriorityFeePerGasWei = Convert.toWei(maxPriorityFeePerGasGwei, Convert.Unit.GWEI);
-            BigDecimal maxFeePerGasGwei = BigDecimal.valueOf(transactionTemplate.maxFeePerGas);
-            BigDecimal maxFeePerGasWei = Convert.toWei(maxFeePerGasGwei, Convert.Unit.GWEI);
-            rawTransaction = RawTransaction.createEtherTransaction(chainId, nonce, gasLimit, transactionTemplate.to, valueWei.toBigIntegerExact(),
-                    maxPriorityFeePerGasWei.toBigIntegerExact(), maxFeePerGasWei.toBigIntegerExact());
-        }
-        byte[] signedTransaction;
         if (null != transactionTemplate.chainId) {
             System.out.println("Chain Id: " + transactionTemplate.chainId);
-            signedTransaction = TransactionEncoder.signMessage(rawTransaction, transactionTemplate.chainId, credentials);
-        } else {
-            signedTransaction = TransactionEncoder.signMessage(rawTransaction, credentials);
         }
-        String hexValue = Numeric.toHexString(signedTransaction);
+        String hexValue = signer.sign(transactionTemplate);
         String transactionHash = Hash.sha3(hexValue);
         System.out.println("Transaction hash: " + transactionHash);
 
@@ -170,6 +144,274 @@ public class Sign implements Callable<Void> {
         return null;
     }
 
+    private static List<String> getWarnings(TransactionTemplate transactionTemplate) {
+        List<String> warnings = new ArrayList<>();
+        if (null != transactionTemplate.gasPrice) {
+            warnings.add("Will create a legacy transaction!");
+        } else if (0 == transactionTemplate.maxPriorityFeePerGas) {
+            warnings.add("Maximum priority fee per gas is zero.");
+        }
+        return warnings;
+    }
+
+    private boolean checkSignerOptions() {
+        if (this.agent) {
+            if (!this.socketFile.exists()) {
+                Output.error("No signing agent running at: " + this.socketFile.getAbsolutePath());
+                return false;
+            }
+            return true;
+        }
+        if (null == this.keyFile) {
+            Output.error("Provide a key file, or use the signing agent.");
+            return false;
+        }
+        if (!this.keyFile.exists()) {
+            Output.error("Non existing key file: " + this.keyFile.getAbsolutePath());
+            return false;
+        }
+        return true;
+    }
+
+    private interface Signer {
+
+        String getAddress();
+
+        String sign(TransactionTemplate transactionTemplate) throws Exception;
+    }
+
+    private Signer loadSigner(Console console) throws Exception {
+        if (this.agent) {
+            // the agent already did the key derivation
+            SigningAgentClient signingAgentClient = new SigningAgentClient(this.socketFile);
+            String address = signingAgentClient.getAddress();
+            return new Signer() {
+                @Override
+                public String getAddress() {
+                    return address;
+                }
+
+                @Override
+                public String sign(TransactionTemplate transactionTemplate) throws Exception {
+                    return signingAgentClient.sign(transactionTemplate);
+                }
+            };
+        }
+        Credentials credentials = loadCredentials(console);
+        if (null == credentials) {
+            return null;
+        }
+        return new Signer() {
+            @Override
+            public String getAddress() {
+                return credentials.getAddress();
+            }
+
+            @Override
+            public String sign(TransactionTemplate transactionTemplate) {
+                return TransactionSigner.sign(transactionTemplate, credentials);
+            }
+        };
+    }
+
+    private Credentials loadCredentials(Console console) throws Exception {
+        char[] password = console.readPassword("Passphrase: ");
+        try {
+            // runs the expensive key derivation function, so only once per run
+            return WalletUtils.loadCredentials(new String(password), this.keyFile);
+        } catch (CipherException ex) {
+            Output.error("Incorrect passphrase");
+            return null;
+        }
+    }
+
+    private Void callBatch() throws Exception {
+        Console console = System.console();
+        if (!this.templateFile.exists()) {
+            Output.error("Template location does not exist: " + this.templateFile.getAbsolutePath());
+            return null;
+        }
+        if (!checkSignerOptions()) {
+            return null;
+        }
+        Map<String, TransactionTemplate> transactionTemplates = loadTransactionTemplates();
+        if (transactionTemplates.isEmpty()) {
+            Output.error("No transaction templates found.");
+            return null;
+        }
+        // validate everything before asking for the passphrase
+        boolean valid = true;
+        BigDecimal totalValue = BigDecimal.ZERO;
+        // all templates get signed by the same key
+        Set<Long> nonces = new HashSet<>();
+        for (Map.Entry<String, TransactionTemplate> entry : transactionTemplates.entrySet()) {
+            TransactionTemplate transactionTemplate = entry.getValue();
+            String validationError = TransactionSigner.validate(transactionTemplate);
+            if (null != validationError) {
+                Output.error(entry.getKey() + ": " + validationError);
+                valid = false;
+            } else {
+                for (String warning : getWarnings(transactionTemplate)) {
+                    Output.error(entry.getKey() + ": " + warning);
+                }
+            }
+            if (!nonces.add(transactionTemplate.nonce)) {
+                Output.error(entry.getKey() + ": duplicate nonce " + transactionTemplate.nonce);
+                valid = false;
+            }
+            totalValue = totalValue.add(BigDecimal.valueOf(transactionTemplate.value));
+        }
+        if (!valid) {
+            return null;
+        }
+        boolean jsonLinesOutput = this.outFile.getName().endsWith(".jsonl");
+        File manifest = this.manifestFile;
+        if (null == manifest) {
+            manifest = jsonLinesOutput ? new File(this.outFile.getAbsoluteFile().getParentFile(), "manifest.json")
+                    : new File(this.outFile, "manifest.json");
+        }
+        if ((jsonLinesOutput && this.outFile.exists()) || (!jsonLinesOutput && this.outFile.isDirectory() && 0 != this.outFile.list().length)) {
+            System.out.println("Existing output: " + this.outFile.getName());
+            if (!askConfirmation(console, "Overwrite output? (y/n)")) {
+                return null;
+            }
+        }
+        System.out.println("Number of transactions: " + transactionTemplates.size());
+        System.out.println("Total value: " + totalValue.toPlainString() + " ether");
+        if (!askConfirmation(console, "Sign " + transactionTemplates.size() + " transactions? (y/n)")) {
+            return null;
+        }
+        Signer signer = loadSigner(console);
+        if (null == signer) {
+            return null;
+        }
+        String address = signer.getAddress();
+        System.out.println("From address: " + address);
+        for (Map.Entry<String, TransactionTemplate> entry : transactionTemplates.entrySet()) {
+            String from = entry.getValue().from;
+            if (null != from && !from.toLowerCase().equals(address)) {
+                Output.error(entry.getKey() + ": from address mismatch");
+                return null;
+            }
+        }
+        if (!askConfirmation(console, "Confirm from address? (y/n)")) {
+            return null;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        List<String> names = new ArrayList<>(transactionTemplates.keySet());
+        List<Future<String>> signedTransactions = new ArrayList<>(names.size());
+        ExecutorService executorService = Executors.newFixedThreadPool(this.threads);
+        try {
+            for (String name : names) {
+                TransactionTemplate transactionTemplate = transactionTemplates.get(name);
+                signedTransactions.add(executorService.submit(() -> signer.sign(transactionTemplate)));
+            }
+            List<ManifestEntry> manifestEntries = new ArrayList<>(names.size());
+            if (jsonLinesOutput) {
+                Gson gson = new Gson();
+                try (Writer writer = Files.newBufferedWriter(this.outFile.toPath(), StandardCharsets.UTF_8)) {
+                    for (int idx = 0; idx < names.size(); idx++) {
+                        ManifestEntry manifestEntry = new ManifestEntry(names.get(idx), transactionTemplates.get(names.get(idx)), signedTransactions.get(idx).get());
+                        manifestEntries.add(manifestEntry);
+                        writer.write(gson.toJson(manifestEntry));
+                        writer.write('\n');
+                    }
+                }
+            } else {
+                if (!this.outFile.exists() && !this.outFile.mkdirs()) {
+                    Output.error("Could not create output directory: " + this.outFile.getAbsolutePath());
+                    return null;
+                }
+                for (int idx = 0; idx < names.size(); idx++) {
+                    ManifestEntry manifestEntry = new ManifestEntry(names.get(idx), transactionTemplates.get(names.get(idx)), signedTransactions.get(idx).get());
+                    FileUtils.writeStringToFile(new File(this.outFile, manifestEntry.name), manifestEntry.transaction, "UTF-8");
+                    manifestEntries.add(manifestEntry);
+                }
+            }
+            Manifest manifestContent = new Manifest();
+            manifestContent.from = address;
+            manifestContent.count = manifestEntries.size();
+            manifestContent.totalValue = totalValue.toPlainString();
+            manifestContent.transactions = manifestEntries;
+            for (ManifestEntry manifestEntry : manifestEntries) {
+                // the manifest only summarizes, the transactions are in the output
+                manifestEntry.transaction = null;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(manifest.toPath(), StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(manifestContent, writer);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        System.out.println("Signed " + names.size() + " transactions in " + (System.currentTimeMillis() - startMillis) + " ms");
+        System.out.println("Manifest: " + manifest.getAbsolutePath());
+        return null;
+    }
+
+    private Map<String, TransactionTemplate> loadTransactionTemplates() throws Exception {
+        Gson gson = new Gson();
+        // keep a stable order, also in the manifest
+        Map<String, TransactionTemplate> transactionTemplates = new LinkedHashMap<>();
+        if (this.templateFile.isDirectory()) {
+            File[] files = this.templateFile.listFiles((dir, name) -> name.endsWith(".json"));
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName().substring(0, file.getName().length() - ".json".length());
+                try (FileReader reader = new FileReader(file)) {
+                    transactionTemplates.put(name, gson.fromJson(reader, TransactionTemplate.class));
+                }
+            }
+            return transactionTemplates;
+        }
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(this.templateFile.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            transactionTemplates.put("transaction-" + lineNumber, gson.fromJson(line, TransactionTemplate.class));
+        }
+        return transactionTemplates;
+    }
+
+    private static final class Manifest {
+
+        private String from;
+
+        private int count;
+
+        // unit: ether
+        private String totalValue;
+
+        private List<ManifestEntry> transactions;
+    }
+
+    private static final class ManifestEntry {
+
+        private final String name;
+
+        private final String to;
+
+        // unit: ether
+        private final double value;
+
+        private final long nonce;
+
+        private final String hash;
+
+        private String transaction;
+
+        private ManifestEntry(String name, TransactionTemplate transactionTemplate, String transaction) {
+            this.name = name;
+            this.to = transactionTemplate.to;
+            this.value = transactionTemplate.value;
+            this.nonce = transactionTemplate.nonce;
+            this.hash = Hash.sha3(transaction);
+            this.transaction = transaction;
+        }
+    }
+
     private boolean askConfirmation(Console console, String message) {
         while (true) {
             String confirmation = console.readLine(message);
@@ -0,0 +1,230 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.web3j.crypto.Credentials;
+
+/**
+ * Keeps an unlocked key in memory for a limited time, and signs transaction
+ * templates on request over a local Unix domain socket. The key itself never
+ * leaves the agent. The private key lives on the heap as a BigInteger, which
+ * cannot be overwritten, until the agent stops and it gets garbage collected.
+ * <p>
+ * The protocol is one JSON request line followed by one JSON response line
+ * per connection.
+ */
+public class SigningAgent {
+
+    private final File socketFile;
+
+    private final String address;
+
+    // the agent drops its reference when it stops
+    private Credentials credentials;
+
+    private final CountDownLatch stopLatch;
+
+    private UnixServerSocketChannel serverSocketChannel;
+
+    public SigningAgent(File socketFile, Credentials credentials) {
+        this.socketFile = socketFile;
+        this.credentials = credentials;
+        this.address = credentials.getAddress();
+        this.stopLatch = new CountDownLatch(1);
+    }
+
+    public String getAddress() {
+        return this.address;
+    }
+
+    public static File getDefaultSocketFile() {
+        return new File(new File(System.getProperty("user.home"), ".ethereum-tool"), "signer.sock");
+    }
+
+    public static final class Request {
+
+        // address, sign, or lock
+        public String command;
+
+        public TransactionTemplate template;
+    }
+
+    public static final class Response {
+
+        public String address;
+
+        public String transaction;
+
+        public String error;
+    }
+
+    /**
+     * Serves signing requests until the time-to-live expires, or until we
+     * receive a lock request.
+     *
+     * @param ttlSeconds
+     * @throws Exception
+     */
+    public void run(long ttlSeconds) throws Exception {
+        File directory = this.socketFile.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            if (!directory.mkdirs()) {
+                throw new IOException("could not create directory: " + directory.getAbsolutePath());
+            }
+            Files.setPosixFilePermissions(directory.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ,
+                    PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE));
+        }
+        if (this.socketFile.exists()) {
+            if (isAnswering(this.socketFile)) {
+                throw new IOException("another agent is running at: " + this.socketFile.getAbsolutePath());
+            }
+            // left over from a crashed agent
+            if (!this.socketFile.delete()) {
+                throw new IOException("could not remove stale socket file: " + this.socketFile.getAbsolutePath());
+            }
+        }
+        this.serverSocketChannel = UnixServerSocketChannel.open();
+        this.serverSocketChannel.socket().bind(new UnixSocketAddress(this.socketFile));
+        Thread shutdownHook = new Thread(this::stop);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        try {
+            // only we can talk to the agent
+            Files.setPosixFilePermissions(this.socketFile.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ,
+                    PosixFilePermission.OWNER_WRITE));
+            Thread acceptThread = new Thread(this::accept, "signing-agent");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+            this.stopLatch.await(ttlSeconds, TimeUnit.SECONDS);
+        } finally {
+            stop();
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+    }
+
+    private static boolean isAnswering(File socketFile) {
+        try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(socketFile))) {
+            return channel.isConnected();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void accept() {
+        while (this.stopLatch.getCount() > 0) {
+            UnixSocketChannel channel;
+            try {
+                channel = this.serverSocketChannel.accept();
+            } catch (IOException ex) {
+                return;
+            }
+            Thread thread = new Thread(() -> handle(channel), "signing-agent-connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void handle(UnixSocketChannel acceptedChannel) {
+        Gson gson = new Gson();
+        try (UnixSocketChannel channel = acceptedChannel) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            Request request = gson.fromJson(reader.readLine(), Request.class);
+            Response response = process(request);
+            writer.write(gson.toJson(response));
+            writer.write('\n');
+            writer.flush();
+        } catch (Exception ex) {
+            Output.error("Agent error: " + ex.getMessage());
+        }
+    }
+
+    private Response process(Request request) {
+        Response response = new Response();
+        response.address = this.address;
+        if (null == request || null == request.command) {
+            response.error = "invalid request";
+            return response;
+        }
+        switch (request.command) {
+            case "address":
+                return response;
+            case "lock":
+                this.stopLatch.countDown();
+                return response;
+            case "sign":
+                break;
+            default:
+                response.error = "unknown command: " + request.command;
+                return response;
+        }
+        TransactionTemplate transactionTemplate = request.template;
+        if (null == transactionTemplate) {
+            response.error = "missing transaction template";
+            return response;
+        }
+        String validationError = TransactionSigner.validate(transactionTemplate);
+        if (null != validationError) {
+            response.error = validationError;
+            return response;
+        }
+        if (null != transactionTemplate.from && !transactionTemplate.from.toLowerCase().equals(this.address)) {
+            response.error = "From address mismatch";
+            return response;
+        }
+        Credentials credentials;
+        synchronized (this) {
+            if (this.stopLatch.getCount() == 0) {
+                response.error = "agent locked";
+                return response;
+            }
+            credentials = this.credentials;
+        }
+        response.transaction = TransactionSigner.sign(transactionTemplate, credentials);
+        return response;
+    }
+
+    private synchronized void stop() {
+        this.stopLatch.countDown();
+        this.credentials = null;
+        if (null != this.serverSocketChannel) {
+            try {
+                this.serverSocketChannel.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+        this.socketFile.delete();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+/**
+ * Talks to a running signing agent.
+ */
+public class SigningAgentClient {
+
+    private final File socketFile;
+
+    public SigningAgentClient(File socketFile) {
+        this.socketFile = socketFile;
+    }
+
+    public boolean isAvailable() {
+        return this.socketFile.exists();
+    }
+
+    public String getAddress() throws IOException {
+        SigningAgent.Request request = new SigningAgent.Request();
+        request.command = "address";
+        return send(request).address;
+    }
+
+    /**
+     * Lets the agent sign the transaction template.
+     *
+     * @param transactionTemplate
+     * @return the hexadecimal signed transaction.
+     * @throws IOException
+     */
+    public String sign(TransactionTemplate transactionTemplate) throws IOException {
+        SigningAgent.Request request = new SigningAgent.Request();
+        request.command = "sign";
+        request.template = transactionTemplate;
+        return send(request).transaction;
+    }
+
+    public void lock() throws IOException {
+        SigningAgent.Request request = new SigningAgent.Request();
+        request.command = "lock";
+        send(request);
+    }
+
+    private SigningAgent.Response send(SigningAgent.Request request) throws IOException {
+        Gson gson = new Gson();
+        try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(this.socketFile))) {
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            writer.write(gson.toJson(request));
+            writer.write('\n');
+            writer.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (null == line) {
+                throw new IOException("no response from signing agent");
+            }
+            SigningAgent.Response response = gson.fromJson(line, SigningAgent.Response.class);
+            if (null != response.error) {
+                throw new IOException("signing agent: " + response.error);
+            }
+            return response;
+        }
+    }
+}
@@ -21,18 +21,11 @@ import io.reactivex.disposables.Disposable;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.AnsiConsole;
-import org.joda.time.DateTime;
-import org.joda.time.Duration;
-import org.joda.time.Interval;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.Transaction;
@@ -42,15 +35,36 @@ import picocli.CommandLine;
 @CommandLine.Command(name = "speed", description = "Realtime analysis of network speed", separator = " ")
 public class Speed implements Callable<Void> {
 
+    // fast, normal, and slow inclusion
+    private static final int[] TARGET_BLOCKS = {1, 3, 10};
+
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
+    @CommandLine.Option(names = {"-w", "--window"}, description = "sliding window size in blocks (default: ${DEFAULT-VALUE})")
+    private int window = 50;
+
+    @CommandLine.Option(names = {"--format"}, description = "output format: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private OutputFormat format = OutputFormat.TEXT;
+
+    @CommandLine.Option(names = {"--metrics-port"}, description = "serve the JSON-RPC metrics in Prometheus format on this localhost port, requires the global --metrics option")
+    private Integer metricsPort;
+
     private Disposable pendingTransactionDisposable;
 
     private Disposable blockDisposable;
 
     @Override
     public Void call() throws Exception {
+        if (null != this.metricsPort) {
+            RpcMetrics rpcMetrics = RpcMetrics.find(this.web3);
+            if (null == rpcMetrics) {
+                Output.error("Enable metrics via the global --metrics option.");
+                return null;
+            }
+            rpcMetrics.serve(this.metricsPort);
+            System.err.println("Metrics at http://localhost:" + this.metricsPort + "/metrics");
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             if (null != this.pendingTransactionDisposable) {
                 this.pendingTransactionDisposable.dispose();
@@ -59,69 +73,105 @@ public class Speed implements Callable<Void> {
                 this.blockDisposable.dispose();
             }
         }));
-        System.out.println("Waiting for first block...");
-        final Map<String, PendingTransaction> pendingTransactions = new ConcurrentHashMap<>();
-        final Map<BigInteger, Timing> gasPrices = new HashMap<>();
+        final RecordWriter recordWriter;
+        if (OutputFormat.TEXT == this.format) {
+            recordWriter = null;
+            System.out.println("Waiting for first block...");
+        } else {
+            recordWriter = RecordWriter.open(this.format, "blockNumber", "baseFeePerGas", "nodeGasPrice", "gasPrice", "averageTime", "count");
+            // keep standard output clean for the records
+            System.err.println("Waiting for first block...");
+        }
+        final PendingTransactionIndex pendingTransactions = new PendingTransactionIndex(64 * 1024);
+        final GasPriceHistogram gasPriceHistogram = new GasPriceHistogram(this.window);
+        final FeeOracle feeOracle = new FeeOracle(this.web3, this.window);
+        final AtomicLong currentBlockNumber = new AtomicLong(this.web3.ethBlockNumber().send().getBlockNumber().longValueExact());
         this.pendingTransactionDisposable = this.web3.pendingTransactionFlowable().subscribe((Transaction tx) -> {
             // we don't know the transaction type (regular or contract) here yet, so we add everything here
-            pendingTransactions.put(tx.getHash(), new PendingTransaction(tx.getGasPrice()));
+            pendingTransactions.put(tx.getHash(), System.nanoTime(), currentBlockNumber.get(), GasPriceHistogram.getBucket(tx.getGasPrice()));
         }, error -> {
             Output.error(error.getMessage());
             error.printStackTrace();
         });
         this.blockDisposable = this.web3.blockFlowable(false).subscribe((EthBlock ethBlock) -> {
             EthBlock.Block block = ethBlock.getBlock();
-            BigInteger timestamp = block.getTimestamp();
-            Date timestampDate = new Date(timestamp.multiply(BigInteger.valueOf(1000)).longValue());
-            DateTime timestampDateTime = new DateTime(timestampDate);
+            long blockNumber = block.getNumber().longValueExact();
+            currentBlockNumber.set(blockNumber);
+            gasPriceHistogram.nextBlock();
+            // we should not be using "now" here, but the block timestamp
+            // seems like block timestamp can be before created in the beginning...
+            long now = System.nanoTime();
+            PendingTransactionIndex.Entry pendingTransaction = new PendingTransactionIndex.Entry();
             int countProcessed = 0;
-            for (EthBlock.TransactionResult<String> transactionResult : block.getTransactions()) {
-                String transactionHash = transactionResult.get();
-                PendingTransaction pendingTransaction = pendingTransactions.remove(transactionHash);
-                if (null == pendingTransaction) {
+            for (EthBlock.TransactionResult<?> transactionResult : block.getTransactions()) {
+                // blocks without full transaction objects only carry the hashes
+                String transactionHash = (String) transactionResult.get();
+                if (!pendingTransactions.remove(transactionHash, pendingTransaction)) {
                     // transaction was not known as a pending one before
                     continue;
                 }
                 countProcessed++;
-                BigInteger gasPrice = pendingTransaction.gasPrice;
-                Timing timing = gasPrices.get(gasPrice);
-                if (null == timing) {
-                    timing = new Timing(pendingTransaction.created);
-                    gasPrices.put(gasPrice, timing);
-                } else {
-                    // we should not be using "now" here, but the block timestamp
-                    timing.addTiming(pendingTransaction.created, timestampDateTime);
-                }
+                gasPriceHistogram.add(pendingTransaction.getValue(), now - pendingTransaction.getCreated());
             }
+            // evict pending transactions that did not get mined within the window
+            long oldestBlockNumber = blockNumber - this.window;
+            pendingTransactions.evictBefore(oldestBlockNumber);
 
             BigInteger nodeGasPrice;
             try {
                 nodeGasPrice = this.web3.ethGasPrice().send().getGasPrice();
+                // only fetches the fee history of the new blocks
+                feeOracle.update(block.getNumber());
             } catch (IOException ex) {
                 Output.error("Error: " + ex.getMessage());
                 return;
             }
+            if (null != recordWriter) {
+                // one record per gas price bucket, as a single batch per block
+                for (int bucket = 0; bucket < gasPriceHistogram.getBucketCount(); bucket++) {
+                    long txCount = gasPriceHistogram.getCount(bucket);
+                    if (0 == txCount) {
+                        continue;
+                    }
+                    double averageTime = (double) gasPriceHistogram.getAverageNanos(bucket) / TimeUnit.SECONDS.toNanos(1);
+                    recordWriter.write(blockNumber, block.getBaseFeePerGas(), nodeGasPrice,
+                            GasPriceHistogram.getLowerBoundGwei(bucket), averageTime, txCount);
+                }
+                recordWriter.flush();
+                return;
+            }
+            int nodeGasPriceBucket = GasPriceHistogram.getBucket(nodeGasPrice);
             AnsiConsole.out().print(Ansi.ansi().reset().eraseScreen().cursor(0, 0));
             BigDecimal baseFeePerGas = new BigDecimal(block.getBaseFeePerGas().longValueExact());
             BigDecimal baseFeePerGasGwei = Convert.fromWei(baseFeePerGas, Convert.Unit.GWEI);
             System.out.println("Block: " + block.getNumber() + " - " + block.getTransactions().size() + " transactions - base fee " + baseFeePerGasGwei + " gwei");
             System.out.println("Processed transactions: " + countProcessed);
             System.out.println("Total pending transactions: " + pendingTransactions.size());
+            System.out.println("Window: last " + gasPriceHistogram.getRows() + " blocks");
+            System.out.print("Recommended priority fee (Gwei):");
+            for (int targetBlocks : TARGET_BLOCKS) {
+                BigDecimal priorityFee = new BigDecimal(feeOracle.recommend(targetBlocks).getMaxPriorityFeePerGas());
+                System.out.print(" " + Convert.fromWei(priorityFee, Convert.Unit.GWEI).stripTrailingZeros().toPlainString()
+                        + " within " + targetBlocks + " blocks");
+            }
+            System.out.println();
             int count = 40;
             System.out.print("Gas price (Gwei)");
             AnsiConsole.out().print(Ansi.ansi().cursorToColumn(20));
             System.out.print("Average time (sec)");
             AnsiConsole.out().print(Ansi.ansi().cursorToColumn(40));
             System.out.println("Tx count");
-            List<Map.Entry<BigInteger, Timing>> gasPricesList = new ArrayList<>(gasPrices.entrySet());
-            // sort on gas price
-            gasPricesList.sort((o1, o2) -> o1.getKey().compareTo(o2.getKey()));
-            for (Map.Entry<BigInteger, Timing> gasPriceEntry : gasPricesList) {
+            // buckets are sorted on gas price already
+            for (int bucket = 0; bucket < gasPriceHistogram.getBucketCount(); bucket++) {
+                long txCount = gasPriceHistogram.getCount(bucket);
+                if (0 == txCount) {
+                    continue;
+                }
                 if (count-- == 0) {
                     //only show top of the list
                     break;
                 }
-                switch (nodeGasPrice.compareTo(gasPriceEntry.getKey())) {
+                switch (Integer.compare(nodeGasPriceBucket, bucket)) {
                     case -1:
                         AnsiConsole.out().print(Ansi.ansi().fgBrightGreen());
                         break;
@@ -132,61 +182,16 @@ public class Speed implements Callable<Void> {
                         AnsiConsole.out().print(Ansi.ansi().fgBrightRed());
                         break;
                 }
-                BigDecimal gasPriceGwei = Convert.fromWei(new BigDecimal(gasPriceEntry.getKey()), Convert.Unit.GWEI);
-                System.out.print(gasPriceGwei);
+                System.out.print(">= " + GasPriceHistogram.getLowerBoundGwei(bucket).stripTrailingZeros().toPlainString());
                 AnsiConsole.out().print(Ansi.ansi().cursorToColumn(20));
-                System.out.print(gasPriceEntry.getValue().getAverageTime());
+                System.out.print(TimeUnit.NANOSECONDS.toSeconds(gasPriceHistogram.getAverageNanos(bucket)));
                 AnsiConsole.out().print(Ansi.ansi().cursorToColumn(40));
-                System.out.println(gasPriceEntry.getValue().getCount());
+                System.out.println(txCount);
             }
-            // TODO: we should implement a "sliding window" here
         }, error -> {
             Output.error(error.getMessage());
             error.printStackTrace();
         });
         return null;
     }
-
-    private static final class Timing {
-
-        private Duration totalTime;
-        private int count;
-
-        public Timing(DateTime created) {
-            DateTime now = new DateTime();
-            Interval interval = new Interval(created, now);
-            Duration duration = interval.toDuration();
-            this.totalTime = duration;
-            this.count++;
-        }
-
-        public synchronized void addTiming(DateTime created, DateTime blockTimestamp) {
-            // seems like blockTimestamp can be before created in the beginning...
-            // so we still have to use now here
-            DateTime now = new DateTime();
-            Interval interval = new Interval(created, now);
-            Duration duration = interval.toDuration();
-            this.totalTime = this.totalTime.plus(duration);
-            this.count++;
-        }
-
-        public long getAverageTime() {
-            return this.totalTime.dividedBy(this.count).getStandardSeconds();
-        }
-
-        public int getCount() {
-            return this.count;
-        }
-    }
-
-    private static final class PendingTransaction {
-
-        private final BigInteger gasPrice;
-        private final DateTime created;
-
-        public PendingTransaction(BigInteger gasPrice) {
-            this.created = new DateTime();
-            this.gasPrice = gasPrice;
-        }
-    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.Arrays;
+import java.util.Collections;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.JsonRpc2_0Web3j;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthSubscribe;
+import org.web3j.protocol.core.methods.response.Transaction;
+import org.web3j.protocol.websocket.events.PendingTransactionNotification;
+import org.web3j.utils.Async;
+
+/**
+ * Web3j client as used by the tool. Over WebSocket connections, new blocks and
+ * pending transactions are received via eth_subscribe instead of via filter
+ * polling.
+ */
+public class ToolWeb3j extends JsonRpc2_0Web3j {
+
+    // number of transactions fetched concurrently for pending transaction notifications
+    private static final int PENDING_TRANSACTION_CONCURRENCY = 16;
+
+    public ToolWeb3j(Web3jService web3jService, long pollingInterval) {
+        super(web3jService, pollingInterval, Async.defaultExecutorService());
+    }
+
+    public Web3jService getService() {
+        return this.web3jService;
+    }
+
+    /**
+     * Like eth_getBlockByNumber without transactions, but only the block
+     * header fields needed for scanning get parsed.
+     *
+     * @param defaultBlockParameter
+     * @return
+     */
+    public Request<?, EthBlockHeader> ethGetBlockHeaderByNumber(DefaultBlockParameter defaultBlockParameter) {
+        return new Request<>("eth_getBlockByNumber", Arrays.asList(defaultBlockParameter.getValue(), false),
+                this.web3jService, EthBlockHeader.class);
+    }
+
+    /**
+     * Like eth_getBlockByNumber with full transaction objects, but only the
+     * transaction fields needed for filtering get parsed.
+     *
+     * @param defaultBlockParameter
+     * @return
+     */
+    public Request<?, EthBlockTransactions> ethGetBlockTransactionsByNumber(DefaultBlockParameter defaultBlockParameter) {
+        return new Request<>("eth_getBlockByNumber", Arrays.asList(defaultBlockParameter.getValue(), true),
+                this.web3jService, EthBlockTransactions.class);
+    }
+
+    public Request<?, EthBlockTransactions> ethGetBlockTransactionsByHash(String blockHash) {
+        return new Request<>("eth_getBlockByHash", Arrays.asList(blockHash, true),
+                this.web3jService, EthBlockTransactions.class);
+    }
+
+    /**
+     * Like blockFlowable with full transaction objects, but with the compact
+     * transaction view.
+     *
+     * @return
+     */
+    public Flowable<EthBlockTransactions.BlockTransactions> blockTransactionsFlowable() {
+        Flowable<String> blockHashFlowable;
+        if (isSubscriptionSupported()) {
+            // notifications arrive on the WebSocket reader thread, which also has to receive our replies
+            blockHashFlowable = newHeadsNotifications()
+                    .observeOn(Schedulers.io())
+                    .map(notification -> notification.getParams().getResult().getHash());
+        } else {
+            blockHashFlowable = ethBlockHashFlowable();
+        }
+        return blockHashFlowable
+                .concatMap(blockHash -> ethGetBlockTransactionsByHash(blockHash).flowable())
+                .filter(ethBlockTransactions -> null != ethBlockTransactions.getBlockTransactions())
+                .map(EthBlockTransactions::getBlockTransactions);
+    }
+
+    public boolean isSubscriptionSupported() {
+        Web3jService service = ForwardingWeb3jService.unwrap(this.web3jService);
+        if (service instanceof MultiNodeWeb3jService) {
+            service = ForwardingWeb3jService.unwrap(((MultiNodeWeb3jService) service).getSubscriptionService());
+        }
+        return service instanceof ReconnectingWebSocketService;
+    }
+
+    @Override
+    public Flowable<EthBlock> blockFlowable(boolean fullTransactionObjects) {
+        if (!isSubscriptionSupported()) {
+            return super.blockFlowable(fullTransactionObjects);
+        }
+        // notifications arrive on the WebSocket reader thread, which also has to receive our replies
+        return newHeadsNotifications()
+                .observeOn(Schedulers.io())
+                .concatMap(notification -> ethGetBlockByHash(notification.getParams().getResult().getHash(), fullTransactionObjects).flowable())
+                .filter(ethBlock -> null != ethBlock.getBlock());
+    }
+
+    @Override
+    public Flowable<Transaction> pendingTransactionFlowable() {
+        if (!isSubscriptionSupported()) {
+            return super.pendingTransactionFlowable();
+        }
+        Request<String, EthSubscribe> request = new Request<>("eth_subscribe",
+                Collections.singletonList("newPendingTransactions"), this.web3jService, EthSubscribe.class);
+        return this.web3jService.subscribe(request, "eth_unsubscribe", PendingTransactionNotification.class)
+                .flatMap(notification -> ethGetTransactionByHash(notification.getParams().getResult()).flowable()
+                        .subscribeOn(Schedulers.io()),
+                        PENDING_TRANSACTION_CONCURRENCY)
+                // transaction might be gone already
+                .filter(ethTransaction -> ethTransaction.getTransaction().isPresent())
+                .map(ethTransaction -> ethTransaction.getTransaction().get());
+    }
+}
@@ -21,11 +21,13 @@ import io.reactivex.disposables.Disposable;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
-import org.web3j.protocol.core.methods.response.EthBlock;
 import org.web3j.protocol.core.methods.response.Transaction;
 import org.web3j.utils.Convert;
 import picocli.CommandLine;
@@ -33,16 +35,31 @@ import picocli.CommandLine;
 @CommandLine.Command(name = "trace", description = "Realtime trace transactions on an address", separator = " ")
 public class Trace implements Callable<Void> {
 
+    // number of blocks we keep track of a pending transaction
+    private static final int PENDING_WINDOW = 256;
+
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
     @CommandLine.Option(names = {"-a", "--address"}, required = true, description = "the key address")
     private Address address;
 
+    @CommandLine.Option(names = {"--metrics-port"}, description = "serve the JSON-RPC metrics in Prometheus format on this localhost port, requires the global --metrics option")
+    private Integer metricsPort;
+
     private Disposable blockDisposable;
 
     @Override
     public Void call() throws Exception {
+        if (null != this.metricsPort) {
+            RpcMetrics rpcMetrics = RpcMetrics.find(this.web3);
+            if (null == rpcMetrics) {
+                Output.error("Enable metrics via the global --metrics option.");
+                return null;
+            }
+            rpcMetrics.serve(this.metricsPort);
+            System.err.println("Metrics at http://localhost:" + this.metricsPort + "/metrics");
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             if (null != this.blockDisposable) {
                 this.blockDisposable.dispose();
@@ -53,53 +70,84 @@ public class Trace implements Callable<Void> {
         BigInteger initialBalance = this.web3.ethGetBalance(this.address.getAddress(), DefaultBlockParameter.valueOf(initialBlockNumber)).send().getBalance();
         BigDecimal initialBalanceEther = Convert.fromWei(new BigDecimal(initialBalance), Convert.Unit.ETHER);
         Output.printlnBold("Block: " + initialBlockNumber + " balance: " + initialBalanceEther + " ether");
-        EthBlock pendingEthBlock = this.web3.ethGetBlockByNumber(DefaultBlockParameterName.PENDING, true).send();
-        EthBlock.Block pendingBlock = pendingEthBlock.getBlock();
-        for (EthBlock.TransactionResult transactionResult : pendingBlock.getTransactions()) {
-            EthBlock.TransactionObject transactionObject = (EthBlock.TransactionObject) transactionResult;
-            Transaction transaction = transactionObject.get();
-            if (this.address.getAddress().equals(transaction.getTo()) || this.address.getAddress().equals(transaction.getFrom())) {
-                Output.println(10, "Pending transaction hash: " + transaction.getHash());
-                Output.println(20, "From: " + transaction.getFrom());
-                Output.println(20, "To: " + transaction.getTo());
-                if ("0x".equals(transaction.getInput())) {
-                    BigDecimal valueEther = Convert.fromWei(new BigDecimal(transaction.getValue()), Convert.Unit.ETHER);
-                    Output.println(20, "Value: " + valueEther + " ether");
-                } else {
-                    Output.println(20, "Contract transaction: " + transaction.getInput());
-                }
-            }
-        }
-        this.blockDisposable = this.web3.blockFlowable(true).subscribe((EthBlock ethBlock) -> {
-            EthBlock.Block block = ethBlock.getBlock();
-            BigInteger blockNumber = block.getNumber();
+        final PendingTransactionIndex pendingTransactions = new PendingTransactionIndex(1024);
+        final AtomicLong currentBlockNumber = new AtomicLong(initialBlockNumber.longValueExact());
+        ToolWeb3j toolWeb3j = (ToolWeb3j) this.web3;
+        // we poll the pending block instead of following the pending transaction filter, as the latter fetches every mempool transaction
+        trackPendingTransactions(toolWeb3j, pendingTransactions, currentBlockNumber.get());
+        this.blockDisposable = toolWeb3j.blockTransactionsFlowable().subscribe((EthBlockTransactions.BlockTransactions block) -> {
+            BigInteger blockNumber = BigInteger.valueOf(block.getNumber());
+            currentBlockNumber.set(block.getNumber());
+            long now = System.nanoTime();
+            PendingTransactionIndex.Entry pendingTransaction = new PendingTransactionIndex.Entry();
             try {
                 BigInteger balance = this.web3.ethGetBalance(this.address.getAddress(), DefaultBlockParameter.valueOf(blockNumber)).send().getBalance();
                 // this can go wrong apparently
                 BigDecimal balanceEther = Convert.fromWei(new BigDecimal(balance), Convert.Unit.ETHER);
-                Output.printlnBold("Block: " + block.getNumber() + " balance: " + balanceEther + " ether");
+                Output.printlnBold("Block: " + blockNumber + " balance: " + balanceEther + " ether");
             } catch (IOException ex) {
                 // silence here
             }
-            for (EthBlock.TransactionResult<EthBlock.TransactionObject> transactionResult : block.getTransactions()) {
-                EthBlock.TransactionObject transactionObject = transactionResult.get();
-                Transaction transaction = transactionObject.get();
-                if (this.address.getAddress().equals(transaction.getTo()) || this.address.getAddress().equals(transaction.getFrom())) {
-                    Output.println(10, "Transaction hash: " + transaction.getHash());
-                    Output.println(20, "From: " + transaction.getFrom());
-                    Output.println(20, "To: " + transaction.getTo());
-                    if ("0x".equals(transaction.getInput())) {
-                        BigDecimal valueEther = Convert.fromWei(new BigDecimal(transaction.getValue()), Convert.Unit.ETHER);
-                        Output.println(20, "Value: " + valueEther + " ether");
-                    } else {
-                        Output.println(20, "Contract transaction: " + transaction.getInput());
+            for (int transactionIndex = 0; transactionIndex < block.getTransactionCount(); transactionIndex++) {
+                if (isMatch(block, transactionIndex)) {
+                    String transactionHash = block.getTransactionHash(transactionIndex);
+                    Output.println(10, "Transaction hash: " + transactionHash);
+                    printTransaction(block, transactionIndex);
+                    if (pendingTransactions.remove(transactionHash, pendingTransaction)) {
+                        long pendingSeconds = TimeUnit.NANOSECONDS.toSeconds(now - pendingTransaction.getCreated());
+                        Output.println(20, "Pending time: " + pendingSeconds + " sec");
                     }
                 }
             }
+            // forget about pending transactions that never made it into a block
+            pendingTransactions.evictBefore(block.getNumber() - PENDING_WINDOW);
+            try {
+                trackPendingTransactions(toolWeb3j, pendingTransactions, block.getNumber());
+            } catch (IOException ex) {
+                Output.warning("could not retrieve pending transactions: " + ex.getMessage());
+            }
         }, error -> {
             Output.error(error.getMessage());
             error.printStackTrace();
         });
         return null;
     }
+
+    private void trackPendingTransactions(ToolWeb3j toolWeb3j, PendingTransactionIndex pendingTransactions, long blockNumber) throws IOException {
+        EthBlockTransactions.BlockTransactions pendingBlock = toolWeb3j
+                .ethGetBlockTransactionsByNumber(DefaultBlockParameterName.PENDING).send().getBlockTransactions();
+        if (null == pendingBlock) {
+            return;
+        }
+        for (int transactionIndex = 0; transactionIndex < pendingBlock.getTransactionCount(); transactionIndex++) {
+            if (isMatch(pendingBlock, transactionIndex)) {
+                String transactionHash = pendingBlock.getTransactionHash(transactionIndex);
+                if (pendingTransactions.put(transactionHash, System.nanoTime(), blockNumber, 0)) {
+                    Output.println(10, "Pending transaction hash: " + transactionHash);
+                    printTransaction(pendingBlock, transactionIndex);
+                }
+            }
+        }
+    }
+
+    private boolean isMatch(EthBlockTransactions.BlockTransactions block, int transactionIndex) {
+        return this.address.getAddress().equals(block.getTo(transactionIndex))
+                || this.address.getAddress().equals(block.getFrom(transactionIndex));
+    }
+
+    private void printTransaction(EthBlockTransactions.BlockTransactions block, int transactionIndex) throws IOException {
+        Output.println(20, "From: " + block.getFrom(transactionIndex));
+        Output.println(20, "To: " + block.getTo(transactionIndex));
+        if (!block.hasInput(transactionIndex)) {
+            BigDecimal valueEther = Convert.fromWei(new BigDecimal(block.getValue(transactionIndex)), Convert.Unit.ETHER);
+            Output.println(20, "Value: " + valueEther + " ether");
+        } else {
+            // input data is not kept by the compact block view
+            String transactionHash = block.getTransactionHash(transactionIndex);
+            Optional<Transaction> transaction = this.web3.ethGetTransactionByHash(transactionHash).send().getTransaction();
+            if (transaction.isPresent()) {
+                Output.println(20, "Contract transaction: " + transaction.get().getInput());
+            }
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.crypto.WalletUtils;
+import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
+
+/**
+ * Turns transaction templates into signed transactions.
+ */
+public class TransactionSigner {
+
+    private TransactionSigner() {
+        super();
+    }
+
+    /**
+     * Validates a transaction template.
+     *
+     * @param transactionTemplate
+     * @return the error message, or null if the template is valid.
+     */
+    public static String validate(TransactionTemplate transactionTemplate) {
+        if (transactionTemplate.gasPrice == null) {
+            if (transactionTemplate.maxFeePerGas == null || transactionTemplate.maxPriorityFeePerGas == null) {
+                return "Provide either gasPrice or maxFeePerGas and maxPriorityFeePerGas.";
+            }
+        } else {
+            if (transactionTemplate.maxFeePerGas != null || transactionTemplate.maxPriorityFeePerGas != null) {
+                return "Provide either gasPrice or maxFeePerGas and maxPriorityFeePerGas.";
+            }
+        }
+        if (!WalletUtils.isValidAddress(transactionTemplate.to)) {
+            return "Invalid address: " + transactionTemplate.to;
+        }
+        if (!transactionTemplate.to.toLowerCase().equals(transactionTemplate.to)) {
+            if (!Keys.toChecksumAddress(transactionTemplate.to).equals(transactionTemplate.to)) {
+                return "Address checksum error: " + transactionTemplate.to;
+            }
+        }
+        return null;
+    }
+
+    public static RawTransaction toRawTransaction(TransactionTemplate transactionTemplate) {
+        BigInteger nonce = BigInteger.valueOf(transactionTemplate.nonce);
+        BigDecimal valueEther = BigDecimal.valueOf(transactionTemplate.value);
+        BigDecimal valueWei = Convert.toWei(valueEther, Convert.Unit.ETHER);
+        BigInteger gasLimit = BigInteger.valueOf(21000);
+        if (transactionTemplate.gasPrice != null) {
+            BigDecimal gasPriceGwei = BigDecimal.valueOf(transactionTemplate.gasPrice);
+            BigDecimal gasPriceWei = Convert.toWei(gasPriceGwei, Convert.Unit.GWEI);
+            return RawTransaction.createEtherTransaction(nonce, gasPriceWei.toBigIntegerExact(),
+                    gasLimit, transactionTemplate.to, valueWei.toBigIntegerExact());
+        }
+        long chainId;
+        if (null != transactionTemplate.chainId) {
+            chainId = transactionTemplate.chainId;
+        } else {
+            chainId = 1;
+        }
+        BigDecimal maxPriorityFeePerGasGwei = BigDecimal.valueOf(transactionTemplate.maxPriorityFeePerGas);
+        BigDecimal maxPriorityFeePerGasWei = Convert.toWei(maxPriorityFeePerGasGwei, Convert.Unit.GWEI);
+        BigDecimal maxFeePerGasGwei = BigDecimal.valueOf(transactionTemplate.maxFeePerGas);
+        BigDecimal maxFeePerGasWei = Convert.toWei(maxFeePerGasGwei, Convert.Unit.GWEI);
+        return RawTransaction.createEtherTransaction(chainId, nonce, gasLimit, transactionTemplate.to, valueWei.toBigIntegerExact(),
+                maxPriorityFeePerGasWei.toBigIntegerExact(), maxFeePerGasWei.toBigIntegerExact());
+    }
+
+    /**
+     * Signs the transaction template.
+     *
+     * @param transactionTemplate
+     * @param credentials
+     * @return the hexadecimal signed transaction.
+     */
+    public static String sign(TransactionTemplate transactionTemplate, Credentials credentials) {
+        RawTransaction rawTransaction = toRawTransaction(transactionTemplate);
+        byte[] signedTransaction;
+        if (null != transactionTemplate.chainId) {
+            signedTransaction = TransactionEncoder.signMessage(rawTransaction, transactionTemplate.chainId, credentials);
+        } else {
+            signedTransaction = TransactionEncoder.signMessage(rawTransaction, credentials);
+        }
+        return Numeric.toHexString(signedTransaction);
+    }
+}
@@ -17,9 +17,23 @@
  */
 package be.e_contract.ethereum.tool;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import org.apache.commons.io.FileUtils;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.Response;
 import org.web3j.protocol.core.methods.response.EthSendTransaction;
@@ -31,15 +45,30 @@ public class Transmit implements Callable<Void> {
     @CommandLine.Option(names = {"-l", "--location"}, required = true, description = "the location of the client node")
     private Web3j web3;
 
-    @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "the transaction file")
+    @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "the transaction file, or for bulk transmission a directory or JSONL file of signed transactions")
     private File transactionFile;
 
+    @CommandLine.Option(names = {"-r", "--results"}, description = "the bulk transmission results file, CSV or JSONL (default: results.jsonl next to the transactions)")
+    private File resultsFile;
+
+    @CommandLine.Option(names = {"--batch-size"}, description = "number of transactions per JSON-RPC batch (default: ${DEFAULT-VALUE})")
+    private int batchSize = 100;
+
+    @CommandLine.Option(names = {"--retries"}, description = "number of retries on transient errors (default: ${DEFAULT-VALUE})")
+    private int retries = 5;
+
+    // doubles on every retry
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+
     @Override
     public Void call() throws Exception {
         if (!this.transactionFile.exists()) {
             Output.error("Transaction file not found");
             return null;
         }
+        if (this.transactionFile.isDirectory() || this.transactionFile.getName().endsWith(".jsonl")) {
+            return callBulk();
+        }
         String transactionHex = FileUtils.readFileToString(this.transactionFile, "UTF-8");
         EthSendTransaction ethSendTransaction = this.web3.ethSendRawTransaction(transactionHex).send();
         if (ethSendTransaction.hasError()) {
@@ -52,4 +81,100 @@ public class Transmit implements Callable<Void> {
         System.out.println("Transaction hash: " + transactionHash);
         return null;
     }
+
+    private Void callBulk() throws Exception {
+        if (this.batchSize < 1 || this.retries < 0) {
+            Output.error("Batch size should be at least 1 and retries should not be negative");
+            return null;
+        }
+        List<BulkTransmitter.SignedTransaction> signedTransactions = loadSignedTransactions();
+        if (null == signedTransactions) {
+            return null;
+        }
+        if (signedTransactions.isEmpty()) {
+            Output.error("No signed transactions found.");
+            return null;
+        }
+        File results = this.resultsFile;
+        if (null == results) {
+            results = new File(this.transactionFile.getAbsoluteFile().getParentFile(), "results.jsonl");
+        }
+        OutputFormat resultsFormat = results.getName().endsWith(".csv") ? OutputFormat.CSV : OutputFormat.JSONL;
+        System.out.println("Transmitting " + signedTransactions.size() + " transactions ...");
+        long startMillis = System.currentTimeMillis();
+        BulkTransmitter bulkTransmitter = new BulkTransmitter(this.web3, this.batchSize, this.retries, INITIAL_BACKOFF_MILLIS);
+        int sentCount;
+        try (OutputStream outputStream = new FileOutputStream(results);
+                RecordWriter recordWriter = RecordWriter.open(resultsFormat, outputStream, "name", "hash", "from", "nonce", "status", "error")) {
+            sentCount = bulkTransmitter.transmit(signedTransactions, recordWriter);
+        }
+        System.out.println("Transmitted " + sentCount + " of " + signedTransactions.size() + " transactions in "
+                + (System.currentTimeMillis() - startMillis) + " ms");
+        System.out.println("Results: " + results.getAbsolutePath());
+        return null;
+    }
+
+    private List<BulkTransmitter.SignedTransaction> loadSignedTransactions() throws Exception {
+        List<String> names = new ArrayList<>();
+        List<String> transactions = new ArrayList<>();
+        if (this.transactionFile.isDirectory()) {
+            // skips manifest.json and results.jsonl
+            File[] files = this.transactionFile.listFiles((dir, name) -> !name.endsWith(".json") && !name.endsWith(".jsonl") && !name.endsWith(".csv"));
+            Arrays.sort(files);
+            for (File file : files) {
+                names.add(file.getName());
+                transactions.add(FileUtils.readFileToString(file, "UTF-8").trim());
+            }
+        } else {
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(this.transactionFile.toPath(), StandardCharsets.UTF_8)) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("{")) {
+                    // as written by batch signing
+                    JsonObject jsonObject = JsonParser.parseString(line).getAsJsonObject();
+                    names.add(jsonObject.has("name") ? jsonObject.get("name").getAsString() : "transaction-" + lineNumber);
+                    transactions.add(jsonObject.get("transaction").getAsString());
+                } else {
+                    names.add("transaction-" + lineNumber);
+                    transactions.add(line);
+                }
+            }
+        }
+        // check everything before sending anything
+        boolean valid = true;
+        List<BulkTransmitter.SignedTransaction> signedTransactions = new ArrayList<>(transactions.size());
+        Set<String> fromNonces = new HashSet<>();
+        for (int idx = 0; idx < transactions.size(); idx++) {
+            String name = names.get(idx);
+            String transaction = transactions.get(idx);
+            BulkTransmitter.SignedTransaction signedTransaction;
+            try {
+                RawTransaction rawTransaction = TransactionDecoder.decode(transaction);
+                if (!(rawTransaction instanceof SignedRawTransaction)) {
+                    Output.error(name + ": transaction not signed");
+                    valid = false;
+                    continue;
+                }
+                signedTransaction = new BulkTransmitter.SignedTransaction(name, transaction,
+                        ((SignedRawTransaction) rawTransaction).getFrom(), rawTransaction.getNonce());
+            } catch (Exception ex) {
+                Output.error(name + ": invalid transaction: " + ex.getMessage());
+                valid = false;
+                continue;
+            }
+            if (!fromNonces.add(signedTransaction.getFrom() + ":" + signedTransaction.getNonce())) {
+                Output.error(name + ": duplicate nonce " + signedTransaction.getNonce());
+                valid = false;
+            }
+            signedTransactions.add(signedTransaction);
+        }
+        if (!valid) {
+            return null;
+        }
+        return signedTransactions;
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.web3j.protocol.core.Request;
+
+/**
+ * Counts the JSON-RPC bytes that an HTTP or IPC transport sends and receives,
+ * and reports them per method to a listener. The transport runs every call
+ * through the meter, and hands over the payload and the response stream from
+ * the same thread. The bytes of a batch are shared evenly among its requests.
+ */
+public class TransportMeter {
+
+    public interface Call<T> {
+
+        T call() throws IOException;
+    }
+
+    private final InstrumentedWeb3jService.RpcListener listener;
+
+    private final ThreadLocal<CountingInputStream> responses;
+
+    private final ThreadLocal<long[]> bytesOut;
+
+    public TransportMeter(InstrumentedWeb3jService.RpcListener listener) {
+        this.listener = listener;
+        this.responses = new ThreadLocal<>();
+        this.bytesOut = new ThreadLocal<>();
+    }
+
+    public <T> T meter(List<? extends Request<?, ?>> requests, Call<T> call) throws IOException {
+        long[] payloadBytes = new long[1];
+        this.bytesOut.set(payloadBytes);
+        try {
+            return call.call();
+        } finally {
+            this.bytesOut.remove();
+            CountingInputStream response = this.responses.get();
+            this.responses.remove();
+            report(requests, payloadBytes[0], null == response ? 0 : response.count);
+        }
+    }
+
+    /**
+     * Called by the transport once it got a response for the given payload.
+     *
+     * @param payload
+     * @param inputStream
+     * @return the response stream to read from.
+     */
+    public InputStream meter(String payload, InputStream inputStream) {
+        long[] payloadBytes = this.bytesOut.get();
+        if (null == payloadBytes) {
+            // not sent via meter(requests, call)
+            return inputStream;
+        }
+        payloadBytes[0] = getUtf8Length(payload);
+        if (null == inputStream) {
+            return null;
+        }
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        this.responses.set(countingInputStream);
+        return countingInputStream;
+    }
+
+    private void report(List<? extends Request<?, ?>> requests, long bytesOut, long bytesIn) {
+        int count = requests.size();
+        for (int idx = 0; idx < count; idx++) {
+            // the first request takes the remainder
+            long requestBytesOut = bytesOut / count + (0 == idx ? bytesOut % count : 0);
+            long requestBytesIn = bytesIn / count + (0 == idx ? bytesIn % count : 0);
+            this.listener.onTransfer(requests.get(idx).getMethod(), requestBytesOut, requestBytesIn);
+        }
+    }
+
+    private static long getUtf8Length(String value) {
+        long length = 0;
+        for (int idx = 0; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // together with the low surrogate
+                length += 4;
+                idx++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                this.count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) {
+                this.count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            this.count += result;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package be.e_contract.ethereum.tool;
+
+import java.io.Console;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import org.web3j.crypto.CipherException;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.WalletUtils;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = "unlock", description = "unlock a key once and serve signing requests for a limited time", separator = " ")
+public class Unlock implements Callable<Void> {
+
+    @CommandLine.Option(names = {"-f", "--keyfile"}, required = true, description = "the key file")
+    private File keyFile;
+
+    @CommandLine.Option(names = {"--ttl"}, description = "time-to-live of the unlocked key in seconds (default: ${DEFAULT-VALUE})")
+    private long ttl = 600;
+
+    @CommandLine.Option(names = {"-s", "--socket"}, description = "the signing agent socket file (default: ~/.ethereum-tool/signer.sock)")
+    private File socketFile = SigningAgent.getDefaultSocketFile();
+
+    @Override
+    public Void call() throws Exception {
+        if (!this.keyFile.exists()) {
+            Output.error("Non existing key file: " + this.keyFile.getAbsolutePath());
+            return null;
+        }
+        Credentials credentials = loadCredentials();
+        if (null == credentials) {
+            Output.error("Incorrect passphrase");
+            return null;
+        }
+        SigningAgent signingAgent = new SigningAgent(this.socketFile, credentials);
+        System.out.println("Address: " + signingAgent.getAddress());
+        System.out.println("Signing agent socket: " + this.socketFile.getAbsolutePath());
+        System.out.println("Key unlocked for " + this.ttl + " seconds. Press Ctrl-C to lock.");
+        signingAgent.run(this.ttl);
+        System.out.println("Key locked.");
+        return null;
+    }
+
+    /**
+     * Loads the key. The passphrase is overwritten afterwards.
+     *
+     * @return the credentials, or null for an incorrect passphrase.
+     * @throws Exception
+     */
+    private Credentials loadCredentials() throws Exception {
+        Console console = System.console();
+        char[] password = console.readPassword("Passphrase: ");
+        try {
+            return WalletUtils.loadCredentials(new String(password), this.keyFile);
+        } catch (CipherException ex) {
+            return null;
+        } finally {
+            Arrays.fill(password, '\0');
+        }
+    }
+}
@@ -17,32 +17,162 @@
  */
 package be.e_contract.ethereum.tool;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import org.joda.time.DateTime;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthSyncing;
+import org.web3j.protocol.core.methods.response.NetPeerCount;
 import org.web3j.protocol.http.HttpService;
 import org.web3j.protocol.ipc.UnixIpcService;
-import org.web3j.utils.Async;
 import picocli.CommandLine;
 
 public class Web3TypeConverter implements CommandLine.ITypeConverter<Web3j> {
 
+    // poll every half second
+    private long pollInterval = 500;
+
+    private File cacheDirectory;
+
+    // blocks below this depth can no longer be reorganized away
+    private long cacheConfirmations = 64;
+
+    private boolean nodeStatistics;
+
+    private boolean healthCheck = true;
+
+    private File recordFile;
+
+    private boolean metrics;
+
+    // how long we wait for the health check results on exit
+    private static final long HEALTH_CHECK_GRACE_MILLIS = 2000;
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public void setCacheConfirmations(long cacheConfirmations) {
+        this.cacheConfirmations = cacheConfirmations;
+    }
+
+    public void setRecordFile(File recordFile) {
+        this.recordFile = recordFile;
+    }
+
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setHealthCheck(boolean healthCheck) {
+        this.healthCheck = healthCheck;
+    }
+
+    public void setNodeStatistics(boolean nodeStatistics) {
+        this.nodeStatistics = nodeStatistics;
+    }
+
+    /**
+     * Creates the transport towards a single node.
+     *
+     * @param location
+     * @param transportMeter counts the bytes on HTTP and IPC connections, can
+     * be null.
+     * @return
+     * @throws Exception
+     */
+    private Web3jService createService(String location, TransportMeter transportMeter) throws Exception {
+        if (location.startsWith("http")) {
+            if (null != transportMeter) {
+                return new MeteredHttpService(location, transportMeter);
+            }
+            return new HttpService(location);
+        }
+        if (location.startsWith("ws")) {
+            // new blocks and pending transactions via eth_subscribe, so no polling
+            ReconnectingWebSocketService webSocketService = new ReconnectingWebSocketService(location);
+            webSocketService.connect();
+            return webSocketService;
+        }
+        if (null != transportMeter) {
+            return new MeteredIpcService(location, transportMeter);
+        }
+        return new UnixIpcService(location);
+    }
+
+    private Web3jService createMultiNodeService(String[] locations, TransportMeter transportMeter) {
+        List<String> nodeLocations = new ArrayList<>();
+        List<Web3jService> services = new ArrayList<>();
+        for (String nodeLocation : locations) {
+            nodeLocation = nodeLocation.trim();
+            try {
+                services.add(createService(nodeLocation, transportMeter));
+                nodeLocations.add(nodeLocation);
+            } catch (Exception e) {
+                // the other nodes can take over
+                Output.warning("Could not connect to node: " + nodeLocation);
+            }
+        }
+        if (services.isEmpty()) {
+            throw new IllegalStateException("no node available");
+        }
+        MultiNodeWeb3jService multiNodeService = new MultiNodeWeb3jService(nodeLocations, services);
+        if (this.nodeStatistics) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> multiNodeService.printStatistics(System.err)));
+        }
+        return multiNodeService;
+    }
+
     @Override
     public Web3j convert(String location) throws Exception {
         Web3j web3;
         try {
+            RpcMetrics rpcMetrics = null;
+            TransportMeter transportMeter = null;
+            if (this.metrics) {
+                rpcMetrics = new RpcMetrics();
+                transportMeter = new TransportMeter(rpcMetrics);
+            }
             Web3jService service;
-            if (location.startsWith("http")) {
-                service = new HttpService(location);
+            String[] locations = location.split(",");
+            if (locations.length > 1) {
+                service = createMultiNodeService(locations, transportMeter);
             } else {
-                service = new UnixIpcService(location);
+                service = createService(location, transportMeter);
+            }
+            if (null != rpcMetrics) {
+                // below the cache, so we only measure what actually goes to the node
+                RpcMetrics summaryMetrics = rpcMetrics;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> summaryMetrics.printSummary(System.err)));
+                service = new InstrumentedWeb3jService(service, rpcMetrics);
+            }
+            if (null != this.cacheDirectory) {
+                service = new CachingWeb3jService(service, this.cacheDirectory, this.cacheConfirmations);
             }
-            // poll every half second
-            web3 = Web3j.build(service, 500, Async.defaultExecutorService());
+            if (null != this.recordFile) {
+                // records what the command asks for, so a replay also works without the cache
+                RecordingWeb3jService recordingService = new RecordingWeb3jService(service, this.recordFile);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        recordingService.finish();
+                    } catch (IOException ex) {
+                        // nothing we can do here
+                    }
+                }));
+                service = recordingService;
+            }
+            web3 = new ToolWeb3j(service, this.pollInterval);
         } catch (Exception e) {
             Output.error("Could not connect to node: " + location);
             Output.error("Error: " + e.getMessage());
@@ -50,19 +180,57 @@ public class Web3TypeConverter implements CommandLine.ITypeConverter<Web3j> {
             throw new RuntimeException(e);
         }
 
-        BigInteger peerCount = web3.netPeerCount().send().getQuantity();
-        if (BigInteger.ZERO.equals(peerCount)) {
+        if (this.healthCheck) {
+            startHealthCheck(web3);
+        }
+
+        return web3;
+    }
+
+    /**
+     * Checks the node in the background via a single batch request, so the
+     * command can already start. Warnings appear once the answers are in.
+     *
+     * @param web3
+     */
+    private void startHealthCheck(Web3j web3) {
+        Thread healthCheckThread = new Thread(() -> {
+            try {
+                RpcBatch batch = new RpcBatch(web3);
+                RpcBatch.Result<NetPeerCount> netPeerCount = batch.add(web3.netPeerCount());
+                RpcBatch.Result<EthSyncing> ethSyncing = batch.add(web3.ethSyncing());
+                RpcBatch.Result<EthBlock> latestBlock = batch.add(web3.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false));
+                batch.send();
+                reportHealth(netPeerCount.get(), ethSyncing.get(), latestBlock.get());
+            } catch (Exception ex) {
+                // the command itself will report connection problems
+            }
+        }, "health-check");
+        healthCheckThread.setDaemon(true);
+        healthCheckThread.start();
+        // short commands might be done before the node answered
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                healthCheckThread.join(HEALTH_CHECK_GRACE_MILLIS);
+            } catch (InterruptedException ex) {
+                // exit anyway
+            }
+        }));
+    }
+
+    private void reportHealth(NetPeerCount netPeerCount, EthSyncing ethSyncing, EthBlock latestBlock) {
+        if (!netPeerCount.hasError() && BigInteger.ZERO.equals(netPeerCount.getQuantity())) {
             Output.warning("Node has no peers.");
             Output.warning("Node probably just started.");
             Output.warning("Results will be inaccurate!");
         }
 
-        if (web3.ethSyncing().send().isSyncing()) {
+        if (!ethSyncing.hasError() && ethSyncing.isSyncing()) {
             Output.warning("Node is still syncing.");
             Output.warning("Results will be inaccurate!");
-        } else {
+        } else if (!latestBlock.hasError() && null != latestBlock.getBlock()) {
             // not every node reports syncing status correctly, so also check latest block timestamp
-            EthBlock.Block block = web3.ethGetBlockByNumber(DefaultBlockParameterName.LATEST, false).send().getBlock();
+            EthBlock.Block block = latestBlock.getBlock();
             BigInteger timestamp = block.getTimestamp();
             Date timestampDate = new Date(timestamp.multiply(BigInteger.valueOf(1000)).longValue());
             DateTime timestampDateTime = new DateTime(timestampDate);
@@ -73,7 +241,5 @@ public class Web3TypeConverter implements CommandLine.ITypeConverter<Web3j> {
                 Output.warning("Results might be inaccurate.");
             }
         }
-
-        return web3;
     }
 }
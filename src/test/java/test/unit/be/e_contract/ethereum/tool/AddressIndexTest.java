@@ -0,0 +1,166 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.AddressIndex;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AddressIndexTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AddressIndexTest.class);
+
+    private static final String ADDRESS_1 = "0x0c56073db91c2ba57ff362301eb32262bbee6147";
+
+    private static final String ADDRESS_2 = "0xff56073db91c2ba57ff362301eb32262bbee6100";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIndex() throws Exception {
+        File directory = this.tempDir.toFile();
+        assertNull(AddressIndex.open(directory));
+
+        AddressIndex.Builder builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_2, 20000000, 3);
+        builder.add(ADDRESS_1.toUpperCase().replace("0X", "0x"), 20000005, 150);
+        builder.add(ADDRESS_1, 20000000, 7);
+        builder.add(ADDRESS_1, 20000000, 7);
+        builder.write(directory, 1, 20000000, 20000010);
+
+        AddressIndex addressIndex = AddressIndex.open(directory);
+        assertEquals(1, addressIndex.getChainId());
+        assertEquals(20000000, addressIndex.getFromBlock());
+        assertEquals(20000010, addressIndex.getToBlock());
+        assertEquals(2, addressIndex.getAddressCount());
+        List<AddressIndex.Posting> postings = addressIndex.lookup(ADDRESS_1);
+        assertEquals(2, postings.size());
+        assertEquals(20000000, postings.get(0).getBlockNumber());
+        assertEquals(7, postings.get(0).getTransactionIndex());
+        assertEquals(20000005, postings.get(1).getBlockNumber());
+        assertEquals(150, postings.get(1).getTransactionIndex());
+        assertEquals(1, addressIndex.lookup(ADDRESS_2).size());
+        assertTrue(addressIndex.lookup("0x0000000000000000000000000000000000000001").isEmpty());
+
+        // extend the index, only with the new blocks
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_2, 19999999, 0);
+        builder.write(directory, 1, 19999999, 19999999);
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 20000011, 1);
+        builder.write(directory, 1, 20000011, 20000020);
+        addressIndex = AddressIndex.open(directory);
+        assertEquals(3, addressIndex.getSegmentCount());
+        assertEquals(19999999, addressIndex.getFromBlock());
+        assertEquals(20000020, addressIndex.getToBlock());
+        assertEquals(2, addressIndex.getAddressCount());
+        postings = addressIndex.lookup(ADDRESS_2);
+        LOGGER.debug("postings: {}", postings.size());
+        assertEquals(2, postings.size());
+        assertEquals(19999999, postings.get(0).getBlockNumber());
+        assertEquals(20000000, postings.get(1).getBlockNumber());
+        postings = addressIndex.lookup(ADDRESS_1);
+        assertEquals(3, postings.size());
+        assertEquals(20000011, postings.get(2).getBlockNumber());
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        File directory = this.tempDir.toFile();
+        AddressIndex.Builder builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 100, 0);
+        builder.add(ADDRESS_2, 150, 2);
+        builder.write(directory, 1, 100, 199);
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_2, 200, 1);
+        builder.write(directory, 1, 200, 299);
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 300, 5);
+        builder.add(ADDRESS_1, 1000000, 3);
+        builder.write(directory, 1, 300, 1000000);
+        AddressIndex addressIndex = AddressIndex.open(directory);
+        assertEquals(3, addressIndex.getSegmentCount());
+
+        addressIndex = addressIndex.compact();
+        assertEquals(1, addressIndex.getSegmentCount());
+        assertEquals(1, directory.list().length);
+        assertEquals(100, addressIndex.getFromBlock());
+        assertEquals(1000000, addressIndex.getToBlock());
+        assertEquals(2, addressIndex.getAddressCount());
+        List<AddressIndex.Posting> postings = addressIndex.lookup(ADDRESS_1);
+        assertEquals(3, postings.size());
+        assertEquals(100, postings.get(0).getBlockNumber());
+        assertEquals(300, postings.get(1).getBlockNumber());
+        assertEquals(5, postings.get(1).getTransactionIndex());
+        assertEquals(1000000, postings.get(2).getBlockNumber());
+        assertEquals(3, postings.get(2).getTransactionIndex());
+        postings = addressIndex.lookup(ADDRESS_2);
+        assertEquals(2, postings.size());
+        assertEquals(150, postings.get(0).getBlockNumber());
+        assertEquals(200, postings.get(1).getBlockNumber());
+
+        // extending after compaction adds a segment again
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_2, 1000001, 0);
+        builder.write(directory, 1, 1000001, 1000001);
+        addressIndex = AddressIndex.open(directory);
+        assertEquals(2, addressIndex.getSegmentCount());
+        assertEquals(3, addressIndex.lookup(ADDRESS_2).size());
+    }
+
+    @Test
+    public void testInterruptedCompact() throws Exception {
+        File directory = this.tempDir.toFile();
+        AddressIndex.Builder builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 100, 0);
+        builder.write(directory, 1, 100, 199);
+        builder.write(directory, 1, 200, 299);
+        // the merged segment got written, the old segments did not get removed
+        builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 100, 0);
+        builder.add(ADDRESS_2, 250, 0);
+        builder.write(directory, 1, 100, 299);
+
+        AddressIndex addressIndex = AddressIndex.open(directory);
+        assertEquals(1, addressIndex.getSegmentCount());
+        assertEquals(1, addressIndex.lookup(ADDRESS_1).size());
+        assertEquals(1, addressIndex.lookup(ADDRESS_2).size());
+    }
+
+    @Test
+    public void testGap() throws Exception {
+        File directory = this.tempDir.toFile();
+        AddressIndex.Builder builder = new AddressIndex.Builder();
+        builder.add(ADDRESS_1, 100, 0);
+        builder.write(directory, 1, 100, 200);
+        builder.write(directory, 1, 300, 400);
+        assertThrows(IOException.class, () -> AddressIndex.open(directory));
+    }
+}
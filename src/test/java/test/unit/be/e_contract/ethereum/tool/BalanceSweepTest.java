@@ -0,0 +1,205 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.BalanceSweep;
+import be.e_contract.ethereum.tool.OutputFormat;
+import be.e_contract.ethereum.tool.RecordWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BalanceSweepTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceSweepTest.class);
+
+    @Test
+    public void testSweep() throws Exception {
+        List<String> addresses = createAddresses(50);
+        // address 7 has no state at this block
+        TestWeb3jService testService = new TestWeb3jService(addresses.get(7), null);
+        Web3j web3 = Web3j.build(testService);
+        BalanceSweep balanceSweep = new BalanceSweep(web3, 3, 4);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordWriter recordWriter = RecordWriter.open(OutputFormat.CSV, outputStream, "address", "nonce", "balance", "error")) {
+            balanceSweep.sweep(addresses, DefaultBlockParameter.valueOf(BigInteger.valueOf(1000)), recordWriter);
+        }
+        String output = outputStream.toString(StandardCharsets.UTF_8.name());
+        LOGGER.debug("output: {}", output);
+        String[] lines = output.split("\n");
+        assertEquals(1 + addresses.size(), lines.length);
+        assertEquals("address,nonce,balance,error", lines[0]);
+        BigInteger expectedTotalBalance = BigInteger.ZERO;
+        for (int idx = 0; idx < addresses.size(); idx++) {
+            if (7 == idx) {
+                assertEquals(addresses.get(idx) + ",,,header not found", lines[1 + idx]);
+                continue;
+            }
+            BigInteger balance = getBalance(idx);
+            assertEquals(addresses.get(idx) + "," + idx + "," + balance + ",", lines[1 + idx]);
+            expectedTotalBalance = expectedTotalBalance.add(balance);
+        }
+        assertEquals(expectedTotalBalance, balanceSweep.getTotalBalance());
+        assertEquals(1, balanceSweep.getErrorCount());
+        LOGGER.debug("max batches in flight: {}", testService.maxInFlight.get());
+        assertTrue(testService.maxInFlight.get() <= 4);
+        web3.shutdown();
+    }
+
+    @Test
+    public void testBatchFailure() throws Exception {
+        List<String> addresses = createAddresses(20);
+        TestWeb3jService testService = new TestWeb3jService(null, addresses.get(11));
+        Web3j web3 = Web3j.build(testService);
+        BalanceSweep balanceSweep = new BalanceSweep(web3, 5, 2);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordWriter recordWriter = RecordWriter.open(OutputFormat.CSV, outputStream, "address", "nonce", "balance", "error")) {
+            assertThrows(IOException.class, () -> balanceSweep.sweep(addresses, DefaultBlockParameter.valueOf(BigInteger.valueOf(1000)), recordWriter));
+        }
+        String output = outputStream.toString(StandardCharsets.UTF_8.name());
+        LOGGER.debug("output: {}", output);
+        // only the batches before the failing one made it to the output
+        assertEquals(1 + 10, output.split("\n").length);
+        web3.shutdown();
+    }
+
+    private static List<String> createAddresses(int count) {
+        List<String> addresses = new ArrayList<>(count);
+        for (int idx = 0; idx < count; idx++) {
+            addresses.add(Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(0x1000 + idx), 40));
+        }
+        return addresses;
+    }
+
+    private static BigInteger getBalance(int idx) {
+        return BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(idx));
+    }
+
+    private static final class TestWeb3jService implements Web3jService {
+
+        private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+        private final Random random = new Random();
+
+        private final String errorAddress;
+
+        private final String failingAddress;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        public TestWeb3jService(String errorAddress, String failingAddress) {
+            this.errorAddress = errorAddress;
+            this.failingAddress = failingAddress;
+        }
+
+        @Override
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            String address = request.getParams().get(0).toString();
+            if (address.equals(this.failingAddress)) {
+                throw new IOException("connection reset");
+            }
+            int idx = Numeric.toBigInt(address).intValue() - 0x1000;
+            ObjectNode response = this.objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.getId());
+            switch (request.getMethod()) {
+                case "eth_getTransactionCount":
+                    response.put("result", Numeric.encodeQuantity(BigInteger.valueOf(idx)));
+                    break;
+                case "eth_getBalance":
+                    if (address.equals(this.errorAddress)) {
+                        ObjectNode error = response.putObject("error");
+                        error.put("code", -32000);
+                        error.put("message", "header not found");
+                    } else {
+                        response.put("result", Numeric.encodeQuantity(getBalance(idx)));
+                    }
+                    break;
+                default:
+                    throw new IOException("unsupported method: " + request.getMethod());
+            }
+            return this.objectMapper.treeToValue(response, responseType);
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+            this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+            try {
+                // later batches regularly complete before earlier ones
+                Thread.sleep(this.random.nextInt(10));
+                List<Response<?>> responses = new LinkedList<>();
+                for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+                    responses.add(send(request, request.getResponseType()));
+                }
+                return new BatchResponse(batchRequest.getRequests(), responses);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } finally {
+                this.inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
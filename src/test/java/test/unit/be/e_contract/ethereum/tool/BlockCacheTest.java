@@ -0,0 +1,87 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.BlockCache;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BlockCacheTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockCacheTest.class);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testTornIndexRecord() throws Exception {
+        File directory = this.tempDir.toFile();
+        File indexFile = new File(directory, "cache.idx");
+        try (BlockCache blockCache = new BlockCache(directory)) {
+            blockCache.put("key1", "value1");
+            blockCache.put("key2", "value2");
+        }
+        long indexSize = indexFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            // half of a record, as after a crash
+            file.seek(indexSize);
+            file.writeInt(30);
+            file.writeShort(4);
+            file.write("key3".getBytes());
+        }
+
+        try (BlockCache blockCache = new BlockCache(directory)) {
+            assertEquals(indexSize, indexFile.length());
+            assertEquals(2, blockCache.size());
+            assertEquals("value1", blockCache.get("key1"));
+            blockCache.put("key3", "value3");
+        }
+        try (BlockCache blockCache = new BlockCache(directory)) {
+            assertEquals(3, blockCache.size());
+            assertEquals("value2", blockCache.get("key2"));
+            assertEquals("value3", blockCache.get("key3"));
+        }
+    }
+
+    @Test
+    public void testCorruptValue() throws Exception {
+        File directory = this.tempDir.toFile();
+        try (BlockCache blockCache = new BlockCache(directory)) {
+            blockCache.put("key1", "value1");
+            blockCache.put("key2", "value2");
+        }
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "cache.dat"), "rw")) {
+            // overwritten by somebody else
+            file.seek(0);
+            file.write("VALUE".getBytes());
+        }
+        try (BlockCache blockCache = new BlockCache(directory)) {
+            LOGGER.debug("size: {}", blockCache.size());
+            assertNull(blockCache.get("key1"));
+            assertEquals("value2", blockCache.get("key2"));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.BlockScanner;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockScannerTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockScannerTest.class);
+
+    @Test
+    public void testBlockOrder() throws Exception {
+        Random random = new Random();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        BlockScanner<BigInteger> blockScanner = new BlockScanner<>(blockNumber -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(random.nextInt(5));
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return blockNumber;
+        }, 4);
+        List<BigInteger> visited = new LinkedList<>();
+        long count = blockScanner.scan(BigInteger.valueOf(100), 50, (blockNumber, block) -> {
+            assertEquals(blockNumber, block);
+            visited.add(block);
+        });
+        assertEquals(50, count);
+        assertEquals(50, visited.size());
+        for (int idx = 0; idx < visited.size(); idx++) {
+            assertEquals(BigInteger.valueOf(100 - idx), visited.get(idx));
+        }
+        assertTrue(maxInFlight.get() <= 4);
+        LOGGER.debug("max in flight: {}", maxInFlight.get());
+        LOGGER.debug("blocks/sec: {}", blockScanner.getBlocksPerSecond());
+    }
+
+    @Test
+    public void testStopsAtGenesis() throws Exception {
+        BlockScanner<BigInteger> blockScanner = new BlockScanner<>(blockNumber -> blockNumber, 3);
+        long count = blockScanner.scan(BigInteger.valueOf(4), 100, (blockNumber, block) -> {
+            assertTrue(blockNumber.signum() >= 0);
+        });
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testFetchError() throws Exception {
+        BlockScanner<BigInteger> blockScanner = new BlockScanner<>(blockNumber -> {
+            if (blockNumber.intValue() == 7) {
+                throw new IOException("node error");
+            }
+            return blockNumber;
+        }, 2);
+        assertThrows(IOException.class, () -> blockScanner.scan(BigInteger.valueOf(10), 10, (blockNumber, block) -> {
+        }));
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.BulkTransmitter;
+import be.e_contract.ethereum.tool.OutputFormat;
+import be.e_contract.ethereum.tool.RecordWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkTransmitterTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkTransmitterTest.class);
+
+    @Test
+    public void testNonceOrder() throws Exception {
+        List<BulkTransmitter.SignedTransaction> signedTransactions = new ArrayList<>();
+        Credentials alice = Credentials.create(Keys.createEcKeyPair());
+        Credentials bob = Credentials.create(Keys.createEcKeyPair());
+        signedTransactions.addAll(sign(alice, 25));
+        signedTransactions.addAll(sign(bob, 25));
+        Collections.shuffle(signedTransactions);
+        TestWeb3jService testService = new TestWeb3jService();
+        Web3j web3 = Web3j.build(testService);
+        BulkTransmitter bulkTransmitter = new BulkTransmitter(web3, 10, 0, 1);
+        int sentCount = transmit(bulkTransmitter, signedTransactions);
+        assertEquals(50, sentCount);
+        for (Credentials credentials : new Credentials[]{alice, bob}) {
+            List<BigInteger> nonces = testService.received.get(credentials.getAddress());
+            assertEquals(25, nonces.size());
+            for (int nonce = 0; nonce < 25; nonce++) {
+                assertEquals(BigInteger.valueOf(nonce), nonces.get(nonce));
+            }
+        }
+        // whole batches per sender, not one transaction per round trip
+        LOGGER.debug("batches: {}", testService.batchCount);
+        assertEquals(5, testService.batchCount);
+        for (BulkTransmitter.SignedTransaction signedTransaction : signedTransactions) {
+            assertEquals("sent", signedTransaction.getStatus());
+            assertNull(signedTransaction.getError());
+        }
+        web3.shutdown();
+    }
+
+    @Test
+    public void testSkipAfterFailure() throws Exception {
+        Credentials alice = Credentials.create(Keys.createEcKeyPair());
+        Credentials bob = Credentials.create(Keys.createEcKeyPair());
+        List<BulkTransmitter.SignedTransaction> signedTransactions = new ArrayList<>();
+        signedTransactions.addAll(sign(alice, 8));
+        signedTransactions.addAll(sign(bob, 8));
+        TestWeb3jService testService = new TestWeb3jService();
+        testService.rejected.put(alice.getAddress() + ":3", "insufficient funds for gas * price + value");
+        testService.rejected.put(bob.getAddress() + ":0", "already known");
+        Web3j web3 = Web3j.build(testService);
+        BulkTransmitter bulkTransmitter = new BulkTransmitter(web3, 2, 0, 1);
+        int sentCount = transmit(bulkTransmitter, signedTransactions);
+        assertEquals(3 + 8, sentCount);
+        // the batch with nonce 3 was sent, the remaining nonces never were
+        assertEquals(4, testService.received.get(alice.getAddress()).size());
+        assertEquals(8, testService.received.get(bob.getAddress()).size());
+        for (BulkTransmitter.SignedTransaction signedTransaction : signedTransactions) {
+            int nonce = signedTransaction.getNonce().intValueExact();
+            if (signedTransaction.getFrom().equals(bob.getAddress())) {
+                assertEquals(0 == nonce ? "known" : "sent", signedTransaction.getStatus());
+            } else if (nonce < 3) {
+                assertEquals("sent", signedTransaction.getStatus());
+            } else if (nonce == 3) {
+                assertEquals("failed", signedTransaction.getStatus());
+                assertEquals("insufficient funds for gas * price + value", signedTransaction.getError());
+            } else {
+                assertEquals("skipped", signedTransaction.getStatus());
+            }
+        }
+        web3.shutdown();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        Credentials alice = Credentials.create(Keys.createEcKeyPair());
+        List<BulkTransmitter.SignedTransaction> signedTransactions = sign(alice, 4);
+        TestWeb3jService testService = new TestWeb3jService();
+        // a lost connection, then a rate limit on a single transaction
+        testService.failingBatches = 1;
+        testService.rateLimited = 2;
+        Web3j web3 = Web3j.build(testService);
+        BulkTransmitter bulkTransmitter = new BulkTransmitter(web3, 10, 3, 1);
+        assertEquals(4, transmit(bulkTransmitter, signedTransactions));
+        // the failed batch and the batch with the rate limit, then twice the rate limited transaction on its own
+        assertEquals(2, testService.batchCount);
+        assertEquals(2, testService.singleCount);
+        web3.shutdown();
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        Credentials alice = Credentials.create(Keys.createEcKeyPair());
+        List<BulkTransmitter.SignedTransaction> signedTransactions = sign(alice, 4);
+        TestWeb3jService testService = new TestWeb3jService();
+        testService.failingBatches = 3;
+        Web3j web3 = Web3j.build(testService);
+        BulkTransmitter bulkTransmitter = new BulkTransmitter(web3, 10, 2, 1);
+        assertEquals(0, transmit(bulkTransmitter, signedTransactions));
+        assertEquals(3, testService.batchCount);
+        for (BulkTransmitter.SignedTransaction signedTransaction : signedTransactions) {
+            assertEquals("failed", signedTransaction.getStatus());
+            assertEquals("connection reset", signedTransaction.getError());
+        }
+        web3.shutdown();
+    }
+
+    private static int transmit(BulkTransmitter bulkTransmitter, List<BulkTransmitter.SignedTransaction> signedTransactions) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int sentCount;
+        try (RecordWriter recordWriter = RecordWriter.open(OutputFormat.CSV, outputStream, "name", "hash", "from", "nonce", "status", "error")) {
+            sentCount = bulkTransmitter.transmit(signedTransactions, recordWriter);
+        }
+        String output = outputStream.toString(StandardCharsets.UTF_8.name());
+        LOGGER.debug("output: {}", output);
+        // every transaction gets a record
+        assertEquals(1 + signedTransactions.size(), output.split("\n").length);
+        return sentCount;
+    }
+
+    private static List<BulkTransmitter.SignedTransaction> sign(Credentials credentials, int count) {
+        List<BulkTransmitter.SignedTransaction> signedTransactions = new ArrayList<>(count);
+        for (int nonce = 0; nonce < count; nonce++) {
+            RawTransaction rawTransaction = RawTransaction.createEtherTransaction(BigInteger.valueOf(nonce),
+                    Convert.toWei("10", Convert.Unit.GWEI).toBigIntegerExact(), BigInteger.valueOf(21000),
+                    "0x0000000000000000000000000000000000001234", BigInteger.ONE);
+            String transaction = Numeric.toHexString(TransactionEncoder.signMessage(rawTransaction, 1, credentials));
+            signedTransactions.add(new BulkTransmitter.SignedTransaction(credentials.getAddress() + "-" + nonce, transaction,
+                    credentials.getAddress(), BigInteger.valueOf(nonce)));
+        }
+        return signedTransactions;
+    }
+
+    private static final class TestWeb3jService implements Web3jService {
+
+        private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+        // per sender, the nonces in order of their first arrival
+        private final Map<String, List<BigInteger>> received = new HashMap<>();
+
+        private final Map<String, String> rejected = new HashMap<>();
+
+        private int failingBatches;
+
+        private int rateLimited;
+
+        private int batchCount;
+
+        private int singleCount;
+
+        @Override
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            this.singleCount++;
+            return respond(request, responseType);
+        }
+
+        private <T extends Response> T respond(Request request, Class<T> responseType) throws IOException {
+            if (!"eth_sendRawTransaction".equals(request.getMethod())) {
+                throw new IOException("unsupported method: " + request.getMethod());
+            }
+            String transaction = request.getParams().get(0).toString();
+            SignedRawTransaction signedRawTransaction = (SignedRawTransaction) TransactionDecoder.decode(transaction);
+            String from;
+            try {
+                from = signedRawTransaction.getFrom();
+            } catch (Exception ex) {
+                throw new IOException(ex);
+            }
+            BigInteger nonce = signedRawTransaction.getNonce();
+            List<BigInteger> nonces = this.received.computeIfAbsent(from, key -> new ArrayList<>());
+            if (!nonces.contains(nonce)) {
+                if (!nonces.isEmpty()) {
+                    // retries aside, the nonces of a sender arrive in order
+                    assertTrue(nonces.get(nonces.size() - 1).compareTo(nonce) < 0);
+                }
+                nonces.add(nonce);
+            }
+            ObjectNode response = this.objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.getId());
+            String rejection = this.rejected.get(from + ":" + nonce);
+            if (this.rateLimited > 0 && 2 == nonce.intValueExact()) {
+                this.rateLimited--;
+                ObjectNode error = response.putObject("error");
+                error.put("code", -32005);
+                error.put("message", "limit exceeded");
+            } else if (null != rejection) {
+                ObjectNode error = response.putObject("error");
+                error.put("code", -32000);
+                error.put("message", rejection);
+            } else {
+                response.put("result", Hash.sha3(transaction));
+            }
+            return this.objectMapper.treeToValue(response, responseType);
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+            this.batchCount++;
+            if (this.failingBatches > 0) {
+                this.failingBatches--;
+                throw new IOException("connection reset");
+            }
+            List<Response<?>> responses = new LinkedList<>();
+            for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+                responses.add(respond(request, request.getResponseType()));
+            }
+            return new BatchResponse(batchRequest.getRequests(), responses);
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.CachingWeb3jService;
+import be.e_contract.ethereum.tool.RpcBatch;
+import be.e_contract.ethereum.tool.ToolWeb3j;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CachingWeb3jServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingWeb3jServiceTest.class);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCache() throws Exception {
+        File cacheDirectory = this.tempDir.toFile();
+        TestWeb3jService testService = new TestWeb3jService(1000);
+
+        CachingWeb3jService cachingService = new CachingWeb3jService(testService, cacheDirectory, 64);
+        ToolWeb3j web3 = new ToolWeb3j(cachingService, 500);
+        EthBlock.Block block = web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(100)), false).send().getBlock();
+        assertEquals(BigInteger.valueOf(100), block.getNumber());
+        block = web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(100)), false).send().getBlock();
+        assertEquals(BigInteger.valueOf(100), block.getNumber());
+        assertEquals(1, cachingService.getHits());
+        // too recent to be cached
+        web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(990)), false).send();
+        web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(990)), false).send();
+        assertEquals(1, cachingService.getHits());
+        web3.shutdown();
+
+        int blockRequests = testService.blockRequests;
+        LOGGER.debug("block requests: {}", blockRequests);
+        cachingService = new CachingWeb3jService(testService, cacheDirectory, 64);
+        web3 = new ToolWeb3j(cachingService, 500);
+        RpcBatch batch = new RpcBatch(web3);
+        RpcBatch.Result<EthBlock> result100 = batch.add(web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(100)), true));
+        RpcBatch.Result<EthBlock> result101 = batch.add(web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(101)), false));
+        RpcBatch.Result<EthBlock> result100Light = batch.add(web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(100)), false));
+        batch.send();
+        assertEquals(BigInteger.valueOf(100), result100.get().getBlock().getNumber());
+        assertEquals(BigInteger.valueOf(101), result101.get().getBlock().getNumber());
+        assertEquals(BigInteger.valueOf(100), result100Light.get().getBlock().getNumber());
+        // block 100 without transaction objects came from the cache
+        assertEquals(blockRequests + 2, testService.blockRequests);
+        assertEquals(1, cachingService.getHits());
+        web3.shutdown();
+    }
+
+    private static final class TestWeb3jService implements Web3jService {
+
+        private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+        private final long latestBlockNumber;
+
+        private int blockRequests;
+
+        public TestWeb3jService(long latestBlockNumber) {
+            this.latestBlockNumber = latestBlockNumber;
+        }
+
+        @Override
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            ObjectNode response = this.objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.getId());
+            switch (request.getMethod()) {
+                case "eth_chainId":
+                    response.put("result", "0x1");
+                    break;
+                case "eth_blockNumber":
+                    response.put("result", Numeric.encodeQuantity(BigInteger.valueOf(this.latestBlockNumber)));
+                    break;
+                case "eth_getBlockByNumber": {
+                    this.blockRequests++;
+                    ObjectNode block = response.putObject("result");
+                    block.put("number", request.getParams().get(0).toString());
+                    block.put("hash", Numeric.toHexStringWithPrefixZeroPadded(Numeric.decodeQuantity(request.getParams().get(0).toString()), 64));
+                    block.putArray("transactions");
+                    block.putArray("uncles");
+                    break;
+                }
+                default:
+                    throw new IOException("unsupported method: " + request.getMethod());
+            }
+            return this.objectMapper.treeToValue(response, responseType);
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+            List<Response<?>> responses = new LinkedList<>();
+            for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+                responses.add(send(request, request.getResponseType()));
+            }
+            return new BatchResponse(batchRequest.getRequests(), responses);
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
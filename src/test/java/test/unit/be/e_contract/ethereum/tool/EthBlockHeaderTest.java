@@ -0,0 +1,55 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.EthBlockHeader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EthBlockHeaderTest {
+
+    private static final String RESPONSE = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{"
+            + "\"number\":\"0x1312d00\",\"miner\":\"0x95222290dd7278aa3ddd389cc1e1d165cc4bafe5\","
+            + "\"transactions\":[\"0x01\",\"0x02\"],\"uncles\":[],\"withdrawals\":[{\"index\":\"0x1\"}],"
+            + "\"timestamp\":\"0x65b8f1a3\",\"baseFeePerGas\":\"0x3b9aca00\",\"gasUsed\":\"0xe4e1c0\","
+            + "\"gasLimit\":\"0x1c9c380\",\"extraData\":\"0x\"}}";
+
+    @Test
+    public void testSameAsFullBlock() throws Exception {
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        EthBlock.Block block = objectMapper.readValue(RESPONSE, EthBlock.class).getBlock();
+        EthBlockHeader.BlockHeader blockHeader = objectMapper.readValue(RESPONSE, EthBlockHeader.class).getBlockHeader();
+        assertEquals(block.getNumber().longValueExact(), blockHeader.getNumber());
+        assertEquals(block.getMiner(), blockHeader.getMiner());
+        assertEquals(block.getTimestamp().longValueExact(), blockHeader.getTimestamp());
+        assertEquals(block.getBaseFeePerGas().longValueExact(), blockHeader.getBaseFeePerGas());
+        assertEquals(block.getGasUsed().longValueExact(), blockHeader.getGasUsed());
+    }
+
+    @Test
+    public void testUnknownBlock() throws Exception {
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        EthBlockHeader ethBlockHeader = objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":null}", EthBlockHeader.class);
+        assertNull(ethBlockHeader.getBlockHeader());
+    }
+}
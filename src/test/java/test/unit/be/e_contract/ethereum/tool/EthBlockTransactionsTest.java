@@ -0,0 +1,75 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.EthBlockTransactions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Transaction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EthBlockTransactionsTest {
+
+    private static final String RESPONSE = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{"
+            + "\"number\":\"0x1312d00\",\"hash\":\"0xab\",\"timestamp\":\"0x65b8f1a3\",\"uncles\":[],"
+            + "\"transactions\":["
+            + "{\"hash\":\"0x01\",\"from\":\"0x95222290dd7278aa3ddd389cc1e1d165cc4bafe5\","
+            + "\"to\":\"0x0c56073db91c2ba57ff362301eb32262bbee6147\",\"value\":\"0xde0b6b3a7640000\",\"input\":\"0x\","
+            + "\"accessList\":[{\"address\":\"0x01\",\"storageKeys\":[\"0x02\"]}],\"v\":\"0x1\",\"r\":\"0x2\",\"s\":\"0x3\"},"
+            + "{\"hash\":\"0x02\",\"from\":\"0x0c56073db91c2ba57ff362301eb32262bbee6147\",\"to\":null,"
+            + "\"value\":\"0x0\",\"input\":\"0x6080604052\",\"blobVersionedHashes\":[\"0x03\"]}"
+            + "],\"withdrawals\":[{\"index\":\"0x1\"}]}}";
+
+    @Test
+    public void testSameAsFullBlock() throws Exception {
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        EthBlock.Block block = objectMapper.readValue(RESPONSE, EthBlock.class).getBlock();
+        EthBlockTransactions.BlockTransactions blockTransactions = objectMapper.readValue(RESPONSE, EthBlockTransactions.class).getBlockTransactions();
+        assertEquals(block.getNumber().longValueExact(), blockTransactions.getNumber());
+        assertEquals(block.getTimestamp().longValueExact(), blockTransactions.getTimestamp());
+        List<EthBlock.TransactionResult> transactions = block.getTransactions();
+        assertEquals(transactions.size(), blockTransactions.getTransactionCount());
+        for (int idx = 0; idx < transactions.size(); idx++) {
+            Transaction expected = ((EthBlock.TransactionObject) transactions.get(idx)).get();
+            assertEquals(expected.getHash(), blockTransactions.getTransactionHash(idx));
+            assertEquals(expected.getFrom(), blockTransactions.getFrom(idx));
+            assertEquals(expected.getTo(), blockTransactions.getTo(idx));
+            assertEquals(expected.getValue(), blockTransactions.getValue(idx));
+            Transaction transaction = blockTransactions.toTransaction(idx);
+            assertEquals(expected.getValue(), transaction.getValue());
+            assertEquals(block.getNumber(), transaction.getBlockNumber());
+            assertEquals(idx, transaction.getTransactionIndex().intValueExact());
+        }
+        assertFalse(blockTransactions.hasInput(0));
+        assertTrue(blockTransactions.hasInput(1));
+    }
+
+    @Test
+    public void testUnknownBlock() throws Exception {
+        ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+        EthBlockTransactions ethBlockTransactions = objectMapper.readValue("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":null}", EthBlockTransactions.class);
+        assertNull(ethBlockTransactions.getBlockTransactions());
+    }
+}
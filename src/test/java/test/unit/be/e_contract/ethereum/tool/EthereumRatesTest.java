@@ -0,0 +1,98 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.EthereumRates;
+import be.e_contract.ethereum.tool.RateProvider;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EthereumRatesTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EthereumRatesTest.class);
+
+    private static final class StubRateProvider implements RateProvider {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile boolean failing;
+
+        @Override
+        public Map<String, BigDecimal> fetchRates() throws IOException {
+            this.calls.incrementAndGet();
+            if (this.failing) {
+                throw new IOException("offline");
+            }
+            Map<String, BigDecimal> rates = new HashMap<>();
+            rates.put("EUR", new BigDecimal("2000.5"));
+            rates.put("USD", new BigDecimal("2500.25"));
+            return rates;
+        }
+    }
+
+    @Test
+    public void testCache(@TempDir Path tempDir) throws Exception {
+        File cacheFile = tempDir.resolve("rates.json").toFile();
+        StubRateProvider rateProvider = new StubRateProvider();
+
+        EthereumRates ethereumRates = new EthereumRates(rateProvider, cacheFile, TimeUnit.MINUTES.toMillis(5));
+        ethereumRates.prefetch();
+        assertEquals(0, new BigDecimal("4001.0").compareTo(ethereumRates.getEuro(new BigDecimal(2))));
+        assertEquals(0, new BigDecimal("2500.25").compareTo(ethereumRates.getDollar(BigDecimal.ONE)));
+        assertEquals(1, rateProvider.calls.get());
+        assertTrue(cacheFile.exists());
+
+        // next run within the time-to-live does not hit the provider
+        ethereumRates = new EthereumRates(rateProvider, cacheFile, TimeUnit.MINUTES.toMillis(5));
+        assertEquals(2500.25, ethereumRates.getDollar(1), 0.0001);
+        assertEquals(1, rateProvider.calls.get());
+    }
+
+    @Test
+    public void testExpiredCache(@TempDir Path tempDir) throws Exception {
+        File cacheFile = tempDir.resolve("rates.json").toFile();
+        StubRateProvider rateProvider = new StubRateProvider();
+        new EthereumRates(rateProvider, cacheFile, 0).getEuro(1);
+        assertEquals(1, rateProvider.calls.get());
+
+        // outdated rates are used when the provider is down
+        rateProvider.failing = true;
+        EthereumRates ethereumRates = new EthereumRates(rateProvider, cacheFile, 0);
+        double euro = ethereumRates.getEuro(1);
+        LOGGER.debug("euro: {}", euro);
+        assertEquals(2000.5, euro, 0.0001);
+        assertEquals(2, rateProvider.calls.get());
+
+        // without any cache, we give back zero as before
+        ethereumRates = new EthereumRates(rateProvider, null, 0);
+        assertEquals(0, ethereumRates.getEuro(1), 0.0001);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.FeeOracle;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FeeOracleTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeeOracleTest.class);
+
+    private static final long GWEI = 1_000_000_000L;
+
+    /**
+     * Block n has a base fee of n Gwei, and a lowest reward percentile of n
+     * modulo 10 Gwei.
+     */
+    private static EthFeeHistory.FeeHistory createFeeHistory(long oldestBlock, int blockCount) {
+        List<List<String>> rewards = new ArrayList<>();
+        List<String> baseFees = new ArrayList<>();
+        List<Double> gasUsedRatios = new ArrayList<>();
+        for (long blockNumber = oldestBlock; blockNumber < oldestBlock + blockCount; blockNumber++) {
+            List<String> blockRewards = new ArrayList<>();
+            for (int idx = 0; idx < FeeOracle.REWARD_PERCENTILES.size(); idx++) {
+                blockRewards.add(Numeric.toHexStringWithPrefix(BigInteger.valueOf((blockNumber % 10 + idx) * GWEI)));
+            }
+            rewards.add(blockRewards);
+            baseFees.add(Numeric.toHexStringWithPrefix(BigInteger.valueOf(blockNumber * GWEI)));
+            gasUsedRatios.add(0.5);
+        }
+        baseFees.add(Numeric.toHexStringWithPrefix(BigInteger.valueOf((oldestBlock + blockCount) * GWEI)));
+        return new EthFeeHistory.FeeHistory(Numeric.toHexStringWithPrefix(BigInteger.valueOf(oldestBlock)), rewards, baseFees, gasUsedRatios);
+    }
+
+    @Test
+    public void testRollingWindow() throws Exception {
+        FeeOracle feeOracle = new FeeOracle(null, 10);
+        feeOracle.add(createFeeHistory(100, 10));
+        assertEquals(10, feeOracle.getBlocks().size());
+        assertEquals(BigInteger.valueOf(110 * GWEI), feeOracle.getNextBaseFeePerGas());
+
+        // new heads only bring in the new blocks
+        feeOracle.add(createFeeHistory(109, 3));
+        List<FeeOracle.BlockFees> blocks = feeOracle.getBlocks();
+        assertEquals(10, blocks.size());
+        assertEquals(102, blocks.get(0).getBlockNumber());
+        assertEquals(111, blocks.get(blocks.size() - 1).getBlockNumber());
+        assertEquals(BigInteger.valueOf(112 * GWEI), feeOracle.getNextBaseFeePerGas());
+
+        // a late answer of an older block does not move the next base fee back
+        feeOracle.add(createFeeHistory(105, 1));
+        assertEquals(BigInteger.valueOf(112 * GWEI), feeOracle.getNextBaseFeePerGas());
+    }
+
+    @Test
+    public void testRecommend() throws Exception {
+        FeeOracle feeOracle = new FeeOracle(null, 10);
+        feeOracle.add(createFeeHistory(100, 10));
+        BigInteger previousPriorityFee = null;
+        for (int targetBlocks : Arrays.asList(1, 2, 3, 5, 10)) {
+            FeeOracle.Recommendation recommendation = feeOracle.recommend(targetBlocks);
+            LOGGER.debug("{} blocks: max fee {} priority fee {}", targetBlocks,
+                    recommendation.getMaxFeePerGas(), recommendation.getMaxPriorityFeePerGas());
+            assertEquals(BigInteger.valueOf(2 * 110 * GWEI).add(recommendation.getMaxPriorityFeePerGas()), recommendation.getMaxFeePerGas());
+            if (null != previousPriorityFee) {
+                assertTrue(recommendation.getMaxPriorityFeePerGas().compareTo(previousPriorityFee) <= 0);
+            }
+            previousPriorityFee = recommendation.getMaxPriorityFeePerGas();
+        }
+        // next block with 90% confidence: misses only the most demanding block out of 10
+        assertEquals(BigInteger.valueOf(8 * GWEI), feeOracle.recommend(1).getMaxPriorityFeePerGas());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.GasPriceHistogram;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.utils.Convert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GasPriceHistogramTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GasPriceHistogramTest.class);
+
+    @Test
+    public void testBuckets() throws Exception {
+        assertEquals(0, GasPriceHistogram.getBucket(0));
+        assertEquals(0, GasPriceHistogram.getBucket(1));
+        int bucket = GasPriceHistogram.getBucket(Convert.toWei(BigDecimal.valueOf(1), Convert.Unit.GWEI).toBigIntegerExact());
+        BigDecimal lowerBound = GasPriceHistogram.getLowerBoundGwei(bucket);
+        LOGGER.debug("1 Gwei bucket {} lower bound {} Gwei", bucket, lowerBound);
+        assertEquals(0, BigDecimal.ONE.compareTo(lowerBound));
+        int previousBucket = 0;
+        for (long gasPriceGwei = 1; gasPriceGwei < 1000; gasPriceGwei++) {
+            int gasPriceBucket = GasPriceHistogram.getBucket(BigInteger.valueOf(gasPriceGwei * 1_000_000_000L));
+            assertTrue(gasPriceBucket >= previousBucket);
+            assertTrue(GasPriceHistogram.getLowerBoundGwei(gasPriceBucket).compareTo(BigDecimal.valueOf(gasPriceGwei)) <= 0);
+            previousBucket = gasPriceBucket;
+        }
+        assertEquals(GasPriceHistogram.getBucket(Long.MAX_VALUE), GasPriceHistogram.getBucket(BigInteger.TEN.pow(30)));
+    }
+
+    @Test
+    public void testSlidingWindow() throws Exception {
+        GasPriceHistogram histogram = new GasPriceHistogram(2);
+        histogram.nextBlock();
+        histogram.add(10, 1000);
+        histogram.add(10, 3000);
+        assertEquals(2, histogram.getCount(10));
+        assertEquals(2000, histogram.getAverageNanos(10));
+        histogram.nextBlock();
+        histogram.add(10, 5000);
+        assertEquals(3, histogram.getCount(10));
+        assertEquals(2, histogram.getRows());
+        histogram.nextBlock();
+        // first block left the window
+        assertEquals(1, histogram.getCount(10));
+        assertEquals(5000, histogram.getAverageNanos(10));
+        histogram.nextBlock();
+        assertEquals(0, histogram.getCount(10));
+        assertEquals(0, histogram.getAverageNanos(10));
+        assertEquals(2, histogram.getRows());
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.MultiNodeWeb3jService;
+import be.e_contract.ethereum.tool.ToolWeb3j;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.http.HttpService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultiNodeWeb3jServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiNodeWeb3jServiceTest.class);
+
+    private static final String TRANSACTION_HASH = "0xabababababababababababababababababababababababababababababababab";
+
+    private final List<TestNode> testNodes = new LinkedList<>();
+
+    @AfterEach
+    public void tearDown() {
+        for (TestNode testNode : this.testNodes) {
+            testNode.httpServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testHedgedRead() throws Exception {
+        TestNode slowNode = new TestNode(2000, 200, 100);
+        TestNode fastNode = new TestNode(0, 200, 200);
+        ToolWeb3j web3 = createWeb3(slowNode, fastNode);
+
+        long startMillis = System.currentTimeMillis();
+        BigInteger blockNumber = web3.ethBlockNumber().send().getBlockNumber();
+        long durationMillis = System.currentTimeMillis() - startMillis;
+        LOGGER.debug("duration: {} ms", durationMillis);
+        assertEquals(BigInteger.valueOf(200), blockNumber);
+        assertTrue(durationMillis < 1500);
+
+        // the fast node is now preferred
+        startMillis = System.currentTimeMillis();
+        web3.ethBlockNumber().send();
+        assertTrue(System.currentTimeMillis() - startMillis < 200);
+        assertEquals(2, fastNode.requests.get());
+        web3.shutdown();
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        TestNode brokenNode = new TestNode(0, 500, 100);
+        TestNode node = new TestNode(0, 200, 200);
+        ToolWeb3j web3 = createWeb3(brokenNode, node);
+
+        assertEquals(BigInteger.valueOf(200), web3.ethBlockNumber().send().getBlockNumber());
+        assertEquals(BigInteger.valueOf(200), web3.ethBlockNumber().send().getBlockNumber());
+        assertEquals(1, brokenNode.requests.get());
+        web3.shutdown();
+    }
+
+    @Test
+    public void testBroadcast() throws Exception {
+        TestNode node1 = new TestNode(0, 200, 100);
+        TestNode node2 = new TestNode(100, 200, 100);
+        ToolWeb3j web3 = createWeb3(node1, node2);
+
+        String transactionHash = web3.ethSendRawTransaction("0x1234").send().getTransactionHash();
+        assertEquals(TRANSACTION_HASH, transactionHash);
+        Thread.sleep(500);
+        assertEquals(1, node1.transactions.get());
+        assertEquals(1, node2.transactions.get());
+        web3.shutdown();
+    }
+
+    @Test
+    public void testLaggingNode() throws Exception {
+        TestNode laggingNode = new TestNode(0, 200, 100, true);
+        TestNode node = new TestNode(100, 200, 200);
+        ToolWeb3j web3 = createWeb3(laggingNode, node);
+
+        EthBlock.Block block = web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(150)), false).send().getBlock();
+        assertNotNull(block);
+        assertEquals(BigInteger.valueOf(150), block.getNumber());
+        assertEquals(1, laggingNode.requests.get());
+        web3.shutdown();
+    }
+
+    @Test
+    public void testUnknownBlock() throws Exception {
+        TestNode laggingNode1 = new TestNode(0, 200, 100, true);
+        TestNode laggingNode2 = new TestNode(0, 200, 100, true);
+        ToolWeb3j web3 = createWeb3(laggingNode1, laggingNode2);
+
+        EthBlock ethBlock = web3.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(150)), false).send();
+        assertFalse(ethBlock.hasError());
+        assertNull(ethBlock.getBlock());
+        assertEquals(1, laggingNode1.requests.get());
+        assertEquals(1, laggingNode2.requests.get());
+        web3.shutdown();
+    }
+
+    @Test
+    public void testFilterOnSingleNode() throws Exception {
+        // slower than the default hedge delay
+        TestNode slowNode = new TestNode(400, 200, 100);
+        TestNode fastNode = new TestNode(0, 200, 200);
+        ToolWeb3j web3 = createWeb3(slowNode, fastNode);
+
+        BigInteger filterId = web3.ethNewBlockFilter().send().getFilterId();
+        assertEquals(BigInteger.valueOf(100), filterId);
+        for (int idx = 0; idx < 3; idx++) {
+            assertFalse(web3.ethGetFilterChanges(filterId).send().hasError());
+        }
+        assertFalse(web3.ethUninstallFilter(filterId).send().hasError());
+        assertEquals(0, fastNode.requests.get());
+        assertEquals(5, slowNode.requests.get());
+        web3.shutdown();
+    }
+
+    private ToolWeb3j createWeb3(TestNode... nodes) throws Exception {
+        String[] locations = new String[nodes.length];
+        Web3jService[] services = new Web3jService[nodes.length];
+        for (int idx = 0; idx < nodes.length; idx++) {
+            this.testNodes.add(nodes[idx]);
+            locations[idx] = "http://localhost:" + nodes[idx].httpServer.getAddress().getPort();
+            services[idx] = new HttpService(locations[idx]);
+        }
+        MultiNodeWeb3jService multiNodeService = new MultiNodeWeb3jService(Arrays.asList(locations), Arrays.asList(services));
+        return new ToolWeb3j(multiNodeService, 500);
+    }
+
+    private static final class TestNode {
+
+        private final HttpServer httpServer;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger transactions = new AtomicInteger();
+
+        private TestNode(long delayMillis, int status, long blockNumber) throws Exception {
+            this(delayMillis, status, blockNumber, false);
+        }
+
+        /**
+         * @param delayMillis
+         * @param status
+         * @param blockNumber
+         * @param lagging does not know any block.
+         * @throws Exception
+         */
+        private TestNode(long delayMillis, int status, long blockNumber, boolean lagging) throws Exception {
+            ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+            this.httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            this.httpServer.setExecutor(Executors.newCachedThreadPool());
+            this.httpServer.createContext("/", exchange -> {
+                this.requests.incrementAndGet();
+                JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                ObjectNode response = objectMapper.createObjectNode();
+                response.put("jsonrpc", "2.0");
+                response.set("id", request.get("id"));
+                String method = request.get("method").asText();
+                String blockNumberResult = "0x" + Long.toHexString(blockNumber);
+                if ("eth_sendRawTransaction".equals(method)) {
+                    this.transactions.incrementAndGet();
+                    response.put("result", TRANSACTION_HASH);
+                } else if ("eth_getBlockByNumber".equals(method)) {
+                    if (lagging) {
+                        response.putNull("result");
+                    } else {
+                        response.putObject("result").set("number", request.get("params").get(0));
+                    }
+                } else if ("eth_newBlockFilter".equals(method)) {
+                    // filter identifier per node
+                    response.put("result", blockNumberResult);
+                } else if ("eth_getFilterChanges".equals(method) || "eth_uninstallFilter".equals(method)) {
+                    if (!blockNumberResult.equals(request.get("params").get(0).asText())) {
+                        ObjectNode error = response.putObject("error");
+                        error.put("code", -32000);
+                        error.put("message", "filter not found");
+                    } else if ("eth_uninstallFilter".equals(method)) {
+                        response.put("result", true);
+                    } else {
+                        response.putArray("result");
+                    }
+                } else {
+                    response.put("result", blockNumberResult);
+                }
+                byte[] body = objectMapper.writeValueAsBytes(response);
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            });
+            this.httpServer.start();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.PendingTransactionIndex;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PendingTransactionIndexTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingTransactionIndexTest.class);
+
+    @Test
+    public void testIndex() throws Exception {
+        Random random = new Random(1234);
+        PendingTransactionIndex index = new PendingTransactionIndex(16);
+        Map<String, Long> expected = new HashMap<>();
+        for (int idx = 0; idx < 10000; idx++) {
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            String transactionHash = Numeric.toHexString(hash);
+            long blockNumber = idx / 100;
+            assertTrue(index.put(transactionHash, idx, blockNumber, idx % 70));
+            expected.put(transactionHash, blockNumber);
+        }
+        assertEquals(expected.size(), index.size());
+        LOGGER.debug("capacity: {}", index.getCapacity());
+
+        // remove every third one
+        PendingTransactionIndex.Entry entry = new PendingTransactionIndex.Entry();
+        int count = 0;
+        Iterator<Map.Entry<String, Long>> iterator = expected.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> expectedEntry = iterator.next();
+            if (count++ % 3 == 0) {
+                assertTrue(index.remove(expectedEntry.getKey(), entry));
+                assertEquals((long) expectedEntry.getValue(), entry.getBlockNumber());
+                assertFalse(index.remove(expectedEntry.getKey(), entry));
+                iterator.remove();
+            }
+        }
+        assertEquals(expected.size(), index.size());
+
+        int evicted = index.evictBefore(50);
+        expected.values().removeIf(blockNumber -> blockNumber < 50);
+        LOGGER.debug("evicted: {}", evicted);
+        assertEquals(expected.size(), index.size());
+        for (String transactionHash : expected.keySet()) {
+            assertTrue(index.contains(transactionHash));
+        }
+    }
+
+    @Test
+    public void testFirstSeenIsKept() throws Exception {
+        PendingTransactionIndex index = new PendingTransactionIndex(16);
+        String transactionHash = "0x88df016429689c079f3b2f6ad39fa052532c56795b733da78a91ebe6a713944b";
+        assertTrue(index.put(transactionHash, 1, 100, 5));
+        assertFalse(index.put(transactionHash.toUpperCase().replace("0X", "0x"), 2, 101, 6));
+        PendingTransactionIndex.Entry entry = new PendingTransactionIndex.Entry();
+        assertTrue(index.remove(transactionHash, entry));
+        assertEquals(1, entry.getCreated());
+        assertEquals(100, entry.getBlockNumber());
+        assertEquals(5, entry.getValue());
+        assertThrows(IllegalArgumentException.class, () -> index.put("0x1234", 1, 1, 1));
+    }
+}
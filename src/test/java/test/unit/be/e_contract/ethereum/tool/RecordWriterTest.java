@@ -0,0 +1,60 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.OutputFormat;
+import be.e_contract.ethereum.tool.RecordWriter;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RecordWriterTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordWriterTest.class);
+
+    @Test
+    public void testJsonLines() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordWriter recordWriter = RecordWriter.open(OutputFormat.JSONL, outputStream, "hash", "value", "gwei", "to")) {
+            recordWriter.write("0x1234", new BigInteger("50000000000000000"), new BigDecimal("0.000000001"), null);
+            recordWriter.write("0x5678", BigInteger.ONE, BigDecimal.TEN, "0xab");
+        }
+        String output = outputStream.toString(StandardCharsets.UTF_8.name());
+        LOGGER.debug("output: {}", output);
+        assertEquals("{\"hash\":\"0x1234\",\"value\":50000000000000000,\"gwei\":0.000000001,\"to\":null}\n"
+                + "{\"hash\":\"0x5678\",\"value\":1,\"gwei\":10,\"to\":\"0xab\"}\n", output);
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (RecordWriter recordWriter = RecordWriter.open(OutputFormat.CSV, outputStream, "hash", "value", "note")) {
+            recordWriter.write("0x1234", new BigDecimal("1E-9"), "a, \"b\"");
+            recordWriter.write("0x5678", null, "c");
+        }
+        String output = outputStream.toString(StandardCharsets.UTF_8.name());
+        LOGGER.debug("output: {}", output);
+        assertEquals("hash,value,note\n0x1234,0.000000001,\"a, \"\"b\"\"\"\n0x5678,,c\n", output);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.Recording;
+import be.e_contract.ethereum.tool.RecordingWeb3jService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetBalance;
+import org.web3j.protocol.websocket.events.Notification;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordingTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordingTest.class);
+
+    private static final String ADDRESS = "0x0000000000000000000000000000000000001234";
+
+    private static final String UNKNOWN_ADDRESS = "0x0000000000000000000000000000000000005678";
+
+    private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+    @Test
+    public void testRecordReplay(@TempDir Path tempDir) throws Exception {
+        testRecordReplay(new File(tempDir.toFile(), "recording.jsonl"));
+    }
+
+    @Test
+    public void testRecordReplayCompressed(@TempDir Path tempDir) throws Exception {
+        testRecordReplay(new File(tempDir.toFile(), "recording.jsonl.gz"));
+    }
+
+    private void testRecordReplay(File recordFile) throws Exception {
+        RecordingWeb3jService recordingService = new RecordingWeb3jService(new TestWeb3jService(), recordFile);
+        Web3j web3 = Web3j.build(recordingService);
+        for (int idx = 0; idx < 3; idx++) {
+            assertEquals(BigInteger.valueOf(100 + idx), web3.ethBlockNumber().send().getBlockNumber());
+        }
+        BatchResponse batchResponse = web3.newBatch()
+                .add(web3.ethGetBalance(ADDRESS, DefaultBlockParameterName.LATEST))
+                .add(web3.ethGetBalance(UNKNOWN_ADDRESS, DefaultBlockParameterName.LATEST))
+                .send();
+        assertEquals(BigInteger.TEN, ((EthGetBalance) batchResponse.getResponses().get(0)).getBalance());
+        assertTrue(batchResponse.getResponses().get(1).hasError());
+        assertEquals(1, web3.ethGetFilterChanges(BigInteger.ONE).send().getLogs().size());
+        assertEquals(1, web3.ethGetFilterChanges(BigInteger.ONE).send().getLogs().size());
+        web3.shutdown();
+        LOGGER.debug("recording size: {} bytes", recordFile.length());
+
+        Recording recording = Recording.load(recordFile);
+        assertEquals(4, recording.size());
+
+        // repeated keys give the recorded answers in order, then the last one
+        assertEquals("0x64", recording.respond(request(1, "eth_blockNumber")).get("result").asText());
+        assertEquals("0x65", recording.respond(request(2, "eth_blockNumber")).get("result").asText());
+        assertEquals("0x66", recording.respond(request(3, "eth_blockNumber")).get("result").asText());
+        ObjectNode response = recording.respond(request(4, "eth_blockNumber"));
+        assertEquals("0x66", response.get("result").asText());
+        assertEquals(4, response.get("id").asInt());
+
+        // recorded as a batch, answered per request
+        ObjectNode balanceResponse = recording.respond(request(5, "eth_getBalance", ADDRESS, "latest"));
+        assertEquals("0xa", balanceResponse.get("result").asText());
+        ObjectNode errorResponse = recording.respond(request(6, "eth_getBalance", UNKNOWN_ADDRESS, "latest"));
+        assertFalse(errorResponse.has("result"));
+        assertEquals("unknown account", errorResponse.get("error").get("message").asText());
+
+        // filter polls go idle once the recorded changes are used up
+        assertEquals("0xaa", recording.respond(request(7, "eth_getFilterChanges", "0x1")).get("result").get(0).asText());
+        assertEquals("0xbb", recording.respond(request(8, "eth_getFilterChanges", "0x1")).get("result").get(0).asText());
+        JsonNode idleResult = recording.respond(request(9, "eth_getFilterChanges", "0x1")).get("result");
+        assertTrue(idleResult.isArray());
+        assertEquals(0, idleResult.size());
+
+        // unrecorded methods and parameters
+        ObjectNode unrecordedResponse = recording.respond(request(10, "eth_gasPrice"));
+        assertEquals("not recorded: eth_gasPrice", unrecordedResponse.get("error").get("message").asText());
+        assertTrue(recording.respond(request(11, "eth_getBalance", ADDRESS, "0x1")).has("error"));
+    }
+
+    private ObjectNode request(int id, String method, String... params) {
+        ObjectNode request = this.objectMapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("id", id);
+        request.put("method", method);
+        ArrayNode paramsNode = request.putArray("params");
+        for (String param : params) {
+            paramsNode.add(param);
+        }
+        return request;
+    }
+
+    private static final class TestWeb3jService implements Web3jService {
+
+        private final ObjectMapper objectMapper = ObjectMapperFactory.getObjectMapper();
+
+        private long blockNumber = 100;
+
+        private int filterPolls;
+
+        @Override
+        public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+            ObjectNode response = this.objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.getId());
+            switch (request.getMethod()) {
+                case "eth_blockNumber":
+                    response.put("result", Numeric.encodeQuantity(BigInteger.valueOf(this.blockNumber++)));
+                    break;
+                case "eth_getBalance":
+                    if (ADDRESS.equals(request.getParams().get(0))) {
+                        response.put("result", Numeric.encodeQuantity(BigInteger.TEN));
+                    } else {
+                        ObjectNode error = response.putObject("error");
+                        error.put("code", -32000);
+                        error.put("message", "unknown account");
+                    }
+                    break;
+                case "eth_getFilterChanges":
+                    response.putArray("result").add(0 == this.filterPolls++ ? "0xaa" : "0xbb");
+                    break;
+                default:
+                    throw new IOException("unsupported method: " + request.getMethod());
+            }
+            return this.objectMapper.treeToValue(response, responseType);
+        }
+
+        @Override
+        public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+            List<Response<?>> responses = new LinkedList<>();
+            for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+                responses.add(send(request, request.getResponseType()));
+            }
+            return new BatchResponse(batchRequest.getRequests(), responses);
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.InstrumentedWeb3jService;
+import be.e_contract.ethereum.tool.LatencyHistogram;
+import be.e_contract.ethereum.tool.MeteredHttpService;
+import be.e_contract.ethereum.tool.RpcMetrics;
+import be.e_contract.ethereum.tool.TransportMeter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RpcMetricsTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RpcMetricsTest.class);
+
+    @Test
+    public void testLatencyHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxMicros());
+        long p50 = histogram.getPercentileMicros(0.5);
+        long p99 = histogram.getPercentileMicros(0.99);
+        LOGGER.debug("p50 {} us, p99 {} us", p50, p99);
+        // within the precision of the sub-buckets
+        assertTrue(Math.abs(p50 - 500000) < 500000 * 0.07);
+        assertTrue(Math.abs(p99 - 990000) < 990000 * 0.07);
+        assertEquals(1000, histogram.getCountAtOrBelow(Long.MAX_VALUE));
+        assertEquals(0, histogram.getCountAtOrBelow(100));
+    }
+
+    @Test
+    public void testPrometheus() throws Exception {
+        RpcMetrics rpcMetrics = new RpcMetrics();
+        rpcMetrics.onCall("eth_blockNumber", TimeUnit.MILLISECONDS.toNanos(2), 1, false);
+        rpcMetrics.onTransfer("eth_blockNumber", 60, 40);
+        rpcMetrics.onCall("eth_blockNumber", TimeUnit.MILLISECONDS.toNanos(20), 1, true);
+        rpcMetrics.onTransfer("eth_blockNumber", 60, 90);
+        assertEquals(2, rpcMetrics.getCount("eth_blockNumber"));
+        StringBuilder builder = new StringBuilder();
+        rpcMetrics.writePrometheus(builder);
+        String text = builder.toString();
+        LOGGER.debug("metrics:\n{}", text);
+        assertTrue(text.contains("ethereum_tool_rpc_latency_seconds_bucket{method=\"eth_blockNumber\",le=\"0.0025\"} 1\n"));
+        assertTrue(text.contains("ethereum_tool_rpc_latency_seconds_bucket{method=\"eth_blockNumber\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("ethereum_tool_rpc_errors_total{method=\"eth_blockNumber\"} 1\n"));
+        assertTrue(text.contains("ethereum_tool_rpc_received_bytes_total{method=\"eth_blockNumber\"} 130\n"));
+    }
+
+    @Test
+    public void testTransportMeter() throws Exception {
+        AtomicLong requestBytes = new AtomicLong();
+        AtomicLong responseBytes = new AtomicLong();
+        byte[] blockNumberResponse = "{\"jsonrpc\":\"2.0\",\"id\":0,\"result\":\"0x64\"}".getBytes(StandardCharsets.UTF_8);
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/", exchange -> {
+            byte[] request;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                request = IOUtils.toByteArray(inputStream);
+            }
+            requestBytes.set(request.length);
+            byte[] body;
+            if ('[' == request[0]) {
+                // the batch responses are matched on the request ids
+                JsonNode batchRequest = objectMapper.readTree(request);
+                body = ("[{\"jsonrpc\":\"2.0\",\"id\":" + batchRequest.get(0).get("id") + ",\"result\":\"0x1\"},"
+                        + "{\"jsonrpc\":\"2.0\",\"id\":" + batchRequest.get(1).get("id")
+                        + ",\"error\":{\"code\":-32000,\"message\":\"unknown\"}}]").getBytes(StandardCharsets.UTF_8);
+            } else {
+                body = blockNumberResponse;
+            }
+            responseBytes.set(body.length);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        httpServer.start();
+        try {
+            RpcMetrics rpcMetrics = new RpcMetrics();
+            String url = "http://localhost:" + httpServer.getAddress().getPort();
+            Web3j web3 = Web3j.build(new InstrumentedWeb3jService(new MeteredHttpService(url, new TransportMeter(rpcMetrics)), rpcMetrics));
+            assertEquals(BigInteger.valueOf(100), web3.ethBlockNumber().send().getBlockNumber());
+            long blockNumberRequestBytes = requestBytes.get();
+
+            BatchResponse response = web3.newBatch()
+                    .add(web3.ethGetTransactionCount("0x0000000000000000000000000000000000001234", DefaultBlockParameterName.LATEST))
+                    .add(web3.ethGetBalance("0x0000000000000000000000000000000000001234", DefaultBlockParameterName.LATEST))
+                    .send();
+            assertTrue(response.getResponses().get(1).hasError());
+            long batchRequestBytes = requestBytes.get();
+            long batchResponseBytes = responseBytes.get();
+            web3.shutdown();
+
+            StringBuilder builder = new StringBuilder();
+            rpcMetrics.writePrometheus(builder);
+            String text = builder.toString();
+            LOGGER.debug("metrics:\n{}", text);
+            assertTrue(text.contains("ethereum_tool_rpc_sent_bytes_total{method=\"eth_blockNumber\"} " + blockNumberRequestBytes + "\n"));
+            assertTrue(text.contains("ethereum_tool_rpc_received_bytes_total{method=\"eth_blockNumber\"} " + blockNumberResponse.length + "\n"));
+            assertTrue(text.contains("ethereum_tool_rpc_errors_total{method=\"eth_getBalance\"} 1\n"));
+            // the batch is shared among its requests, the first one takes the remainder
+            assertTrue(text.contains("ethereum_tool_rpc_sent_bytes_total{method=\"eth_getBalance\"} " + batchRequestBytes / 2 + "\n"));
+            assertTrue(text.contains("ethereum_tool_rpc_received_bytes_total{method=\"eth_getTransactionCount\"} "
+                    + (batchResponseBytes / 2 + batchResponseBytes % 2) + "\n"));
+        } finally {
+            httpServer.stop(0);
+        }
+    }
+}
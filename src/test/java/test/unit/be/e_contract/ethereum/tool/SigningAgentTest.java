@@ -0,0 +1,128 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.SigningAgent;
+import be.e_contract.ethereum.tool.SigningAgentClient;
+import be.e_contract.ethereum.tool.TransactionSigner;
+import be.e_contract.ethereum.tool.TransactionTemplate;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Keys;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SigningAgentTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SigningAgentTest.class);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSigningAgent() throws Exception {
+        Credentials credentials = Credentials.create(Keys.createEcKeyPair());
+        File socketFile = new File(this.tempDir.toFile(), "signer.sock");
+        SigningAgent signingAgent = new SigningAgent(socketFile, credentials);
+        Thread agentThread = new Thread(() -> {
+            try {
+                signingAgent.run(60);
+            } catch (Exception ex) {
+                LOGGER.error("agent error: " + ex.getMessage(), ex);
+            }
+        });
+        agentThread.start();
+        SigningAgentClient signingAgentClient = new SigningAgentClient(socketFile);
+        while (!signingAgentClient.isAvailable()) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(credentials.getAddress(), signingAgentClient.getAddress());
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate();
+        transactionTemplate.to = "0x0c56073db91c2ba57ff362301eb32262bbee6147";
+        transactionTemplate.value = 0.1;
+        transactionTemplate.maxFeePerGas = 30.0;
+        transactionTemplate.maxPriorityFeePerGas = 1.0;
+        transactionTemplate.nonce = 5;
+        transactionTemplate.chainId = 1L;
+        long startMillis = System.currentTimeMillis();
+        String transaction = signingAgentClient.sign(transactionTemplate);
+        LOGGER.debug("agent signing time: {} ms", System.currentTimeMillis() - startMillis);
+        assertEquals(TransactionSigner.sign(transactionTemplate, credentials), transaction);
+
+        transactionTemplate.from = "0xff56073db91c2ba57ff362301eb32262bbee6100";
+        assertThrows(IOException.class, () -> signingAgentClient.sign(transactionTemplate));
+
+        signingAgentClient.lock();
+        agentThread.join(5000);
+        assertFalse(agentThread.isAlive());
+        assertFalse(socketFile.exists());
+    }
+
+    @Test
+    public void testStaleSocketFile() throws Exception {
+        File socketFile = new File(this.tempDir.toFile(), "signer.sock");
+        // as left behind by a crashed agent
+        UnixServerSocketChannel serverSocketChannel = UnixServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new UnixSocketAddress(socketFile));
+        serverSocketChannel.close();
+        assertTrue(socketFile.exists());
+
+        Credentials credentials = Credentials.create(Keys.createEcKeyPair());
+        SigningAgent signingAgent = new SigningAgent(socketFile, credentials);
+        Thread agentThread = new Thread(() -> {
+            try {
+                signingAgent.run(60);
+            } catch (Exception ex) {
+                LOGGER.error("agent error: " + ex.getMessage(), ex);
+            }
+        });
+        agentThread.start();
+        SigningAgentClient signingAgentClient = new SigningAgentClient(socketFile);
+        long timeoutMillis = System.currentTimeMillis() + 5000;
+        String address = null;
+        while (null == address && System.currentTimeMillis() < timeoutMillis) {
+            try {
+                address = signingAgentClient.getAddress();
+            } catch (IOException ex) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(credentials.getAddress(), address);
+
+        // a running agent is not replaced
+        SigningAgent secondSigningAgent = new SigningAgent(socketFile, credentials);
+        assertThrows(IOException.class, () -> secondSigningAgent.run(60));
+
+        signingAgentClient.lock();
+        agentThread.join(5000);
+        assertFalse(agentThread.isAlive());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Ethereum Tool project.
+ * Copyright (C) 2018-2024 e-Contract.be BV.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License version
+ * 3.0 as published by the Free Software Foundation.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, see 
+ * http://www.gnu.org/licenses/.
+ */
+package test.unit.be.e_contract.ethereum.tool;
+
+import be.e_contract.ethereum.tool.ReconnectingWebSocketService;
+import be.e_contract.ethereum.tool.ToolWeb3j;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.disposables.Disposable;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.utils.Numeric;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebSocketTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketTest.class);
+
+    private TestWebSocketServer server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        this.server = new TestWebSocketServer();
+        this.server.start();
+        this.server.started.await(10, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+    @Test
+    public void testNewHeadsResubscribe() throws Exception {
+        ReconnectingWebSocketService service = new ReconnectingWebSocketService("ws://localhost:" + this.server.getPort());
+        service.connect();
+        ToolWeb3j web3 = new ToolWeb3j(service, 500);
+        assertTrue(web3.isSubscriptionSupported());
+
+        List<BigInteger> blockNumbers = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        Disposable disposable = web3.blockFlowable(false).subscribe(ethBlock -> {
+            LOGGER.debug("block: {}", ethBlock.getBlock().getNumber());
+            blockNumbers.add(ethBlock.getBlock().getNumber());
+            latch.countDown();
+        }, error -> LOGGER.error("error: " + error.getMessage(), error));
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        disposable.dispose();
+        service.close();
+
+        assertEquals(BigInteger.valueOf(1), blockNumbers.get(0));
+        assertEquals(BigInteger.valueOf(2), blockNumbers.get(1));
+        // the second subscription was done over a new connection
+        assertEquals(2, this.server.subscriptions.get());
+    }
+
+    private static final class TestWebSocketServer extends WebSocketServer {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final AtomicInteger subscriptions = new AtomicInteger();
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        public TestWebSocketServer() {
+            super(new InetSocketAddress("localhost", 0));
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            LOGGER.debug("open");
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            LOGGER.debug("close");
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            LOGGER.debug("message: {}", message);
+            try {
+                JsonNode request = this.objectMapper.readTree(message);
+                String method = request.get("method").asText();
+                ObjectNode response = this.objectMapper.createObjectNode();
+                response.put("jsonrpc", "2.0");
+                response.set("id", request.get("id"));
+                switch (method) {
+                    case "eth_subscribe": {
+                        int subscription = this.subscriptions.incrementAndGet();
+                        String subscriptionId = "0x" + subscription;
+                        response.put("result", subscriptionId);
+                        conn.send(this.objectMapper.writeValueAsString(response));
+                        ObjectNode notification = this.objectMapper.createObjectNode();
+                        notification.put("jsonrpc", "2.0");
+                        notification.put("method", "eth_subscription");
+                        ObjectNode params = notification.putObject("params");
+                        params.put("subscription", subscriptionId);
+                        ObjectNode head = params.putObject("result");
+                        head.put("number", Numeric.encodeQuantity(BigInteger.valueOf(subscription)));
+                        head.put("hash", blockHash(subscription));
+                        conn.send(this.objectMapper.writeValueAsString(notification));
+                        if (subscription == 1) {
+                            // simulate a node restart
+                            this.executor.schedule(() -> conn.close(), 500, TimeUnit.MILLISECONDS);
+                        }
+                        return;
+                    }
+                    case "eth_getBlockByHash": {
+                        String blockHash = request.get("params").get(0).asText();
+                        int number = Numeric.toBigInt(blockHash).intValue();
+                        ObjectNode block = response.putObject("result");
+                        block.put("number", Numeric.encodeQuantity(BigInteger.valueOf(number)));
+                        block.put("hash", blockHash);
+                        block.putArray("transactions");
+                        block.putArray("uncles");
+                        break;
+                    }
+                    default:
+                        response.put("result", true);
+                }
+                conn.send(this.objectMapper.writeValueAsString(response));
+            } catch (Exception ex) {
+                LOGGER.error("error: " + ex.getMessage(), ex);
+            }
+        }
+
+        private static String blockHash(int number) {
+            return Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(number), 64);
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            LOGGER.error("error: " + ex.getMessage(), ex);
+        }
+
+        @Override
+        public void onStart() {
+            this.started.countDown();
+        }
+
+        @Override
+        public void stop() throws InterruptedException {
+            this.executor.shutdownNow();
+            super.stop();
+        }
+    }
+}